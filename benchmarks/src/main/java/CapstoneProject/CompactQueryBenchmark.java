@@ -0,0 +1,96 @@
+package CapstoneProject;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The primitive CompactGraph queries on each read-only representation,
+ * to weigh what CompressedGraph saves in memory against what decoding
+ * costs per query:
+ *   csr             CSRGraph, numbered by user ID
+ *   compressed      CompressedGraph of the same numbering
+ *   compressed-bfs  CompressedGraph of a BFS-ordered ReorderedGraph,
+ *                   which has the smallest gaps
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompactQueryBenchmark {
+
+    /* size of the user and pair samples; a power of two */
+    private static final int SAMPLES = 1024;
+
+    @Param({"data/facebook_2000.txt", "powerlaw:100000"})
+    public String dataset;
+
+    @Param({"csr", "compressed", "compressed-bfs"})
+    public String representation;
+
+    /* degree of separation for getNDegreeConnections */
+    @Param({"2"})
+    public int degree;
+
+    private CompactGraph graph;
+    private int[] users;
+    private int[] pairs;
+
+    /* per-thread position in the samples */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int advance() {
+            return next++ & (SAMPLES - 1);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        CSRGraph csr = GraphData.loadCSRGraph(dataset);
+        if (representation.equals("csr")) {
+            graph = csr;
+        } else if (representation.equals("compressed")) {
+            graph = CompressedGraph.fromGraph(csr);
+        } else if (representation.equals("compressed-bfs")) {
+            graph = CompressedGraph.fromGraph(ReorderedGraph.reorder(csr, ReorderedGraph.Ordering.BFS));
+        } else {
+            throw new IllegalArgumentException("unknown representation: " + representation);
+        }
+        Random random = new Random(7);
+        users = new int[SAMPLES];
+        pairs = new int[2 * SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            users[i] = csr.idOf(random.nextInt(csr.vertexCount()));
+            pairs[2 * i] = csr.idOf(random.nextInt(csr.vertexCount()));
+            pairs[2 * i + 1] = csr.idOf(random.nextInt(csr.vertexCount()));
+        }
+    }
+
+    @Benchmark
+    public int[] getPath(Cursor cursor) {
+        int i = cursor.advance();
+        return graph.getPath(pairs[2 * i], pairs[2 * i + 1]);
+    }
+
+    @Benchmark
+    public int countMutualFriends(Cursor cursor) {
+        int i = cursor.advance();
+        return graph.countMutualFriends(pairs[2 * i], pairs[2 * i + 1]);
+    }
+
+    @Benchmark
+    public int[] getNDegreeConnections(Cursor cursor) {
+        return graph.getNDegreeConnections(users[cursor.advance()], degree);
+    }
+
+    @Benchmark
+    public SecondDegreeCounts getSecondDegreeMutualCounts(Cursor cursor) {
+        return graph.getSecondDegreeMutualCounts(users[cursor.advance()]);
+    }
+}
@@ -0,0 +1,128 @@
+package CapstoneProject;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reader throughput of ConcurrentGraph while a writer keeps adding
+ * friendships. Each group runs one writer next to 1, 2 or 4 readers, so
+ * comparing the readers' scores across groups shows how reads scale with
+ * reader threads while ingestion continues (run on at least five cores).
+ * Readers answer getDegreeOfSeparation for a fixed, seeded sample of
+ * pairs; the writer adds an edge between two sampled users, spending
+ * writeTokens of Blackhole CPU time between edges to set the write rate.
+ * The graph is rebuilt from the dataset before every iteration, so every
+ * iteration starts from the same graph.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentGraphBenchmark {
+
+    /* size of the pair samples; a power of two */
+    private static final int SAMPLES = 1024;
+
+    @Param({"data/facebook_2000.txt", "powerlaw:100000"})
+    public String dataset;
+
+    @Param({"SNAPSHOT", "READ_YOUR_WRITES"})
+    public ConcurrentGraph.Consistency consistency;
+
+    /* buffered writes that trigger a publish */
+    @Param({"1024"})
+    public int batchSize;
+
+    /* Blackhole.consumeCPU tokens the writer spends between edges */
+    @Param({"1000"})
+    public long writeTokens;
+
+    private CSRGraph initial;
+    private ConcurrentGraph graph;
+    private int[] pairs;
+
+    /* per-thread position in the samples */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int advance() {
+            return next++ & (SAMPLES - 1);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        initial = GraphData.loadCSRGraph(dataset);
+        Random random = new Random(7);
+        pairs = new int[2 * SAMPLES];
+        for (int i = 0; i < 2 * SAMPLES; i++) {
+            pairs[i] = initial.idOf(random.nextInt(initial.vertexCount()));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        graph = new ConcurrentGraph(initial, consistency, batchSize);
+    }
+
+    private int read(Cursor cursor) {
+        int i = cursor.advance();
+        return graph.getDegreeOfSeparation(pairs[2 * i], pairs[2 * i + 1]);
+    }
+
+    private void write(Cursor cursor) {
+        int i = cursor.advance();
+        //pairs of the sample that readers ask about, crossed so the edges are new
+        graph.addEdge(pairs[2 * i], pairs[(2 * i + 3) & (2 * SAMPLES - 1)]);
+        Blackhole.consumeCPU(writeTokens);
+    }
+
+    @Benchmark
+    @Group("readers1")
+    @GroupThreads(1)
+    public int read1(Cursor cursor) {
+        return read(cursor);
+    }
+
+    @Benchmark
+    @Group("readers1")
+    @GroupThreads(1)
+    public void write1(Cursor cursor) {
+        write(cursor);
+    }
+
+    @Benchmark
+    @Group("readers2")
+    @GroupThreads(2)
+    public int read2(Cursor cursor) {
+        return read(cursor);
+    }
+
+    @Benchmark
+    @Group("readers2")
+    @GroupThreads(1)
+    public void write2(Cursor cursor) {
+        write(cursor);
+    }
+
+    @Benchmark
+    @Group("readers4")
+    @GroupThreads(4)
+    public int read4(Cursor cursor) {
+        return read(cursor);
+    }
+
+    @Benchmark
+    @Group("readers4")
+    @GroupThreads(1)
+    public void write4(Cursor cursor) {
+        write(cursor);
+    }
+}
@@ -0,0 +1,120 @@
+package CapstoneProject;
+
+import util.FastGraphLoader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Resolves the dataset parameter shared by the benchmarks into an edge
+ * list file. A dataset is either
+ *   a path such as data/facebook_2000.txt, relative to the repository
+ *   root (the parent directory is tried too, for runs from benchmarks/)
+ * or
+ *   powerlaw:USERS[:EDGES_PER_USER]  a synthetic preferential-attachment
+ *   graph, written once to a temporary file with every friendship listed
+ *   in both directions like the Facebook data. The same spec always
+ *   gives the same graph.
+ */
+public class GraphData {
+
+    private static final String POWER_LAW = "powerlaw:";
+    private static final int DEFAULT_EDGES_PER_USER = 8;
+    private static final long SEED = 42;
+
+    /**
+     * @param dataset	a file path or a powerlaw:USERS[:EDGES_PER_USER] spec
+     * @return 			an edge list file holding the dataset
+     */
+    public static File resolve(String dataset) throws IOException {
+        if (dataset.startsWith(POWER_LAW)) {
+            String[] parts = dataset.substring(POWER_LAW.length()).split(":");
+            int users = Integer.parseInt(parts[0]);
+            int edgesPerUser = parts.length > 1 ? Integer.parseInt(parts[1]) : DEFAULT_EDGES_PER_USER;
+            return writePowerLaw(users, edgesPerUser);
+        }
+        File file = new File(dataset);
+        if (!file.exists() && new File("..", dataset).exists()) {
+            file = new File("..", dataset);
+        }
+        if (!file.exists()) {
+            throw new IOException("dataset not found: " + dataset
+                    + " (run from the repository root, or pass a powerlaw:USERS spec)");
+        }
+        return file;
+    }
+
+    public static CapstoneDoSGraph loadGraph(String dataset) throws IOException {
+        CapstoneDoSGraph graph = new CapstoneDoSGraph();
+        FastGraphLoader.loadGraph(graph, resolve(dataset).getPath());
+        return graph;
+    }
+
+    public static CSRGraph loadCSRGraph(String dataset) throws IOException {
+        return FastGraphLoader.loadCSRGraph(resolve(dataset).getPath());
+    }
+
+    /*
+     * Barabasi-Albert graph: each new user befriends edgesPerUser earlier
+     * users, picked in proportion to their degree by sampling a uniformly
+     * random endpoint of the edges so far. Degrees follow a power law
+     * with a few very large hubs, as in real social networks.
+     */
+    private static File writePowerLaw(int users, int edgesPerUser) throws IOException {
+        if (edgesPerUser < 1 || users <= edgesPerUser) {
+            throw new IllegalArgumentException("need more users than edges per user: "
+                    + POWER_LAW + users + ":" + edgesPerUser);
+        }
+        File file = new File(System.getProperty("java.io.tmpdir"),
+                "powerlaw_" + users + "_" + edgesPerUser + ".txt");
+        if (file.exists()) {
+            return file;
+        }
+        Random random = new Random(SEED);
+        int seedUsers = edgesPerUser + 1;
+        int[] endpoints = new int[2 * (seedUsers * edgesPerUser + (users - seedUsers) * edgesPerUser)];
+        int count = 0;
+        File partial = new File(file.getPath() + ".tmp");
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(partial))) {
+            //start from a small clique so every user has somewhere to attach
+            for (int u = 0; u < seedUsers; u++) {
+                for (int v = u + 1; v < seedUsers; v++) {
+                    writeFriendship(out, u, v);
+                    endpoints[count++] = u;
+                    endpoints[count++] = v;
+                }
+            }
+            int[] chosen = new int[edgesPerUser];
+            for (int u = seedUsers; u < users; u++) {
+                int picked = 0;
+                while (picked < edgesPerUser) {
+                    int v = endpoints[random.nextInt(count)];
+                    boolean repeat = false;
+                    for (int i = 0; i < picked; i++) {
+                        repeat |= chosen[i] == v;
+                    }
+                    if (!repeat) {
+                        chosen[picked++] = v;
+                    }
+                }
+                for (int i = 0; i < picked; i++) {
+                    writeFriendship(out, u, chosen[i]);
+                    endpoints[count++] = u;
+                    endpoints[count++] = chosen[i];
+                }
+            }
+        }
+        if (!partial.renameTo(file)) {
+            throw new IOException("could not create " + file);
+        }
+        return file;
+    }
+
+    private static void writeFriendship(BufferedWriter out, int u, int v) throws IOException {
+        out.write(u + " " + v + "\n");
+        out.write(v + " " + u + "\n");
+    }
+}
@@ -0,0 +1,52 @@
+package CapstoneProject;
+
+import util.FastGraphLoader;
+import util.GraphLoader;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading an edge list: the original Scanner-based loadGraph, the
+ * memory-mapped FastGraphLoader into a CapstoneDoSGraph, and straight
+ * into a CSRGraph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+    @Param({"data/facebook_1000.txt", "data/facebook_2000.txt", "powerlaw:100000"})
+    public String dataset;
+
+    private String path;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        path = GraphData.resolve(dataset).getPath();
+    }
+
+    @Benchmark
+    public CapstoneDoSGraph loadGraph() {
+        CapstoneDoSGraph graph = new CapstoneDoSGraph();
+        GraphLoader.loadGraph(graph, path);
+        return graph;
+    }
+
+    @Benchmark
+    public CapstoneDoSGraph fastLoadGraph() throws IOException {
+        CapstoneDoSGraph graph = new CapstoneDoSGraph();
+        FastGraphLoader.loadGraph(graph, path);
+        return graph;
+    }
+
+    @Benchmark
+    public CSRGraph loadCSRGraph() throws IOException {
+        return FastGraphLoader.loadCSRGraph(path);
+    }
+}
@@ -0,0 +1,107 @@
+package CapstoneProject;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CapstoneDoSGraph queries, each call on the next of a fixed,
+ * seeded sample of users or user pairs so every run measures the same
+ * mix. Run with -prof gc (BenchmarkRunner adds it by default) to see the
+ * bytes allocated per query next to the time: once warmed up, streamLevels
+ * should allocate (close to) nothing and getPath only its result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    /* size of the user and pair samples; a power of two */
+    private static final int SAMPLES = 1024;
+
+    @Param({"data/facebook_1000.txt", "data/facebook_2000.txt", "powerlaw:100000"})
+    public String dataset;
+
+    /* degree of separation for getNDegreeConnections */
+    @Param({"2"})
+    public int degree;
+
+    private CapstoneDoSGraph graph;
+    private int[] users;
+    private int[] pairs;
+
+    /* per-thread position in the samples */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        /* users seen by streamLevels, through one visitor reused for every call */
+        int seen;
+        final LevelVisitor counter = (degree, levelUsers, count) -> {
+            seen += count;
+            return true;
+        };
+
+        int advance() {
+            return next++ & (SAMPLES - 1);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        graph = GraphData.loadGraph(dataset);
+        Integer[] all = graph.adjacency().keySet().toArray(new Integer[0]);
+        Random random = new Random(7);
+        users = new int[SAMPLES];
+        pairs = new int[2 * SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            users[i] = all[random.nextInt(all.length)];
+            pairs[2 * i] = all[random.nextInt(all.length)];
+            pairs[2 * i + 1] = all[random.nextInt(all.length)];
+        }
+    }
+
+    @Benchmark
+    public List<Integer> getPath(Cursor cursor) {
+        int i = cursor.advance();
+        return graph.getPath(pairs[2 * i], pairs[2 * i + 1]);
+    }
+
+    @Benchmark
+    public int getDegreeOfSeparation(Cursor cursor) {
+        int i = cursor.advance();
+        return graph.getDegreeOfSeparation(pairs[2 * i], pairs[2 * i + 1]);
+    }
+
+    @Benchmark
+    public HashSet<Integer> getMutualFriends(Cursor cursor) {
+        int i = cursor.advance();
+        return graph.getMutualFriends(pairs[2 * i], pairs[2 * i + 1]);
+    }
+
+    @Benchmark
+    public HashSet<Integer> getNDegreeConnections(Cursor cursor) {
+        return graph.getNDegreeConnections(users[cursor.advance()], degree);
+    }
+
+    @Benchmark
+    public HashSet<Integer> getSecondDegreeMutualFriends(Cursor cursor) {
+        return graph.getSecondDegreeMutualFriends(users[cursor.advance()]);
+    }
+
+    @Benchmark
+    public SecondDegreeCounts getSecondDegreeMutualCounts(Cursor cursor) {
+        return graph.getSecondDegreeMutualCounts(users[cursor.advance()]);
+    }
+
+    @Benchmark
+    public int streamLevels(Cursor cursor) {
+        return graph.streamLevels(users[cursor.advance()], 3, cursor.counter) + cursor.seen;
+    }
+}
@@ -0,0 +1,385 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Read-only graph stored in compressed sparse row (CSR) layout.
+ *
+ * User IDs are remapped to dense indices 0..n-1 (in ascending ID order)
+ * so the adjacency of every vertex can live in two flat arrays:
+ * the out-neighbors of index v are neighbors[offsets[v] .. offsets[v+1]),
+ * sorted ascending and free of duplicates. This replaces the boxed
+ * Integer and HashSet node per edge of CapstoneDoSGraph with 4 bytes
+ * per edge, and lets the query methods in CompactGraph run over
+ * primitive arrays.
+ *
+ * The graph is built once (from a CapstoneDoSGraph, from its exportGraph()
+ * map, or from raw edge arrays) and cannot be modified afterwards.
+ */
+public class CSRGraph extends CompactGraph {
+
+    /* dense index -> original user ID, sorted ascending */
+    private final int[] vertexIds;
+    /* offsets[v]..offsets[v+1] is the neighbor range of dense index v */
+    private final int[] offsets;
+    /* sorted out-neighbors (dense indices) of every vertex, back to back */
+    private final int[] neighbors;
+    /* the same layout for in-neighbors; shares the arrays above when every edge is mutual */
+    private final int[] inOffsets;
+    private final int[] inNeighbors;
+
+    /*
+     * Constructor is kept private; use one of the static factory
+     * methods (fromGraph, fromMap, fromEdges) to build a CSRGraph
+     */
+    private CSRGraph(int[] vertexIds, int[] offsets, int[] neighbors) {
+        this.vertexIds = vertexIds;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+
+        //transpose with a counting pass; visiting sources in ascending
+        //order leaves every in-neighbor range already sorted
+        int n = vertexIds.length;
+        int[] tOffsets = new int[n + 1];
+        for (int i = 0; i < neighbors.length; i++) {
+            tOffsets[neighbors[i] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            tOffsets[v + 1] += tOffsets[v];
+        }
+        int[] cursor = Arrays.copyOf(tOffsets, n);
+        int[] tNeighbors = new int[neighbors.length];
+        for (int v = 0; v < n; v++) {
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                tNeighbors[cursor[neighbors[i]]++] = v;
+            }
+        }
+        //friendship data is usually symmetric, in which case keep one copy
+        if (Arrays.equals(tOffsets, offsets) && Arrays.equals(tNeighbors, neighbors)) {
+            this.inOffsets = offsets;
+            this.inNeighbors = neighbors;
+        } else {
+            this.inOffsets = tOffsets;
+            this.inNeighbors = tNeighbors;
+        }
+    }
+
+    /*
+     * Wraps arrays whose in-neighbor layout is already known, e.g. when
+     * read back from a GraphSnapshot; no transpose is computed
+     */
+    CSRGraph(int[] vertexIds, int[] offsets, int[] neighbors, int[] inOffsets, int[] inNeighbors) {
+        this.vertexIds = vertexIds;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.inOffsets = inOffsets;
+        this.inNeighbors = inNeighbors;
+    }
+
+    /**
+     * Builds a compact copy of an existing CapstoneDoSGraph
+     *
+     * @param g		the graph to convert
+     * @return 		a CSRGraph with the same vertices and edges
+     */
+    public static CSRGraph fromGraph(CapstoneDoSGraph g) {
+        return fromMap(g.adjacency());
+    }
+
+    /**
+     * Builds a compact graph from an exportGraph()-style adjacency map.
+     * Neighbors that do not appear as keys are added as vertices
+     * without outgoing edges.
+     *
+     * @param map	vertex -> set of vertices reachable by a directed edge
+     * @return 		a CSRGraph with the same vertices and edges
+     */
+    public static CSRGraph fromMap(Map<Integer, ? extends Set<Integer>> map) {
+        //collect every ID that appears either as a key or as a neighbor
+        int edgeCount = 0;
+        for (Set<Integer> friends : map.values()) {
+            edgeCount += friends.size();
+        }
+        int[] ids = new int[map.size() + edgeCount];
+        int n = 0;
+        for (Map.Entry<Integer, ? extends Set<Integer>> entry : map.entrySet()) {
+            ids[n++] = entry.getKey();
+            for (Integer friend : entry.getValue()) {
+                ids[n++] = friend;
+            }
+        }
+        int[] vertexIds = sortedUnique(ids, n);
+
+        //count out-degrees, then prefix sum into offsets
+        int[] offsets = new int[vertexIds.length + 1];
+        for (Map.Entry<Integer, ? extends Set<Integer>> entry : map.entrySet()) {
+            offsets[indexIn(vertexIds, entry.getKey()) + 1] = entry.getValue().size();
+        }
+        for (int v = 0; v < vertexIds.length; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+
+        //fill and sort each neighbor range (sets contain no duplicates)
+        int[] neighbors = new int[edgeCount];
+        for (Map.Entry<Integer, ? extends Set<Integer>> entry : map.entrySet()) {
+            int v = indexIn(vertexIds, entry.getKey());
+            int pos = offsets[v];
+            for (Integer friend : entry.getValue()) {
+                neighbors[pos++] = indexIn(vertexIds, friend);
+            }
+            Arrays.sort(neighbors, offsets[v], pos);
+        }
+        return new CSRGraph(vertexIds, offsets, neighbors);
+    }
+
+    /**
+     * Builds a compact graph from parallel arrays of directed edges
+     * from[i] -> to[i]. Duplicate edges are collapsed, matching the
+     * HashSet semantics of CapstoneDoSGraph.addEdge.
+     *
+     * @param from		source user ID of each edge
+     * @param to		target user ID of each edge
+     * @param count		number of edges stored in the arrays
+     * @return 			a CSRGraph containing the given edges
+     */
+    public static CSRGraph fromEdges(int[] from, int[] to, int count) {
+        int[] ids = new int[2 * count];
+        System.arraycopy(from, 0, ids, 0, count);
+        System.arraycopy(to, 0, ids, count, count);
+        int[] vertexIds = sortedUnique(ids, ids.length);
+        ids = null;
+
+        //remap the endpoints once so the fill pass does not search again
+        int[] src = new int[count];
+        int[] dst = new int[count];
+        int[] offsets = new int[vertexIds.length + 1];
+        for (int i = 0; i < count; i++) {
+            src[i] = indexIn(vertexIds, from[i]);
+            dst[i] = indexIn(vertexIds, to[i]);
+            offsets[src[i] + 1]++;
+        }
+        for (int v = 0; v < vertexIds.length; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] cursor = Arrays.copyOf(offsets, vertexIds.length);
+        int[] neighbors = new int[count];
+        for (int i = 0; i < count; i++) {
+            neighbors[cursor[src[i]]++] = dst[i];
+        }
+        return new CSRGraph(vertexIds, offsets, dedupeRanges(offsets, neighbors));
+    }
+
+    /**
+     * Parallel counterpart of fromEdges for edges that were parsed into
+     * several independent buffers (one per file chunk). The vertex table
+     * is sorted in parallel, degrees are counted with atomic increments,
+     * offsets come from a parallel prefix sum, and neighbor ranges are
+     * sorted and de-duplicated in parallel. The result is identical to
+     * fromEdges over the concatenated buffers.
+     *
+     * @param from		source user IDs, one array per chunk
+     * @param to		target user IDs, one array per chunk
+     * @param sizes		number of edges stored in each chunk
+     * @param pool		the pool that does the work
+     * @return 			a CSRGraph containing every chunk's edges
+     */
+    public static CSRGraph fromEdgeChunks(final int[][] from, final int[][] to, final int[] sizes,
+                                          ForkJoinPool pool) {
+        final int chunks = sizes.length;
+        final int[] chunkStart = new int[chunks + 1];
+        for (int c = 0; c < chunks; c++) {
+            chunkStart[c + 1] = chunkStart[c] + sizes[c];
+        }
+        final int count = chunkStart[chunks];
+
+        //vertex table: copy every endpoint, then sort and collapse repeats
+        final int[] ids = new int[2 * count];
+        Parallel.forRange(pool, chunks, 1, (lo, hi) -> {
+            for (int c = lo; c < hi; c++) {
+                System.arraycopy(from[c], 0, ids, chunkStart[c], sizes[c]);
+                System.arraycopy(to[c], 0, ids, count + chunkStart[c], sizes[c]);
+            }
+        });
+        //parallelSort forks into the calling worker's pool, so run it inside ours
+        pool.invoke(ForkJoinTask.adapt(() -> Arrays.parallelSort(ids)));
+        final int[] vertexIds = unique(ids, ids.length);
+        final int n = vertexIds.length;
+
+        //remap endpoints to dense indices and count out-degrees
+        final int[] src = new int[count];
+        final int[] dst = new int[count];
+        final AtomicIntegerArray degree = new AtomicIntegerArray(n);
+        Parallel.forRange(pool, chunks, 1, (lo, hi) -> {
+            for (int c = lo; c < hi; c++) {
+                for (int i = 0, e = chunkStart[c]; i < sizes[c]; i++, e++) {
+                    src[e] = indexIn(vertexIds, from[c][i]);
+                    dst[e] = indexIn(vertexIds, to[c][i]);
+                    degree.incrementAndGet(src[e]);
+                }
+            }
+        });
+        final int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] = degree.get(v);
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> Arrays.parallelPrefix(offsets, Integer::sum)));
+
+        //scatter edges into their ranges; slots within a range are claimed atomically
+        final AtomicIntegerArray cursor = degree;
+        for (int v = 0; v < n; v++) {
+            cursor.set(v, offsets[v]);
+        }
+        final int[] scattered = new int[count];
+        Parallel.forRange(pool, count, (lo, hi) -> {
+            for (int e = lo; e < hi; e++) {
+                scattered[cursor.getAndIncrement(src[e])] = dst[e];
+            }
+        });
+
+        //sort and de-duplicate each range in place, then compact
+        final int[] unique = new int[n + 1];
+        Parallel.forRange(pool, n, (lo, hi) -> {
+            for (int v = lo; v < hi; v++) {
+                Arrays.sort(scattered, offsets[v], offsets[v + 1]);
+                int write = offsets[v];
+                for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    if (i == offsets[v] || scattered[i] != scattered[i - 1]) {
+                        scattered[write++] = scattered[i];
+                    }
+                }
+                unique[v + 1] = write - offsets[v];
+            }
+        });
+        pool.invoke(ForkJoinTask.adapt(() -> Arrays.parallelPrefix(unique, Integer::sum)));
+        if (unique[n] == count) {
+            return new CSRGraph(vertexIds, offsets, scattered);
+        }
+        final int[] neighbors = new int[unique[n]];
+        Parallel.forRange(pool, n, (lo, hi) -> {
+            for (int v = lo; v < hi; v++) {
+                System.arraycopy(scattered, offsets[v], neighbors, unique[v], unique[v + 1] - unique[v]);
+            }
+        });
+        return new CSRGraph(vertexIds, unique, neighbors);
+    }
+
+    /*
+     * Sorts every neighbor range and removes repeated entries in place,
+     * rewriting offsets to match. Returns the (possibly trimmed) array.
+     */
+    static int[] dedupeRanges(int[] offsets, int[] neighbors) {
+        int write = 0;
+        int start = offsets[0];
+        for (int v = 0; v + 1 < offsets.length; v++) {
+            int end = offsets[v + 1];
+            Arrays.sort(neighbors, start, end);
+            offsets[v] = write;
+            for (int i = start; i < end; i++) {
+                if (i == start || neighbors[i] != neighbors[i - 1]) {
+                    neighbors[write++] = neighbors[i];
+                }
+            }
+            start = end;
+        }
+        offsets[offsets.length - 1] = write;
+        return write == neighbors.length ? neighbors : Arrays.copyOf(neighbors, write);
+    }
+
+    /* sorts the first n values and returns them without repeats */
+    private static int[] sortedUnique(int[] values, int n) {
+        Arrays.sort(values, 0, n);
+        return unique(values, n);
+    }
+
+    /* returns the first n values, already sorted, without repeats */
+    private static int[] unique(int[] values, int n) {
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, unique);
+    }
+
+    private static int indexIn(int[] vertexIds, int user) {
+        return Arrays.binarySearch(vertexIds, user);
+    }
+
+    public int vertexCount() {
+        return vertexIds.length;
+    }
+
+    public long edgeCount() {
+        return neighbors.length;
+    }
+
+    public int indexOf(int user) {
+        int v = indexIn(vertexIds, user);
+        return v >= 0 ? v : -1;
+    }
+
+    public int idOf(int v) {
+        return vertexIds[v];
+    }
+
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    public int inDegree(int v) {
+        return inOffsets[v + 1] - inOffsets[v];
+    }
+
+    public boolean isSymmetric() {
+        return inNeighbors == neighbors;
+    }
+
+    public int copyNeighbors(int v, int[] dest) {
+        int degree = offsets[v + 1] - offsets[v];
+        System.arraycopy(neighbors, offsets[v], dest, 0, degree);
+        return degree;
+    }
+
+    public int copyInNeighbors(int v, int[] dest) {
+        int degree = inOffsets[v + 1] - inOffsets[v];
+        System.arraycopy(inNeighbors, inOffsets[v], dest, 0, degree);
+        return degree;
+    }
+
+    int[] neighborArray() {
+        return neighbors;
+    }
+
+    int[] neighborOffsets() {
+        return offsets;
+    }
+
+    /*
+     * Raw views of the CSR arrays; callers must treat them as read-only
+     */
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] neighbors() {
+        return neighbors;
+    }
+
+    int[] vertexIds() {
+        return vertexIds;
+    }
+
+    int[] inOffsets() {
+        return inOffsets;
+    }
+
+    int[] inNeighbors() {
+        return inNeighbors;
+    }
+}
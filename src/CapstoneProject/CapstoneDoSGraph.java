@@ -1,6 +1,7 @@
 package CapstoneProject;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author Josh Janoe
@@ -18,7 +19,27 @@ import java.util.*;
  */
 public class CapstoneDoSGraph implements Graph {
 
-    public final HashMap<Integer,HashSet<Integer>> graphMap;
+    /* returned by getDegreeOfSeparation when no path exists */
+    public static final int UNREACHABLE = -1;
+
+    /* outgoing edges for each vertex; only addVertex/addEdge may change it */
+    private final HashMap<Integer,HashSet<Integer>> graphMap;
+    /* incoming edges for each vertex, kept in step with graphMap by addVertex/addEdge */
+    private final HashMap<Integer,HashSet<Integer>> reverseMap;
+    /* dense 0..n-1 index for every user, so traversals can keep state in int[] scratch arrays */
+    private final HashMap<Integer,Integer> denseIndex;
+    private int[] denseIds;
+    /* number of edges u -> v without a matching v -> u */
+    private int unmatchedEdges;
+    /* connected components, kept in step with graphMap by addVertex/addEdge */
+    private final ComponentIndex components = new ComponentIndex(this);
+    /* compact copy for getDegreesOfSeparation, and the components version it was built at */
+    private CSRGraph compactCopy;
+    private long compactVersion;
+    /* per-thread scratch state reused by every traversal */
+    private final ThreadLocal<TraversalContext> contexts = ThreadLocal.withInitial(TraversalContext::new);
+    /* query instrumentation, or null while it is switched off */
+    private volatile QueryMetrics metrics;
 
     /*
      * Simple constructors
@@ -27,10 +48,32 @@ public class CapstoneDoSGraph implements Graph {
      */
     public CapstoneDoSGraph() {
         graphMap = new HashMap<Integer, HashSet<Integer>>();
+        reverseMap = new HashMap<Integer, HashSet<Integer>>();
+        denseIndex = new HashMap<Integer, Integer>();
+        denseIds = new int[16];
     }
 
     public CapstoneDoSGraph(HashMap<Integer, HashSet<Integer>> gMap) {
-        graphMap = gMap;
+        //copy the sets too, so later changes to gMap cannot bypass the derived state
+        graphMap = new HashMap<Integer, HashSet<Integer>>();
+        for (Map.Entry<Integer, HashSet<Integer>> entry : gMap.entrySet()) {
+            graphMap.put(entry.getKey(), new HashSet<Integer>(entry.getValue()));
+        }
+        reverseMap = new HashMap<Integer, HashSet<Integer>>();
+        denseIndex = new HashMap<Integer, Integer>();
+        denseIds = new int[Math.max(16, graphMap.size())];
+        for (Integer user : graphMap.keySet()) {
+            assignIndex(user);
+            for (Integer friend : graphMap.get(user)) {
+                assignIndex(friend);
+                components.addEdge(indexOf(user), indexOf(friend));
+                getIncoming(friend).add(user);
+                HashSet<Integer> friendFriends = graphMap.get(friend);
+                if (!friend.equals(user) && (friendFriends == null || !friendFriends.contains(user))) {
+                    unmatchedEdges++;
+                }
+            }
+        }
     }
 
     /**
@@ -40,7 +83,148 @@ public class CapstoneDoSGraph implements Graph {
      * @param num	the num/ID of the new node
      */
     public void addVertex(int num) {
-        graphMap.put(num, new HashSet<Integer>());
+        assignIndex(num);
+        HashSet<Integer> oldNeighbors = graphMap.put(num, new HashSet<Integer>());
+        //replacing the vertex drops its outgoing edges, so drop them from reverseMap too
+        if (oldNeighbors != null) {
+            if (!oldNeighbors.isEmpty()) {
+                components.invalidate(indexOf(num));
+            }
+            for (Integer friend : oldNeighbors) {
+                reverseMap.get(friend).remove(num);
+                HashSet<Integer> friendFriends = graphMap.get(friend);
+                if (friend != num) {
+                    //the reverse edge (if any) just lost its match
+                    if (friendFriends != null && friendFriends.contains(num)) {
+                        unmatchedEdges++;
+                    } else {
+                        unmatchedEdges--;
+                    }
+                }
+            }
+        }
+    }
+
+    /* gives user the next dense index if it does not have one yet */
+    private void assignIndex(Integer user) {
+        if (!denseIndex.containsKey(user)) {
+            int index = denseIndex.size();
+            if (index == denseIds.length) {
+                denseIds = Arrays.copyOf(denseIds, 2 * index);
+            }
+            denseIds[index] = user;
+            denseIndex.put(user, index);
+            components.addIndex(index);
+        }
+    }
+
+    /**
+     * @param user	an integer representing one person's ID
+     * @return 		the user's dense index, or -1 if the user is not in the graph
+     */
+    protected int indexOf(Integer user) {
+        Integer index = denseIndex.get(user);
+        return index == null ? -1 : index;
+    }
+
+    /* the user ID at a dense index */
+    protected int idOf(int index) {
+        return denseIds[index];
+    }
+
+    /* number of dense indices handed out so far, the size scratch arrays need */
+    protected int indexCount() {
+        return denseIndex.size();
+    }
+
+    /**
+     * @return 		true if every edge u -> v is matched by an edge v -> u
+     */
+    public boolean isSymmetric() {
+        return unmatchedEdges == 0;
+    }
+
+    /**
+     * Switches query instrumentation on, or off with null. Several graphs
+     * may share one QueryMetrics.
+     *
+     * @param metrics	where the queries record their measurements
+     */
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /* the calling thread's recorder, or null while instrumentation is off */
+    private QueryMetrics.Recorder recorder() {
+        QueryMetrics m = metrics;
+        return m == null ? null : m.recorder();
+    }
+
+    /*
+     * Claims a context for one query: the caller's own if given, otherwise
+     * this thread's. A nested query on the same thread (e.g. one started
+     * from inside a LevelVisitor) gets a fresh context instead.
+     */
+    private TraversalContext claimContext(TraversalContext context) {
+        if (context == null) {
+            context = contexts.get();
+            if (context.inUse) {
+                context = new TraversalContext();
+            }
+        } else if (context.inUse) {
+            throw new IllegalStateException("TraversalContext is already in use by another query");
+        }
+        context.inUse = true;
+        return context;
+    }
+
+    /**
+     * @param user	an integer representing one person's ID
+     * @return 		the number of users in the user's connected component
+     * 				(edges taken as undirected), or 0 if the user is missing
+     */
+    public int componentSize(Integer user) {
+        int index = indexOf(user);
+        return index < 0 ? 0 : components.componentSize(index);
+    }
+
+    /**
+     * Reachability check from the component index, O(1) amortized
+     *
+     * @param user1	an integer representing the starting person's ID
+     * @param user2	an integer representing the target person's ID
+     * @return 		false if there is certainly no path from user1 to user2;
+     * 				true if there may be one (for a symmetric graph, there is)
+     */
+    public boolean mayReach(Integer user1, Integer user2) {
+        int u = indexOf(user1);
+        int v = indexOf(user2);
+        return u >= 0 && v >= 0 && components.mayReach(u, v);
+    }
+
+    /* version stamps for QueryCache; 0 for users not in the graph */
+    long vertexVersion(Integer user) {
+        int index = indexOf(user);
+        return index < 0 ? 0 : components.vertexVersion(index);
+    }
+
+    long componentVersion(Integer user) {
+        int index = indexOf(user);
+        return index < 0 ? 0 : components.componentVersion(index);
+    }
+
+    /* returns the set of users with an edge into user, creating it if needed */
+    private HashSet<Integer> getIncoming(Integer user) {
+        HashSet<Integer> incoming = reverseMap.get(user);
+        if (incoming == null) {
+            incoming = new HashSet<Integer>();
+            reverseMap.put(user, incoming);
+        }
+        return incoming;
     }
 
 
@@ -49,33 +233,193 @@ public class CapstoneDoSGraph implements Graph {
      * and compares common connections
      *
      * @param user		integer representing the user ID used as the starting point
-     * @return 			a HashMap of all the connections of the firstDegreeConnection
-     * 					and their mutual friends with the user
+     * @return 			the user's friends that are also friends with at least
+     * 					one of the user's second degree connections
      */
     public HashSet<Integer> getSecondDegreeMutualFriends (Integer user) {
         HashSet<Integer> secondDegreeMutualFriends = new HashSet<Integer>();
-        HashSet<Integer> secondDegreeConnections = getNDegreeConnections(user, 2);
-        for (Integer connection : secondDegreeConnections){
-            HashSet<Integer> mutualFriends = getMutualFriends(user,connection);
-            secondDegreeMutualFriends.addAll(mutualFriends);
+        for (int friend : getSecondDegreeMutualCounts(user).mutualFriends){
+            secondDegreeMutualFriends.add(friend);
         }
         return secondDegreeMutualFriends;
     }
 
+    /**
+     * Finds every second degree connection of a user together with how many
+     * mutual friends they share, in one pass over the friends' friends
+     * instead of a getMutualFriends call per connection. Counts are kept in
+     * a primitive array indexed by dense user index.
+     *
+     * For a symmetric graph each friend's list is walked once. Otherwise
+     * the friends' outgoing lists find the candidates and their incoming
+     * lists count the mutual friends, matching getMutualFriends exactly.
+     *
+     * @param user		integer representing the user ID used as the starting point
+     * @return 			the second degree connections, their mutual friend counts
+     * 					and the friends that link to at least one of them
+     */
+    public SecondDegreeCounts getSecondDegreeMutualCounts (Integer user) {
+        return getSecondDegreeMutualCounts(user, null);
+    }
+
+    /**
+     * getSecondDegreeMutualCounts using the caller's scratch state
+     *
+     * @param user		integer representing the user ID used as the starting point
+     * @param context	scratch state to reuse, or null for this thread's own
+     * @return 			the second degree connections, their mutual friend counts
+     * 					and the friends that link to at least one of them
+     */
+    public SecondDegreeCounts getSecondDegreeMutualCounts (Integer user, TraversalContext context) {
+        QueryMetrics.Recorder recorder = recorder();
+        if (recorder == null){
+            return countSecondDegree(user, context, null);
+        }
+        long started = System.nanoTime();
+        SecondDegreeCounts counts = countSecondDegree(user, context, recorder);
+        recorder.record(QueryMetrics.Query.GET_SECOND_DEGREE_MUTUAL_COUNTS, started, counts.size());
+        return counts;
+    }
+
+    private SecondDegreeCounts countSecondDegree (Integer user, TraversalContext context, QueryMetrics.Recorder recorder) {
+        HashSet<Integer> friends = getConnections(user);
+        if (friends == null){
+            return new SecondDegreeCounts(user, new int[0], new int[0], new int[0]);
+        }
+        TraversalContext ctx = claimContext(context);
+        try {
+            //stamp: selfOrFriend, candidate (exactly 2 degrees away), or anything else = unseen
+            int selfOrFriend = ctx.begin(indexCount());
+            int candidate = selfOrFriend + 1;
+            int[] stamp = ctx.stamp;
+            int[] mutualCounts = ctx.parent;
+            int[] candidates = ctx.otherParent;
+            int numCandidates = 0;
+            int[] linkingFriends = ctx.ids;
+            int numLinking = 0;
+            long edges = 0;
+            boolean symmetric = isSymmetric();
+
+            stamp[indexOf(user)] = selfOrFriend;
+            for (Integer friend : friends){
+                stamp[indexOf(friend)] = selfOrFriend;
+            }
+            for (Integer friend : friends){
+                HashSet<Integer> friendFriends = graphMap.get(friend);
+                if (friendFriends == null){
+                    continue;
+                }
+                edges += friendFriends.size();
+                boolean links = false;
+                for (Integer next : friendFriends){
+                    int w = indexOf(next);
+                    if (stamp[w] != selfOrFriend && stamp[w] != candidate){
+                        stamp[w] = candidate;
+                        mutualCounts[w] = 0;
+                        candidates[numCandidates++] = w;
+                    }
+                    if (symmetric && stamp[w] == candidate){
+                        mutualCounts[w]++;
+                        links = true;
+                    }
+                }
+                if (links){
+                    linkingFriends[numLinking++] = friend;
+                }
+            }
+            if (!symmetric){
+                //a candidate c shares friend f with user when c -> f, so walk f's incoming edges
+                for (Integer friend : friends){
+                    boolean links = false;
+                    HashSet<Integer> incoming = getIncoming(friend);
+                    edges += incoming.size();
+                    for (Integer prev : incoming){
+                        int w = indexOf(prev);
+                        if (stamp[w] == candidate){
+                            mutualCounts[w]++;
+                            links = true;
+                        }
+                    }
+                    if (links){
+                        linkingFriends[numLinking++] = friend;
+                    }
+                }
+            }
+
+            int[] candidateIds = new int[numCandidates];
+            int[] candidateCounts = new int[numCandidates];
+            for (int i = 0; i < numCandidates; i++){
+                candidateIds[i] = denseIds[candidates[i]];
+                candidateCounts[i] = mutualCounts[candidates[i]];
+            }
+            if (recorder != null){
+                recorder.work(1 + friends.size() + numCandidates, edges);
+            }
+            return new SecondDegreeCounts(user, candidateIds, candidateCounts,
+                    Arrays.copyOf(linkingFriends, numLinking));
+        } finally {
+            ctx.inUse = false;
+        }
+    }
+
     /**
      * Helper method to find the degree of separation between
      * any 2 given users
      *
      * @param user1		an integer representing one person's ID
      * @param user2		an integer representing a second person's ID
-     * @return 			the degree of separtion between user1 and user2
+     * @return 			the degree of separtion between user1 and user2,
+     * 					or UNREACHABLE if either user is missing or
+     * 					there is no path between them
      */
     public int getDegreeOfSeparation (Integer user1, Integer user2){
-        if (!validUserCheck(user1,user2)){
-            return 0;
+        return getDegreeOfSeparation(user1, user2, null);
+    }
+
+    /**
+     * getDegreeOfSeparation using the caller's scratch state
+     *
+     * @param context	scratch state to reuse, or null for this thread's own
+     */
+    public int getDegreeOfSeparation (Integer user1, Integer user2, TraversalContext context){
+        QueryMetrics.Recorder recorder = recorder();
+        long started = recorder == null ? 0 : System.nanoTime();
+        int degree = UNREACHABLE;
+        if (validUserCheck(user1,user2)){
+            List<Integer> path = getPath(user1, user2, context);
+            if (path != null){
+                degree = path.size();
+            }
         }
-        List<Integer> path = getPath(user1, user2);
-        return path.size();
+        if (recorder != null){
+            recorder.record(QueryMetrics.Query.GET_DEGREE_OF_SEPARATION, started, Math.max(0, degree));
+        }
+        return degree;
+    }
+
+    /**
+     * Degrees of separation for many pairs at once, answered on a compact
+     * copy of the graph with one BFS per distinct source (see DistanceBatch).
+     * The copy is kept between calls and only rebuilt after the graph changed.
+     *
+     * @param users1	the first user ID of each pair
+     * @param users2	the second user ID of each pair
+     * @param pool		the pool that runs the searches
+     * @return 			the degree of separation of each pair, in order,
+     * 					or UNREACHABLE where there is no path
+     */
+    public int[] getDegreesOfSeparation (int[] users1, int[] users2, ForkJoinPool pool){
+        return DistanceBatch.compute(compactCopy(), users1, users2, pool);
+    }
+
+    /* the compact copy of the graph as it is now, rebuilt only if a user or edge was added since */
+    private synchronized CSRGraph compactCopy() {
+        long version = components.version();
+        if (compactCopy == null || compactVersion != version) {
+            compactCopy = CSRGraph.fromGraph(this);
+            compactVersion = version;
+        }
+        return compactCopy;
     }
 
     private boolean validUserCheck(Integer user1, Integer user2){
@@ -101,103 +445,269 @@ public class CapstoneDoSGraph implements Graph {
      * @return 			a list (or HashSet) of the users with
      * 					n degrees of separation from the user
      */
-    protected HashSet<Integer> getNDegreeConnections(Integer user, int degreeOfSeparation){
+    protected HashSet<Integer> getNDegreeConnections(Integer user, final int degreeOfSeparation){
+        QueryMetrics.Recorder recorder = recorder();
+        long started = recorder == null ? 0 : System.nanoTime();
         //create list to return with all connection and n degrees of separation
-        HashSet<Integer> connections = new HashSet<Integer>();
-        HashSet<Integer> currConnections = getConnections(user);
-        HashSet<Integer> visited = new HashSet<Integer>();
-        Queue<Integer> toVisit = new LinkedList<Integer>();
-        HashSet<Integer> toVisitQuickRef = new HashSet<Integer>();
-        int currDegree = 0;
-        int remainingInCurrDegree = 1;
-
-        toVisit.add(user);
-        //Breadth First Search
-        while (!toVisit.isEmpty() && degreeOfSeparation > currDegree){
-            Integer currConnection = toVisit.remove();
-            visited.add(currConnection);
-            toVisitQuickRef.remove(currConnection);
-            currConnections = getConnections(currConnection);
-            if (currConnections != null){
-                for (Integer connection : currConnections) {
-                    if(!toVisitQuickRef.contains(connection) && !visited.contains(connection) && connection != user){
-                        toVisit.add(connection);
-                        toVisitQuickRef.add(connection);
+        final HashSet<Integer> connections = new HashSet<Integer>();
+        if (degreeOfSeparation == 0){
+            connections.add(user);
+        } else {
+            //stream the levels and keep only the one asked for
+            streamLevels(user, degreeOfSeparation, new LevelVisitor() {
+                public boolean visitLevel(int degree, int[] users, int count) {
+                    if (degree == degreeOfSeparation){
+                        for (int i = 0; i < count; i++){
+                            connections.add(users[i]);
+                        }
                     }
+                    return true;
                 }
-            }
-            //counter that makes new counter equal to size of toVisit list whenever the current counter = 0
-            remainingInCurrDegree--;
-            if (remainingInCurrDegree==0){
-                remainingInCurrDegree = toVisit.size();
-                currDegree++;
-            }
+            });
         }
-        //connections = (HashSet<Integer>) toVisit;
-        for ( int i : toVisit){
-            connections.add(i);
+        if (recorder != null){
+            recorder.record(QueryMetrics.Query.GET_N_DEGREE_CONNECTIONS, started, connections.size());
         }
         return connections;
     }
 
+    /**
+     * Breadth first search that hands each level to the visitor as soon
+     * as it is complete, so one traversal can answer questions about every
+     * degree of separation, and the visitor can stop it early (e.g. at the
+     * first level with more than 10k users, or once a target appears).
+     * Scratch state comes from a TraversalContext, and the search stops as
+     * soon as it has seen the user's whole connected component.
+     *
+     * @param user		an integer representing one person's ID
+     * @param maxDegree	the last degree of separation to visit
+     * @param visitor	receives each level; returns false to stop
+     * @return 			the number of levels handed to the visitor
+     */
+    public int streamLevels (Integer user, int maxDegree, LevelVisitor visitor){
+        return streamLevels(user, maxDegree, visitor, null);
+    }
+
+    /**
+     * streamLevels using the caller's scratch state
+     *
+     * @param context	scratch state to reuse, or null for this thread's own
+     */
+    public int streamLevels (Integer user, int maxDegree, LevelVisitor visitor, TraversalContext context){
+        QueryMetrics.Recorder recorder = recorder();
+        if (recorder == null){
+            return traverseLevels(user, maxDegree, visitor, context, null);
+        }
+        long started = System.nanoTime();
+        int levels = traverseLevels(user, maxDegree, visitor, context, recorder);
+        recorder.record(QueryMetrics.Query.STREAM_LEVELS, started, levels);
+        return levels;
+    }
+
+    private int traverseLevels (Integer user, int maxDegree, LevelVisitor visitor, TraversalContext context,
+                                QueryMetrics.Recorder recorder){
+        int start = indexOf(user);
+        if (start < 0){
+            return 0;
+        }
+        //no level can add users once the whole component has been seen
+        int reachable = components.componentSize(start);
+        TraversalContext ctx = claimContext(context);
+        try {
+            int visited = ctx.begin(indexCount());
+            int[] stamp = ctx.stamp;
+            Integer[] queue = ctx.queue;
+            stamp[start] = visited;
+            queue[0] = user;
+            int head = 0;
+            int tail = 1;
+            long edges = 0;
+
+            int degree = 0;
+            while (head < tail && degree < maxDegree && tail < reachable){
+                int levelEnd = tail;
+                if (recorder != null){
+                    recorder.level(QueryMetrics.Query.STREAM_LEVELS, levelEnd - head);
+                }
+                for (int q = head; q < levelEnd; q++){
+                    HashSet<Integer> currConnections = getConnections(queue[q]);
+                    if (currConnections == null){
+                        continue;
+                    }
+                    edges += currConnections.size();
+                    for (Integer connection : currConnections){
+                        int w = indexOf(connection);
+                        if (stamp[w] != visited){
+                            stamp[w] = visited;
+                            queue[tail++] = connection;
+                        }
+                    }
+                }
+                head = levelEnd;
+                if (head == tail){
+                    break;
+                }
+                degree++;
+                for (int i = head; i < tail; i++){
+                    ctx.ids[i - head] = queue[i];
+                }
+                if (!visitor.visitLevel(degree, ctx.ids, tail - head)){
+                    break;
+                }
+            }
+            if (recorder != null){
+                recorder.work(tail, edges);
+            }
+            return degree;
+        } finally {
+            ctx.inUse = false;
+        }
+    }
+
+    /**
+     * Finds a shortest path between two users with a bidirectional
+     * breadth first search: one search follows edges out of user1, the
+     * other follows edges into user2, and each round grows whichever
+     * frontier is smaller by one full level until the two searches meet.
+     *
+     * @param user1		an integer representing the starting person's ID
+     * @param user2		an integer representing the target person's ID
+     * @return 			the path from user2 back towards user1 (user1 itself
+     * 					is not included), or null if either user is missing
+     * 					or user2 cannot be reached from user1
+     */
     protected List<Integer> getPath(Integer user1, Integer user2){
-        //System.out.println("Finding Path...");
+        return getPath(user1, user2, null);
+    }
 
+    /**
+     * getPath using the caller's scratch state
+     *
+     * @param context	scratch state to reuse, or null for this thread's own
+     */
+    protected List<Integer> getPath(Integer user1, Integer user2, TraversalContext context){
+        QueryMetrics.Recorder recorder = recorder();
+        if (recorder == null){
+            return searchPath(user1, user2, context, null);
+        }
+        long started = System.nanoTime();
+        List<Integer> path = searchPath(user1, user2, context, recorder);
+        recorder.record(QueryMetrics.Query.GET_PATH, started, path == null ? 0 : path.size());
+        return path;
+    }
+
+    private List<Integer> searchPath(Integer user1, Integer user2, TraversalContext context,
+                                     QueryMetrics.Recorder recorder){
         if (!validUserCheck(user1,user2)){
             return null;
         }
+        if (user1.equals(user2)){
+            return new ArrayList<Integer>();
+        }
+        //different components: no need to search at all
+        if (!mayReach(user1, user2)){
+            return null;
+        }
 
-        List<Integer> path = new ArrayList<Integer>();
-        HashMap<Integer,Integer> parentMap = new HashMap<Integer,Integer>();//child,parent
-        Queue<Integer> toVisit = new LinkedList<Integer>();
-        HashSet<Integer> visited = new HashSet<Integer>();
-
-        toVisit.add(user1);
-        parentMap.put(user1,null);
-
-        while (!toVisit.isEmpty()){
-            Integer currUser = toVisit.remove();
-            //System.out.print(currUser+": { ");
-            HashSet<Integer> currFriends = graphMap.get(currUser);
-            if(currFriends.contains(user2)){
-                parentMap.put(user2,currUser);
-                //System.out.println(user2+" }");
-                break;
-            }
-            for (Integer friend : currFriends){
-                if(!toVisit.contains(friend)){
-                    toVisit.add(friend);
+        TraversalContext ctx = claimContext(context);
+        try {
+            //stamp[v] == fwd or bwd says which search reached v; parent/otherParent are child -> parent
+            int fwd = ctx.begin(indexCount());
+            int bwd = fwd + 1;
+            int start = indexOf(user1);
+            int end = indexOf(user2);
+            ctx.stamp[start] = fwd;
+            ctx.stamp[end] = bwd;
+            ctx.parent[start] = -1;
+            ctx.otherParent[end] = -1;
+            ctx.queue[0] = user1;
+            ctx.otherQueue[0] = user2;
+            int fwdHead = 0, fwdTail = 1;
+            int bwdHead = 0, bwdTail = 1;
+
+            List<Integer> path = null;
+            while (fwdHead < fwdTail && bwdHead < bwdTail){
+                int meet;
+                if (fwdTail - fwdHead <= bwdTail - bwdHead){
+                    int levelEnd = fwdTail;
+                    if (recorder != null){
+                        recorder.level(QueryMetrics.Query.GET_PATH, levelEnd - fwdHead);
+                    }
+                    meet = expandLevel(ctx, ctx.queue, fwdHead, levelEnd, graphMap, fwd, bwd, ctx.parent);
+                    fwdHead = levelEnd;
+                    fwdTail = meet < 0 ? -meet - 1 : fwdTail;
+                } else {
+                    int levelEnd = bwdTail;
+                    if (recorder != null){
+                        recorder.level(QueryMetrics.Query.GET_PATH, levelEnd - bwdHead);
+                    }
+                    meet = expandLevel(ctx, ctx.otherQueue, bwdHead, levelEnd, reverseMap, bwd, fwd, ctx.otherParent);
+                    bwdHead = levelEnd;
+                    bwdTail = meet < 0 ? -meet - 1 : bwdTail;
                 }
-                if (!parentMap.containsKey(friend)) {
-                    parentMap.put(friend, currUser);
+                if (meet >= 0){
+                    path = reconstructPath(start, meet, ctx.parent, ctx.otherParent);
+                    break;
                 }
-                //System.out.print(friend + ", ");
             }
-            //System.out.println(" }");
-            visited.add(currUser);
-            if (currUser == user2){
-                break;
+            if (recorder != null){
+                recorder.work(fwdTail + bwdTail, ctx.edges);
             }
+            return path;
+        } finally {
+            ctx.inUse = false;
         }
-        path = reconstructPath(user1, user2, parentMap);
-        return path;
     }
 
-    private List<Integer> reconstructPath(Integer start, Integer end, HashMap<Integer, Integer> parentMap) {
-        //System.out.println("Reconstructing Path...");
-        List<Integer> path = new ArrayList<Integer>();
-        Integer currUser = end;
-        while (true){
-            //System.out.print(currUser+" <-- ");
-            path.add(currUser);
-            currUser = parentMap.get(currUser);
-            if (currUser == start){
-                //System.out.println(currUser);
-                break;
+    /*
+     * Grows one side of the bidirectional search by a full level, taking
+     * queue[head..levelEnd) and appending the next level after it.
+     * Returns the dense index of the first user already reached by the
+     * other side, or -(newTail + 1) if the searches have not met yet.
+     * Since both sides advance a whole level at a time, the first meeting
+     * point found always lies on a shortest path.
+     */
+    private int expandLevel(TraversalContext ctx, Integer[] queue, int head, int levelEnd,
+                            HashMap<Integer,HashSet<Integer>> adjacency,
+                            int mark, int otherMark, int[] parent){
+        int[] stamp = ctx.stamp;
+        int tail = levelEnd;
+        for (int q = head; q < levelEnd; q++){
+            Integer currUser = queue[q];
+            HashSet<Integer> currFriends = adjacency.get(currUser);
+            if (currFriends == null){
+                continue;
+            }
+            ctx.edges += currFriends.size();
+            int curr = indexOf(currUser);
+            for (Integer friend : currFriends){
+                int w = indexOf(friend);
+                if (stamp[w] != mark){
+                    parent[w] = curr;
+                    if (stamp[w] == otherMark){
+                        return w;
+                    }
+                    stamp[w] = mark;
+                    queue[tail++] = friend;
+                }
             }
         }
-        int pathSize = path.size();
-        //System.out.println("Degress of Separation: "+pathSize);
+        return -(tail + 1);
+    }
+
+    /*
+     * Joins the two halves of a bidirectional search at the meeting user:
+     * the target back to meet, then meet back to (but excluding) start
+     */
+    private List<Integer> reconstructPath(int start, int meet, int[] fwdParent, int[] bwdParent) {
+        List<Integer> path = new ArrayList<Integer>();
+        for (int v = bwdParent[meet]; v >= 0; v = bwdParent[v]){
+            path.add(denseIds[v]);
+        }
+        Collections.reverse(path);
+        for (int v = meet; v != start; v = fwdParent[v]){
+            path.add(denseIds[v]);
+        }
         return path;
     }
 
@@ -221,6 +731,8 @@ public class CapstoneDoSGraph implements Graph {
      * @return 			the connections shared by both people
      */
     protected HashSet<Integer> getMutualFriends (Integer user1, Integer user2){
+        QueryMetrics.Recorder recorder = recorder();
+        long started = recorder == null ? 0 : System.nanoTime();
         //create empty list to return with shared friends/connections
         HashSet<Integer> mutualFriends = new HashSet<Integer>();
         //verify both are people exist in the graph
@@ -228,17 +740,56 @@ public class CapstoneDoSGraph implements Graph {
             //obtain list of friends for both people
             HashSet<Integer> person1Friends = getConnections(user1);
             HashSet<Integer> person2Friends = getConnections(user2);
-            //iterate over 1 list and compare with contents of other
+            //iterate over the smaller list and probe the larger one
+            if (person1Friends.size() > person2Friends.size()) {
+                HashSet<Integer> temp = person1Friends;
+                person1Friends = person2Friends;
+                person2Friends = temp;
+            }
             for (Integer friend : person1Friends) {
                 //if a person is in both lists add to mutual friends list
                 if (person2Friends.contains(friend)) {
                     mutualFriends.add(friend);
                 }
             }
+            if (recorder != null) {
+                recorder.work(2, person1Friends.size());
+            }
+        }
+        if (recorder != null) {
+            recorder.record(QueryMetrics.Query.GET_MUTUAL_FRIENDS, started, mutualFriends.size());
         }
         return mutualFriends;
     }
 
+    /**
+     * Counts the mutual/shared connections between two
+     * individuals without building a result set
+     *
+     * @param user1	an integer representing one person's ID
+     * @param user2	an integer representing a second person's ID
+     * @return 			the number of connections shared by both people
+     */
+    protected int countMutualFriends (Integer user1, Integer user2){
+        HashSet<Integer> person1Friends = getConnections(user1);
+        HashSet<Integer> person2Friends = getConnections(user2);
+        if (person1Friends == null || person2Friends == null) {
+            return 0;
+        }
+        if (person1Friends.size() > person2Friends.size()) {
+            HashSet<Integer> temp = person1Friends;
+            person1Friends = person2Friends;
+            person2Friends = temp;
+        }
+        int count = 0;
+        for (Integer friend : person1Friends) {
+            if (person2Friends.contains(friend)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Simple helper method to determine if a given user
      * is a shared connection between two other users
@@ -273,15 +824,37 @@ public class CapstoneDoSGraph implements Graph {
         if (!graphMap.containsKey(to)) this.addVertex(to);
         //get current list of edges for "from"
         HashSet<Integer> neighbors = graphMap.get(from);
-        neighbors.add(to);
+        if (neighbors.add(to)) {
+            components.addEdge(indexOf(from), indexOf(to));
+            if (from != to) {
+                if (graphMap.get(to).contains(from)) {
+                    unmatchedEdges--;
+                } else {
+                    unmatchedEdges++;
+                }
+            }
+        }
         graphMap.put(from, neighbors);
+        getIncoming(to).add(from);
     }
 
     /**
-     *
+     * Returns a copy of the adjacency map; changing it does not change
+     * the graph, which only grows through addVertex and addEdge
      */
     public HashMap<Integer, HashSet<Integer>> exportGraph() {
-        // TODO Auto-generated method stub
-        return graphMap;
+        HashMap<Integer, HashSet<Integer>> copy = new HashMap<Integer, HashSet<Integer>>();
+        for (Map.Entry<Integer, HashSet<Integer>> entry : graphMap.entrySet()) {
+            copy.put(entry.getKey(), new HashSet<Integer>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * Read-only view of the adjacency map for code in this package that
+     * reads the whole graph without paying for exportGraph's copy
+     */
+    Map<Integer, HashSet<Integer>> adjacency() {
+        return Collections.unmodifiableMap(graphMap);
     }
 }
\ No newline at end of file
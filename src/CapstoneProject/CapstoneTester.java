@@ -2,19 +2,28 @@ package CapstoneProject;
 
 import org.junit.Before;
 import org.junit.Test;
+import util.FastGraphLoader;
 import util.GraphLoader;
-import warmup.Graph;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class CapstoneTester {
 
     private CapstoneDoSGraph testCG;
     private int numNodes = 7;
-    private String filename = "data/facebook_ucsd.txt";
+    private String filename = "data/facebook_2000.txt";
     //private String filename = "data/mutualFriendsTest.txt";
     //private String filename = "data/nthDegreeConnectionsTest.txt";
 
@@ -92,15 +101,18 @@ public class CapstoneTester {
     public void nthDegreeConnectionsTest (){
         testCG = new CapstoneDoSGraph();
         loadGraph(testCG, filename);
-        Integer userN = 1;
+        final Integer userN = 1;
         printNthDegreeConnections(userN,0);
-        printNthDegreeConnections(userN,1);
-        printNthDegreeConnections(userN,2);
-        printNthDegreeConnections(userN,3);
-        printNthDegreeConnections(userN,4);
-        printNthDegreeConnections(userN,5);
-        printNthDegreeConnections(userN,6);
-        printNthDegreeConnections(userN,7);
+        //one traversal prints every level instead of one BFS per degree
+        int levels = testCG.streamLevels(userN, 7, new LevelVisitor() {
+            public boolean visitLevel(int degree, int[] users, int count) {
+                printLevel(userN, degree, users, count);
+                return true;
+            }
+        });
+        for (int degree=levels+1; degree<=7; degree++){
+            printLevel(userN, degree, new int[0], 0);
+        }
         System.out.println("----------------");
     }
 
@@ -115,12 +127,23 @@ public class CapstoneTester {
         System.out.println("----------------");
     }
 
+    @Test
+    public void parallelLoadTest () throws IOException {
+        testCG = new CapstoneDoSGraph();
+        loadGraph(testCG, "data/facebook_2000.txt");
+        CSRGraph parallelCG = FastGraphLoader.loadCSRGraph("data/facebook_2000.txt", 4);
+        assertEquals(testCG.exportGraph(), parallelCG.exportGraph());
+        assertEquals(testCG.exportGraph(), FastGraphLoader.loadCSRGraph("data/facebook_2000.txt").exportGraph());
+    }
+
     @Test
     public void getAverageConnectionsAcrossDegreesOfSeparation (){
         testCG = new CapstoneDoSGraph();
         loadGraph(testCG, filename);
+        //one bit-parallel pass gives every degree at once instead of a BFS per vertex per degree
+        HopDistribution hops = HopDistribution.compute(CSRGraph.fromGraph(testCG), 9, ForkJoinPool.commonPool());
         for (int i=1; i<=9; i++){
-            int avgAtDegree = getAverageConnectionsAtNDegrees(testCG,i);
+            int avgAtDegree = (int) hops.averageAt(i);
             System.out.println("Average of "+ avgAtDegree+" connections at "+i+" degrees of separation");
             if (avgAtDegree == 0){
                 break;
@@ -128,13 +151,1359 @@ public class CapstoneTester {
         }
     }
 
-    private int getAverageConnectionsAtNDegrees (CapstoneDoSGraph g, Integer degree){
-        int total = 0;
-        for (int i=1; i < getNumNodes(); i++){
-            HashSet<Integer> connections = testCG.getNDegreeConnections(i, degree);
-            total += connections.size();
+    @Test
+    public void hopDistributionTest (){
+        testCG = new CapstoneDoSGraph();
+        loadGraph(testCG, "data/nthDegreeConnectionsTest.txt");
+        CSRGraph compactCG = CSRGraph.fromGraph(testCG);
+        HopDistribution hops = HopDistribution.compute(compactCG, ForkJoinPool.commonPool());
+        for (int degree=1; degree<=hops.maxSeparation(); degree++){
+            int[] counts = hops.countsAt(degree);
+            for (int v=0; v<compactCG.vertexCount(); v++){
+                assertEquals(testCG.getNDegreeConnections(compactCG.idOf(v), degree).size(), counts[v]);
+            }
+        }
+    }
+
+    @Test
+    public void landmarkIndexTest (){
+        testCG = new CapstoneDoSGraph();
+        loadGraph(testCG, "data/facebook_1000.txt");
+        CSRGraph compactCG = CSRGraph.fromGraph(testCG);
+        LandmarkIndex landmarks = LandmarkIndex.build(compactCG, 8, ForkJoinPool.commonPool());
+        for (int u=0; u<compactCG.vertexCount(); u+=7){
+            for (int v=0; v<compactCG.vertexCount(); v+=11){
+                int user1 = compactCG.idOf(u);
+                int user2 = compactCG.idOf(v);
+                int exact = compactCG.getDegreeOfSeparation(user1, user2);
+                assertEquals(exact, landmarks.getDegreeOfSeparation(user1, user2));
+                if (exact != CapstoneDoSGraph.UNREACHABLE){
+                    assertTrue(landmarks.lowerBound(user1, user2) <= exact);
+                    assertTrue(landmarks.upperBound(user1, user2) >= exact);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void triangleCountTest (){
+        testCG = new CapstoneDoSGraph();
+        loadGraph(testCG, "data/facebook_1000.txt");
+        CSRGraph compactCG = CSRGraph.fromGraph(testCG);
+        TriangleCounts triangles = TriangleCounts.compute(compactCG, ForkJoinPool.commonPool());
+        //every triangle through a user is a mutual friend of two of their friendships
+        for (int v=0; v<compactCG.vertexCount(); v++){
+            int user = compactCG.idOf(v);
+            long sharedFriends = 0;
+            for (int friend : testCG.getConnections(user)){
+                sharedFriends += testCG.getMutualFriends(user, friend).size();
+            }
+            assertEquals(sharedFriends / 2, triangles.trianglesAt(v));
+        }
+        WedgeSampler estimate = WedgeSampler.estimate(compactCG, 100000, 1, ForkJoinPool.commonPool());
+        assertTrue(Math.abs(estimate.transitivity() - triangles.transitivity()) <= 4 * estimate.transitivityStandardError());
+    }
+
+    @Test
+    public void bidirectionalPathTest (){
+        testCG = new CapstoneDoSGraph();
+        loadGraph(testCG, "data/facebook_1000.txt");
+        List<Integer> users = sortHashSet(new HashSet<Integer>(getNodes()));
+        for (int i=0; i<users.size(); i+=37){
+            Integer user1 = users.get(i);
+            HashMap<Integer, Integer> distances = bfsDistances(user1);
+            for (int j=0; j<users.size(); j+=13){
+                Integer user2 = users.get(j);
+                List<Integer> path = testCG.getPath(user1, user2);
+                if (!distances.containsKey(user2)){
+                    assertTrue(path == null);
+                    assertEquals(CapstoneDoSGraph.UNREACHABLE, testCG.getDegreeOfSeparation(user1, user2));
+                    continue;
+                }
+                //the path lists user2 first and walks back towards, but excludes, user1
+                assertEquals((int) distances.get(user2), path.size());
+                assertEquals(path.size(), testCG.getDegreeOfSeparation(user1, user2));
+                Integer prev = user1;
+                for (int k=path.size()-1; k>=0; k--){
+                    assertTrue(testCG.getConnections(prev).contains(path.get(k)));
+                    prev = path.get(k);
+                }
+                if (!path.isEmpty()){
+                    assertEquals(user2, path.get(0));
+                }
+            }
+        }
+        Integer user = users.get(0);
+        assertTrue(testCG.getPath(user, user).isEmpty());
+        assertEquals(0, testCG.getDegreeOfSeparation(user, user));
+        Integer missing = users.get(users.size()-1) + 1;
+        assertTrue(testCG.getPath(user, missing) == null);
+        assertEquals(CapstoneDoSGraph.UNREACHABLE, testCG.getDegreeOfSeparation(missing, user));
+        Integer isolated = missing + 1;
+        testCG.addVertex(isolated);
+        assertTrue(testCG.getPath(user, isolated) == null);
+        assertTrue(testCG.getPath(isolated, user) == null);
+        assertEquals(CapstoneDoSGraph.UNREACHABLE, testCG.getDegreeOfSeparation(user, isolated));
+    }
+
+    //plain breadth first search distances from user over getConnections
+    private HashMap<Integer, Integer> bfsDistances(Integer user){
+        HashMap<Integer, Integer> distances = new HashMap<Integer, Integer>();
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        distances.put(user, 0);
+        queue.add(user);
+        while (!queue.isEmpty()){
+            Integer curr = queue.poll();
+            for (Integer friend : testCG.getConnections(curr)){
+                if (!distances.containsKey(friend)){
+                    distances.put(friend, distances.get(curr) + 1);
+                    queue.add(friend);
+                }
+            }
+        }
+        return distances;
+    }
+
+    @Test
+    public void snapshotRoundTripTest () throws IOException{
+        testCG = new CapstoneDoSGraph();
+        loadGraph(testCG, "data/facebook_1000.txt");
+        CSRGraph graph = CSRGraph.fromGraph(testCG);
+        File file = File.createTempFile("snapshot", ".dosg");
+        file.deleteOnExit();
+        try {
+            GraphSnapshot.save(graph, file.getPath());
+            CSRGraph loaded = GraphSnapshot.load(file.getPath());
+            assertTrue(Arrays.equals(graph.vertexIds(), loaded.vertexIds()));
+            assertTrue(Arrays.equals(graph.offsets(), loaded.offsets()));
+            assertTrue(Arrays.equals(graph.neighbors(), loaded.neighbors()));
+            assertTrue(Arrays.equals(graph.inOffsets(), loaded.inOffsets()));
+            assertTrue(Arrays.equals(graph.inNeighbors(), loaded.inNeighbors()));
+            assertEquals(graph.isSymmetric(), loaded.isSymmetric());
+
+            //flip one byte of the payload: the checksum must reject the file
+            RandomAccessFile raw = new RandomAccessFile(file, "rw");
+            try {
+                long at = raw.length() / 2;
+                raw.seek(at);
+                int b = raw.read();
+                raw.seek(at);
+                raw.write(b ^ 0x10);
+            } finally {
+                raw.close();
+            }
+            boolean rejected = false;
+            try {
+                GraphSnapshot.load(file.getPath());
+            } catch (IOException e){
+                rejected = true;
+            }
+            assertTrue(rejected);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void queryCacheConsistencyTest (){
+        testCG = new CapstoneDoSGraph();
+        Random random = new Random(16);
+        for (int i=0; i<300; i++){
+            testCG.addEdge(random.nextInt(200), random.nextInt(200));
+        }
+        //small enough that the window and main region keep evicting
+        QueryCache cache = new QueryCache(testCG, 4096);
+        for (int step=0; step<20000; step++){
+            //skewed users, so some queries repeat often enough to be admitted
+            int user1 = Math.min(random.nextInt(220), random.nextInt(220));
+            int user2 = Math.min(random.nextInt(220), random.nextInt(220));
+            int choice = random.nextInt(100);
+            if (choice < 3){
+                testCG.addEdge(user1, user2);
+            } else if (choice < 4){
+                testCG.addVertex(user1);
+            } else if (choice < 40){
+                assertEquals(testCG.getDegreeOfSeparation(user1, user2), cache.getDegreeOfSeparation(user1, user2));
+            } else if (choice < 70){
+                assertEquals(testCG.getMutualFriends(user1, user2), toSet(cache.getMutualFriends(user1, user2)));
+            } else {
+                int degree = 1 + random.nextInt(3);
+                assertEquals(testCG.getNDegreeConnections(user1, degree), toSet(cache.getNDegreeConnections(user1, degree)));
+            }
+            assertTrue(cache.weight() <= 4096);
+        }
+        assertTrue(cache.hits() > 0 && cache.evictions() > 0 && cache.invalidations() > 0);
+    }
+
+    private static HashSet<Integer> toSet(int[] values){
+        HashSet<Integer> set = new HashSet<Integer>();
+        for (int value : values){
+            set.add(value);
+        }
+        return set;
+    }
+
+    @Test
+    public void concurrentGraphTest () throws Exception{
+        final ConcurrentGraph graph = new ConcurrentGraph(ConcurrentGraph.Consistency.READ_YOUR_WRITES, 64);
+        final int writers = 4;
+        final int edgesPerWriter = 3000;
+        final AtomicBoolean done = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 2);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int w=0; w<writers; w++){
+                final int seed = w;
+                futures.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i=0; i<edgesPerWriter; i++){
+                        int from = random.nextInt(5000);
+                        int to = random.nextInt(5000);
+                        graph.addEdge(from, to);
+                        graph.addEdge(to, from);
+                        if (random.nextInt(10) == 0){
+                            graph.addVertex(5000 + random.nextInt(100));
+                        }
+                        //read your writes: the edge just added is visible to this thread
+                        assertEquals(from == to ? 0 : 1, graph.getDegreeOfSeparation(from, to));
+                        int[] mutual = graph.getMutualFriends(from, to);
+                        for (int k=1; k<mutual.length; k++){
+                            assertTrue(mutual[k-1] < mutual[k]);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int r=0; r<2; r++){
+                futures.add(pool.submit(() -> {
+                    long lastEdges = 0;
+                    while (!done.get()){
+                        //every snapshot is consistent and only ever grows
+                        CompactGraph g = graph.snapshot();
+                        assertTrue(g.edgeCount() >= lastEdges);
+                        lastEdges = g.edgeCount();
+                        int[] buf = new int[g.maxDegree()];
+                        for (int v=0; v<g.vertexCount(); v+=97){
+                            int degree = g.copyNeighbors(v, buf);
+                            for (int k=0; k<degree; k++){
+                                assertTrue(g.indexOf(g.idOf(buf[k])) == buf[k]);
+                            }
+                            int[] friends = g.getConnections(g.idOf(v));
+                            for (int k=1; k<friends.length; k++){
+                                assertTrue(friends[k-1] < friends[k]);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int w=0; w<writers; w++){
+                futures.get(w).get();
+            }
+            done.set(true);
+            for (Future<?> future : futures){
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        //once everything is published the graph holds exactly the edges written
+        CapstoneDoSGraph expected = new CapstoneDoSGraph();
+        for (int w=0; w<writers; w++){
+            Random random = new Random(w);
+            for (int i=0; i<edgesPerWriter; i++){
+                int from = random.nextInt(5000);
+                int to = random.nextInt(5000);
+                expected.addEdge(from, to);
+                expected.addEdge(to, from);
+                if (random.nextInt(10) == 0){
+                    expected.addVertex(5000 + random.nextInt(100));
+                }
+            }
+        }
+        graph.publish();
+        assertEquals(expected.exportGraph(), graph.exportGraph());
+        assertTrue(graph.read().isSymmetric());
+        graph.compact();
+        assertEquals(expected.exportGraph(), graph.exportGraph());
+    }
+
+    @Test
+    public void dynamicDistancesTest (){
+        for (int trial=0; trial<4; trial++){
+            Random random = new Random(trial);
+            boolean symmetric = trial % 2 == 0;
+            testCG = new CapstoneDoSGraph();
+            DynamicDistances dynamic = new DynamicDistances(testCG);
+            for (int i=0; i<150; i++){
+                addRandomEdge(dynamic, random, symmetric);
+            }
+            List<Integer> users = new ArrayList<Integer>(getNodes());
+            for (int i=0; i<6; i++){
+                dynamic.track(users.get(random.nextInt(users.size())));
+            }
+            for (int step=0; step<200; step++){
+                int choice = random.nextInt(10);
+                if (choice < 6){
+                    addRandomEdge(dynamic, random, symmetric);
+                } else if (choice < 9){
+                    //a batch, repaired once for all its edges
+                    int count = 1 + random.nextInt(20);
+                    int[] from = new int[2 * count];
+                    int[] to = new int[2 * count];
+                    for (int e=0; e<count; e++){
+                        from[e] = random.nextInt(300);
+                        to[e] = random.nextInt(300);
+                        from[count + e] = to[e];
+                        to[count + e] = from[e];
+                    }
+                    dynamic.addEdges(from, to, symmetric ? 2 * count : count);
+                } else {
+                    dynamic.addVertex(random.nextInt(320));
+                }
+                //every tracked distance matches a search from scratch
+                for (int source : dynamic.trackedUsers()){
+                    HashMap<Integer, Integer> distances = bfsDistances(source);
+                    for (Integer user : getNodes()){
+                        Integer expected = distances.get(user);
+                        assertEquals(expected == null ? CapstoneDoSGraph.UNREACHABLE : (int) expected, dynamic.distance(source, user));
+                    }
+                }
+            }
+            assertTrue(dynamic.relaxed() > 0);
+        }
+    }
+
+    private void addRandomEdge(DynamicDistances dynamic, Random random, boolean symmetric){
+        int from = random.nextInt(300);
+        int to = random.nextInt(300);
+        dynamic.addEdge(from, to);
+        if (symmetric){
+            dynamic.addEdge(to, from);
+        }
+    }
+
+    @Test
+    public void parallelBFSTest (){
+        //a pool wider than one piece, so levels split even on a single core
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int trial=0; trial<2; trial++){
+                boolean symmetric = trial == 0;
+                Random random = new Random(trial);
+                testCG = new CapstoneDoSGraph();
+                for (int i=0; i<60000; i++){
+                    int from = random.nextInt(20000);
+                    int to = random.nextInt(20000);
+                    testCG.addEdge(from, to);
+                    if (symmetric){
+                        testCG.addEdge(to, from);
+                    }
+                }
+                CSRGraph compactCG = CSRGraph.fromGraph(testCG);
+                assertEquals(symmetric, compactCG.isSymmetric());
+                for (boolean directionOptimizing : new boolean[] {true, false}){
+                    ParallelBFS parallel = new ParallelBFS(compactCG, pool, directionOptimizing);
+                    for (int s=0; s<8; s++){
+                        int user1 = compactCG.idOf(random.nextInt(compactCG.vertexCount()));
+                        for (int degree=0; degree<=12; degree++){
+                            assertTrue(Arrays.equals(compactCG.getNDegreeConnections(user1, degree),
+                                    parallel.getNDegreeConnections(user1, degree)));
+                        }
+                        for (int t=0; t<40; t++){
+                            int user2 = compactCG.idOf(random.nextInt(compactCG.vertexCount()));
+                            int exact = compactCG.getDegreeOfSeparation(user1, user2);
+                            assertEquals(exact, parallel.getDegreeOfSeparation(user1, user2));
+                            int[] path = parallel.getPath(user1, user2);
+                            if (exact == CapstoneDoSGraph.UNREACHABLE){
+                                assertTrue(path == null);
+                                continue;
+                            }
+                            //any shortest path will do: user2 first, each step an edge, back to user1
+                            assertEquals(exact, path.length);
+                            int prev = user1;
+                            for (int k=path.length-1; k>=0; k--){
+                                assertTrue(testCG.getConnections(prev).contains(path[k]));
+                                prev = path[k];
+                            }
+                        }
+                    }
+                    int missing = 20000;
+                    assertEquals(0, parallel.getNDegreeConnections(missing, 1).length);
+                    assertEquals(CapstoneDoSGraph.UNREACHABLE, parallel.getDegreeOfSeparation(compactCG.idOf(0), missing));
+                    assertTrue(parallel.getPath(missing, compactCG.idOf(0)) == null);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void compressedGraphTest (){
+        for (int trial=0; trial<2; trial++){
+            boolean symmetric = trial == 0;
+            Random random = new Random(trial);
+            testCG = new CapstoneDoSGraph();
+            //users 0..19999, where 2000..2099 have no friends at all
+            for (int user=0; user<20000; user++){
+                testCG.addVertex(user);
+            }
+            List<int[]> edges = new ArrayList<int[]>();
+            //a few large gaps among many small ones: varint
+            for (int friend=1; friend<=60; friend++){
+                edges.add(new int[] {0, friend});
+            }
+            edges.add(new int[] {0, 19999});
+            //every other user: bit-packed gaps of width 1
+            for (int friend=10102; friend<=10300; friend+=2){
+                edges.add(new int[] {10100, friend});
+            }
+            //consecutive users: width 0
+            for (int friend=15001; friend<=15100; friend++){
+                edges.add(new int[] {15000, friend});
+            }
+            //friends with lower indices: a negative first offset
+            edges.add(new int[] {18000, 10});
+            edges.add(new int[] {18000, 17990});
+            edges.add(new int[] {18000, 18001});
+            for (int i=0; i<40000; i++){
+                int from = random.nextInt(20000);
+                int to = random.nextInt(20000);
+                if ((from < 2000 || from >= 2100) && (to < 2000 || to >= 2100)){
+                    edges.add(new int[] {from, to});
+                }
+            }
+            for (int[] edge : edges){
+                testCG.addEdge(edge[0], edge[1]);
+                if (symmetric){
+                    testCG.addEdge(edge[1], edge[0]);
+                }
+            }
+            assertCompressedMatches(CSRGraph.fromGraph(testCG));
+        }
+        testCG = new CapstoneDoSGraph();
+        loadGraph(testCG, "data/facebook_1000.txt");
+        CSRGraph compactCG = CSRGraph.fromGraph(testCG);
+        assertCompressedMatches(compactCG);
+        //a numbering out of ID order, so lookups go through the sorted ID table
+        assertCompressedMatches(ReorderedGraph.reorder(compactCG, ReorderedGraph.Ordering.BFS));
+    }
+
+    //every list decoded from a compressed copy of g matches g's own
+    private void assertCompressedMatches(CompactGraph g){
+        CompressedGraph compressed = CompressedGraph.fromGraph(g);
+        assertEquals(g.vertexCount(), compressed.vertexCount());
+        assertEquals(g.edgeCount(), compressed.edgeCount());
+        assertEquals(g.isSymmetric(), compressed.isSymmetric());
+        int[] expected = new int[g.maxDegree()];
+        int[] actual = new int[g.maxDegree()];
+        for (int v=0; v<g.vertexCount(); v++){
+            assertEquals(g.idOf(v), compressed.idOf(v));
+            assertEquals(v, compressed.indexOf(g.idOf(v)));
+            assertEquals(g.degree(v), compressed.degree(v));
+            assertEquals(g.inDegree(v), compressed.inDegree(v));
+            int degree = g.copyNeighbors(v, expected);
+            assertEquals(degree, compressed.copyNeighbors(v, actual));
+            assertTrue(Arrays.equals(Arrays.copyOf(expected, degree), Arrays.copyOf(actual, degree)));
+            degree = g.copyInNeighbors(v, expected);
+            assertEquals(degree, compressed.copyInNeighbors(v, actual));
+            assertTrue(Arrays.equals(Arrays.copyOf(expected, degree), Arrays.copyOf(actual, degree)));
+            int[] friends = g.getConnections(g.idOf(v));
+            Arrays.sort(friends);
+            assertTrue(Arrays.equals(friends, compressed.getConnections(g.idOf(v))));
+        }
+        assertEquals(-1, compressed.indexOf(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void directedMayReachTest (){
+        Random random = new Random(3);
+        testCG = new CapstoneDoSGraph();
+        int rejected = 0;
+        for (int step=0; step<600; step++){
+            //one insert between queries, so the SCCs keep going stale
+            testCG.addEdge(random.nextInt(400), random.nextInt(400));
+            List<Integer> users = new ArrayList<Integer>(getNodes());
+            Integer user1 = users.get(random.nextInt(users.size()));
+            HashMap<Integer, Integer> distances = bfsDistances(user1);
+            for (int q=0; q<20; q++){
+                Integer user2 = users.get(random.nextInt(users.size()));
+                boolean mayReach = testCG.mayReach(user1, user2);
+                //never a false negative
+                if (distances.containsKey(user2)){
+                    assertTrue(mayReach);
+                } else if (!mayReach){
+                    rejected++;
+                }
+                assertEquals(distances.containsKey(user2) ? (int) distances.get(user2) : CapstoneDoSGraph.UNREACHABLE,
+                        testCG.getDegreeOfSeparation(user1, user2));
+            }
+        }
+        assertTrue(rejected > 0);
+
+        //re-adding a user drops its edges, which can split a component
+        testCG = new CapstoneDoSGraph();
+        testCG.addEdge(1, 2);
+        testCG.addEdge(2, 3);
+        testCG.addEdge(3, 1);
+        testCG.addEdge(3, 4);
+        assertTrue(testCG.mayReach(1, 4));
+        assertEquals(4, testCG.componentSize(1));
+        testCG.addVertex(3);
+        assertTrue(!testCG.mayReach(1, 4));
+        assertTrue(!testCG.mayReach(4, 1));
+        assertTrue(testCG.mayReach(1, 3));
+        assertEquals(1, testCG.componentSize(4));
+        assertEquals(3, testCG.componentSize(1));
+        assertTrue(testCG.getPath(1, 4) == null);
+        assertEquals(2, testCG.getDegreeOfSeparation(1, 3));
+        //and later inserts are tracked again
+        testCG.addEdge(2, 4);
+        assertTrue(testCG.mayReach(1, 4));
+        assertEquals(2, testCG.getDegreeOfSeparation(1, 4));
+    }
+
+    @Test
+    public void intersectionsTest (){
+        Random random = new Random(11);
+        int universe = 1 << 16;
+        //size pairs for each strategy: merge, gallop (ratio >= 8), binary search (ratio >= 256)
+        int[][] sizes = {{0, 50}, {100, 300}, {700, 700}, {20, 400}, {60, 3000}, {5, 2000}, {30, 20000}};
+        for (int[] size : sizes){
+            for (int trial=0; trial<20; trial++){
+                //ranges sit inside larger arrays, so the bounds are exercised too
+                int[] a = sortedSample(random, size[0], universe, 3);
+                int[] b = sortedSample(random, size[1], universe, 5);
+                int[] expected = naiveIntersect(a, 3, 3 + size[0], b, 5, 5 + size[1]);
+                assertIntersection(expected, 1, Intersections.intersect(a, 3, 3 + size[0], b, 5, 5 + size[1], null, 0), null);
+                int[] out = new int[size[0] + 1];
+                assertIntersection(expected, 1, Intersections.intersect(b, 5, 5 + size[1], a, 3, 3 + size[0], out, 1), out);
+                assertEquals(expected.length, Intersections.count(a, 3, 3 + size[0], b, 5, 5 + size[1]));
+                assertIntersection(expected, 1, Intersections.mergeIntersect(a, 3, 3 + size[0], b, 5, 5 + size[1], out, 1), out);
+                assertIntersection(expected, 1, Intersections.gallopIntersect(a, 3, 3 + size[0], b, 5, 5 + size[1], out, 1), out);
+                assertIntersection(expected, 1, Intersections.binarySearchIntersect(a, 3, 3 + size[0], b, 5, 5 + size[1], out, 1), out);
+                //a range against a bitset, and two bitsets
+                long[] bitsA = toBits(a, 3, 3 + size[0], universe);
+                long[] bitsB = toBits(b, 5, 5 + size[1], universe);
+                assertIntersection(expected, 1, Intersections.intersectBits(a, 3, 3 + size[0], bitsB, out, 1), out);
+                assertIntersection(expected, 1, Intersections.intersectBits(bitsA, bitsB, out, 1), out);
+                assertEquals(expected.length, Intersections.intersectBits(bitsA, bitsB, null, 0));
+            }
+        }
+        //values at the bitset word edges
+        int[] edges = {0, 63, 64, 127, universe - 1};
+        long[] bits = toBits(edges, 0, edges.length, universe);
+        assertIntersection(edges, 0, Intersections.intersectBits(bits, bits, new int[5], 0), edges);
+    }
+
+    @Test
+    public void mutualFriendEngineTest (){
+        testCG = new CapstoneDoSGraph();
+        loadGraph(testCG, "data/facebook_1000.txt");
+        CSRGraph compactCG = CSRGraph.fromGraph(testCG);
+        //a low hub degree, so pairs take the bitset, mixed and list paths
+        MutualFriendEngine engine = new MutualFriendEngine(compactCG, 5);
+        assertEngineMatches(compactCG, engine);
+        CompressedGraph compressed = CompressedGraph.fromGraph(compactCG);
+        //lists off the array get no bitsets unless asked for
+        MutualFriendEngine plain = new MutualFriendEngine(compressed);
+        assertEquals(MutualFriendEngine.NO_HUBS, plain.hubDegree());
+        for (int v=0; v<compressed.vertexCount(); v++){
+            assertTrue(!plain.isHub(v));
+        }
+        assertEngineMatches(compressed, plain);
+        assertEngineMatches(compressed, new MutualFriendEngine(compressed, 5));
+    }
+
+    //every engine count and intersection over sampled pairs matches a set intersection
+    private void assertEngineMatches(CompactGraph g, MutualFriendEngine engine){
+        Random random = new Random(5);
+        int[] listA = new int[g.maxDegree()];
+        int[] listB = new int[g.maxDegree()];
+        int[] out = new int[g.maxDegree() + 2];
+        int[] hubs = new int[3];
+        for (int i=0; i<3000; i++){
+            int a = random.nextInt(g.vertexCount());
+            int b = random.nextInt(g.vertexCount());
+            int degreeA = g.copyNeighbors(a, listA);
+            int degreeB = g.copyNeighbors(b, listB);
+            int[] expected = naiveIntersect(listA, 0, degreeA, listB, 0, degreeB);
+            assertEquals(expected.length, engine.count(a, b));
+            assertIntersection(expected, 2, engine.intersect(a, b, out, 2), out);
+            hubs[(engine.isHub(a) ? 1 : 0) + (engine.isHub(b) ? 1 : 0)]++;
+        }
+        if (engine.hubDegree() != MutualFriendEngine.NO_HUBS){
+            for (int count : hubs){
+                assertTrue(count > 0);
+            }
+        }
+    }
+
+    //count distinct sorted values from [0, universe), placed after offset in an array with slack at both ends
+    private static int[] sortedSample(Random random, int count, int universe, int offset){
+        TreeSet<Integer> values = new TreeSet<Integer>();
+        while (values.size() < count){
+            values.add(random.nextInt(universe));
+        }
+        int[] array = new int[offset + count + 2];
+        Arrays.fill(array, -1);
+        int i = offset;
+        for (int value : values){
+            array[i++] = value;
+        }
+        return array;
+    }
+
+    private static int[] naiveIntersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo){
+        HashSet<Integer> inB = new HashSet<Integer>();
+        for (int j=bFrom; j<bTo; j++){
+            inB.add(b[j]);
+        }
+        List<Integer> shared = new ArrayList<Integer>();
+        for (int i=aFrom; i<aTo; i++){
+            if (inB.contains(a[i])){
+                shared.add(a[i]);
+            }
+        }
+        Collections.sort(shared);
+        int[] result = new int[shared.size()];
+        for (int i=0; i<result.length; i++){
+            result[i] = shared.get(i);
+        }
+        return result;
+    }
+
+    private static long[] toBits(int[] values, int from, int to, int universe){
+        long[] bits = new long[(universe + 63) >>> 6];
+        for (int i=from; i<to; i++){
+            bits[values[i] >>> 6] |= 1L << values[i];
+        }
+        return bits;
+    }
+
+    //count matches expected and, if out is given, out[outPos...] holds it in order
+    private static void assertIntersection(int[] expected, int outPos, int count, int[] out){
+        assertEquals(expected.length, count);
+        if (out != null){
+            assertTrue(Arrays.equals(expected, Arrays.copyOfRange(out, outPos, outPos + count)));
+        }
+    }
+
+    @Test
+    public void mappedGraphTest () throws IOException{
+        File edgeList = File.createTempFile("edges", ".txt");
+        File saved = File.createTempFile("saved", ".dosg");
+        File streamed = File.createTempFile("streamed", ".dosg");
+        edgeList.deleteOnExit();
+        saved.deleteOnExit();
+        streamed.deleteOnExit();
+        try {
+            for (int trial=0; trial<2; trial++){
+                String source = "data/facebook_1000.txt";
+                if (trial == 1){
+                    //a directed graph with repeated edges and self-loops
+                    Random random = new Random(9);
+                    StringBuilder text = new StringBuilder();
+                    for (int i=0; i<6000; i++){
+                        text.append(random.nextInt(1500) * 7).append(' ').append(random.nextInt(1500) * 7).append('\n');
+                    }
+                    Files.write(edgeList.toPath(), text.toString().getBytes("US-ASCII"));
+                    source = edgeList.getPath();
+                }
+                testCG = new CapstoneDoSGraph();
+                loadGraph(testCG, source);
+                CSRGraph graph = CSRGraph.fromGraph(testCG);
+                assertEquals(trial == 0, graph.isSymmetric());
+                GraphSnapshot.save(graph, saved.getPath());
+                GraphSnapshot.saveFromEdgeList(source, streamed.getPath());
+                assertTrue(Arrays.equals(Files.readAllBytes(saved.toPath()),
+                        Files.readAllBytes(streamed.toPath())));
+                assertMappedMatches(graph, MappedGraph.open(streamed.getPath(), true));
+            }
+        } finally {
+            edgeList.delete();
+            saved.delete();
+            streamed.delete();
+        }
+    }
+
+    //lists, IDs and queries of a mapped snapshot match the graph it was saved from
+    private void assertMappedMatches(CSRGraph graph, MappedGraph mapped){
+        assertEquals(graph.vertexCount(), mapped.vertexCount());
+        assertEquals(graph.edgeCount(), mapped.edgeCount());
+        assertEquals(graph.isSymmetric(), mapped.isSymmetric());
+        assertEquals(graph.maxDegree(), mapped.maxDegree());
+        int[] expected = new int[graph.maxDegree()];
+        int[] actual = new int[graph.maxDegree()];
+        for (int v=0; v<graph.vertexCount(); v++){
+            assertEquals(graph.idOf(v), mapped.idOf(v));
+            assertEquals(v, mapped.indexOf(graph.idOf(v)));
+            assertEquals(graph.degree(v), mapped.degree(v));
+            assertEquals(graph.inDegree(v), mapped.inDegree(v));
+            int degree = graph.copyNeighbors(v, expected);
+            assertEquals(degree, mapped.copyNeighbors(v, actual));
+            assertTrue(Arrays.equals(Arrays.copyOf(expected, degree), Arrays.copyOf(actual, degree)));
+            degree = graph.copyInNeighbors(v, expected);
+            assertEquals(degree, mapped.copyInNeighbors(v, actual));
+            assertTrue(Arrays.equals(Arrays.copyOf(expected, degree), Arrays.copyOf(actual, degree)));
+        }
+        assertEquals(-1, mapped.indexOf(Integer.MAX_VALUE));
+        Random random = new Random(4);
+        for (int i=0; i<300; i++){
+            int user1 = graph.idOf(random.nextInt(graph.vertexCount()));
+            int user2 = graph.idOf(random.nextInt(graph.vertexCount()));
+            assertTrue(Arrays.equals(graph.getConnections(user1), mapped.getConnections(user1)));
+            assertTrue(Arrays.equals(graph.getMutualFriends(user1, user2), mapped.getMutualFriends(user1, user2)));
+            assertTrue(Arrays.equals(graph.getSecondDegreeMutualFriends(user1), mapped.getSecondDegreeMutualFriends(user1)));
+            assertTrue(Arrays.equals(graph.getNDegreeConnections(user1, 2), mapped.getNDegreeConnections(user1, 2)));
+            int distance = graph.getDegreeOfSeparation(user1, user2);
+            assertEquals(distance, mapped.getDegreeOfSeparation(user1, user2));
+            int[] path = mapped.getPath(user1, user2);
+            assertEquals(distance, path == null ? CapstoneDoSGraph.UNREACHABLE : path.length);
+        }
+    }
+
+    @Test
+    public void distanceBatchTest (){
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Random random = new Random(8);
+            testCG = new CapstoneDoSGraph();
+            //directed, so the single-pair search must walk in-edges on its target side
+            for (int i=0; i<1500; i++){
+                testCG.addEdge(random.nextInt(600), random.nextInt(600));
+            }
+            assertBatchMatches(random, pool);
+            //the batch must see inserts, new users and a re-added user's dropped edges
+            for (int i=0; i<300; i++){
+                testCG.addEdge(random.nextInt(650), random.nextInt(650));
+            }
+            testCG.addVertex(random.nextInt(600));
+            assertBatchMatches(random, pool);
+
+            testCG = new CapstoneDoSGraph();
+            loadGraph(testCG, "data/facebook_1000.txt");
+            assertBatchMatches(random, pool);
+
+            boolean rejected = false;
+            try {
+                testCG.getDegreesOfSeparation(new int[2], new int[1], pool);
+            } catch (IllegalArgumentException e){
+                rejected = true;
+            }
+            assertTrue(rejected);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    //a batch mixing shared-source groups, single pairs and missing users matches per-pair BFS
+    private void assertBatchMatches(Random random, ForkJoinPool pool){
+        List<Integer> users = new ArrayList<Integer>(getNodes());
+        Collections.sort(users);
+        int missing = users.get(users.size() - 1) + 1;
+        List<int[]> pairs = new ArrayList<int[]>();
+        for (int group=0; group<20; group++){
+            //one source with many targets, repeats and the source itself among them
+            int source = users.get(random.nextInt(users.size()));
+            for (int i=0; i<30; i++){
+                pairs.add(new int[] {source, users.get(random.nextInt(users.size()))});
+            }
+            pairs.add(new int[] {source, source});
+            pairs.add(new int[] {source, missing});
+        }
+        for (int i=0; i<300; i++){
+            //most sources appear once and take the bidirectional search
+            pairs.add(new int[] {users.get(random.nextInt(users.size())), users.get(random.nextInt(users.size()))});
+        }
+        pairs.add(new int[] {missing, users.get(0)});
+        pairs.add(new int[] {missing, missing});
+        Collections.shuffle(pairs, random);
+        int[] users1 = new int[pairs.size()];
+        int[] users2 = new int[pairs.size()];
+        for (int i=0; i<pairs.size(); i++){
+            users1[i] = pairs.get(i)[0];
+            users2[i] = pairs.get(i)[1];
+        }
+        int[] distances = testCG.getDegreesOfSeparation(users1, users2, pool);
+        int[] compact = DistanceBatch.compute(CSRGraph.fromGraph(testCG), users1, users2, ForkJoinPool.commonPool());
+        assertEquals(pairs.size(), distances.length);
+        HashMap<Integer, HashMap<Integer, Integer>> bfs = new HashMap<Integer, HashMap<Integer, Integer>>();
+        for (int i=0; i<pairs.size(); i++){
+            int expected = CapstoneDoSGraph.UNREACHABLE;
+            if (users1[i] != missing && users2[i] != missing){
+                if (!bfs.containsKey(users1[i])){
+                    bfs.put(users1[i], bfsDistances(users1[i]));
+                }
+                Integer distance = bfs.get(users1[i]).get(users2[i]);
+                if (distance != null){
+                    expected = distance;
+                }
+            }
+            assertEquals(expected, distances[i]);
+            assertEquals(expected, compact[i]);
+        }
+    }
+
+    @Test
+    public void friendRecommenderTest (){
+        for (int trial=0; trial<2; trial++){
+            testCG = new CapstoneDoSGraph();
+            if (trial == 0){
+                loadGraph(testCG, "data/facebook_1000.txt");
+            } else {
+                //directed: candidates come from out-edges, mutual friends are shared out-neighbors
+                Random random = new Random(6);
+                for (int i=0; i<3000; i++){
+                    testCG.addEdge(random.nextInt(500), random.nextInt(500));
+                }
+            }
+            CSRGraph graph = CSRGraph.fromGraph(testCG);
+            for (FriendRecommender.Scoring scoring : FriendRecommender.Scoring.values()){
+                FriendRecommender recommender = new FriendRecommender(graph, scoring);
+                int k = 7;
+                int[] users = new int[graph.vertexCount() + 1];
+                for (int v=0; v<graph.vertexCount(); v++){
+                    users[v] = graph.idOf(v);
+                    List<Integer> expected = bruteForceRanking(graph, users[v], scoring);
+                    int[] ids = recommender.recommend(users[v], k);
+                    assertEquals(Math.min(k, expected.size()), ids.length);
+                    for (int i=0; i<ids.length; i++){
+                        assertEquals((int) expected.get(i), ids[i]);
+                    }
+                    //asking for every candidate gives the whole ranking
+                    ids = recommender.recommend(users[v], expected.size() + 1);
+                    assertEquals(expected.size(), ids.length);
+                    for (int i=0; i<ids.length; i++){
+                        assertEquals((int) expected.get(i), ids[i]);
+                    }
+                }
+                users[graph.vertexCount()] = Integer.MAX_VALUE;
+                FriendRecommender.Batch batch = recommender.recommendAll(users, k, ForkJoinPool.commonPool());
+                assertEquals(k, batch.k);
+                assertEquals(users.length * k, batch.ids.length);
+                assertEquals(users.length * k, batch.scores.length);
+                assertEquals(0, batch.counts[graph.vertexCount()]);
+                for (int i=0; i<users.length - 1; i++){
+                    List<Integer> expected = bruteForceRanking(graph, users[i], scoring);
+                    assertEquals(Math.min(k, expected.size()), batch.counts[i]);
+                    for (int j=0; j<batch.counts[i]; j++){
+                        int id = expected.get(j);
+                        assertEquals(id, batch.ids[i * k + j]);
+                        assertEquals(score(graph, users[i], id, scoring), batch.scores[i * k + j], 0);
+                    }
+                }
+            }
+        }
+        //an unknown user or a non-positive k gets nothing
+        FriendRecommender recommender = new FriendRecommender(CSRGraph.fromGraph(testCG));
+        assertEquals(0, recommender.recommend(Integer.MAX_VALUE, 3).length);
+        assertEquals(0, recommender.recommend(testCG.adjacency().keySet().iterator().next(), 0).length);
+    }
+
+    //users exactly 2 hops away, best score first and lower ID first among equal scores
+    private static List<Integer> bruteForceRanking(CompactGraph g, int user, FriendRecommender.Scoring scoring){
+        HashSet<Integer> friends = toSet(g.getConnections(user));
+        HashSet<Integer> candidates = new HashSet<Integer>();
+        for (int friend : friends){
+            for (int candidate : g.getConnections(friend)){
+                if (candidate != user && !friends.contains(candidate)){
+                    candidates.add(candidate);
+                }
+            }
+        }
+        List<Integer> ranking = new ArrayList<Integer>(candidates);
+        HashMap<Integer, Double> scores = new HashMap<Integer, Double>();
+        for (int candidate : candidates){
+            scores.put(candidate, score(g, user, candidate, scoring));
+        }
+        Collections.sort(ranking, (a, b) -> {
+            int byScore = Double.compare(scores.get(b), scores.get(a));
+            return byScore != 0 ? byScore : Integer.compare(a, b);
+        });
+        return ranking;
+    }
+
+    //sums over the mutual friends in ascending ID order, as the recommender does
+    private static double score(CompactGraph g, int user, int candidate, FriendRecommender.Scoring scoring){
+        int[] friends = g.getConnections(user);
+        Arrays.sort(friends);
+        HashSet<Integer> candidateFriends = toSet(g.getConnections(candidate));
+        double score = 0;
+        for (int friend : friends){
+            if (candidateFriends.contains(friend)){
+                score += scoring == FriendRecommender.Scoring.MUTUAL_FRIENDS
+                        ? 1 : 1 / Math.log(Math.max(2, g.getConnections(friend).length));
+            }
+        }
+        return score;
+    }
+
+    @Test
+    public void secondDegreeCountsTest (){
+        for (int trial=0; trial<2; trial++){
+            testCG = new CapstoneDoSGraph();
+            if (trial == 0){
+                loadGraph(testCG, "data/facebook_1000.txt");
+            } else {
+                //directed, with self-loops and edges back to the user's friends
+                Random random = new Random(12);
+                for (int i=0; i<2500; i++){
+                    testCG.addEdge(random.nextInt(400), random.nextInt(400));
+                }
+            }
+            assertEquals(trial == 0, testCG.isSymmetric());
+            CSRGraph compactCG = CSRGraph.fromGraph(testCG);
+            for (Integer user : getNodes()){
+                //the per-candidate loop the 2-hop pass replaced
+                HashMap<Integer, Integer> expected = new HashMap<Integer, Integer>();
+                HashSet<Integer> expectedFriends = new HashSet<Integer>();
+                for (Integer connection : testCG.getNDegreeConnections(user, 2)){
+                    HashSet<Integer> mutualFriends = testCG.getMutualFriends(user, connection);
+                    expected.put(connection, mutualFriends.size());
+                    expectedFriends.addAll(mutualFriends);
+                }
+                assertSecondDegreeCounts(expected, expectedFriends, testCG.getSecondDegreeMutualCounts(user));
+                assertSecondDegreeCounts(expected, expectedFriends, compactCG.getSecondDegreeMutualCounts(user));
+                assertEquals(expectedFriends, testCG.getSecondDegreeMutualFriends(user));
+                assertEquals(expectedFriends, toSet(compactCG.getSecondDegreeMutualFriends(user)));
+            }
+        }
+    }
+
+    private static void assertSecondDegreeCounts(HashMap<Integer, Integer> expected, HashSet<Integer> expectedFriends,
+                                                 SecondDegreeCounts counts){
+        assertEquals(expected.size(), counts.size());
+        HashMap<Integer, Integer> actual = new HashMap<Integer, Integer>();
+        for (int i=0; i<counts.size(); i++){
+            actual.put(counts.candidates[i], counts.mutualCounts[i]);
+        }
+        assertEquals(expected, actual);
+        assertEquals(expectedFriends.size(), counts.mutualFriends.length);
+        assertEquals(expectedFriends, toSet(counts.mutualFriends));
+    }
+
+    @Test
+    public void hyperAnfTest (){
+        String[] files = {"data/facebook_1000.txt", "data/facebook_2000.txt"};
+        for (String file : files){
+            testCG = new CapstoneDoSGraph();
+            loadGraph(testCG, file);
+            CSRGraph compactCG = CSRGraph.fromGraph(testCG);
+            HopDistribution exact = HopDistribution.compute(compactCG, ForkJoinPool.commonPool());
+            for (int precision=6; precision<=10; precision+=2){
+                HyperAnf approx = HyperAnf.compute(compactCG, precision, compactCG.vertexCount(), true,
+                        ForkJoinPool.commonPool());
+                assertEquals(precision, approx.precision());
+                for (int degree=1; degree<=Math.max(exact.maxSeparation(), approx.maxSeparation()) + 1; degree++){
+                    double average = exact.averageAt(degree);
+                    assertTrue(approx.lowerBoundAt(degree) <= approx.averageAt(degree));
+                    assertTrue(approx.averageAt(degree) <= approx.upperBoundAt(degree));
+                    assertTrue(file + " degree " + degree + ": " + average + " below " + approx.lowerBoundAt(degree),
+                            approx.lowerBoundAt(degree) <= average);
+                    assertTrue(file + " degree " + degree + ": " + average + " above " + approx.upperBoundAt(degree),
+                            average <= approx.upperBoundAt(degree));
+                    float[] counts = approx.countsAt(degree);
+                    assertEquals(compactCG.vertexCount(), counts.length);
+                }
+            }
+        }
+        //invalid precisions and degree limits are rejected
+        CSRGraph compactCG = CSRGraph.fromGraph(testCG);
+        int[][] invalid = {{3, 5}, {17, 5}, {-1, 5}, {6, -1}};
+        for (int[] args : invalid){
+            boolean rejected = false;
+            try {
+                HyperAnf.compute(compactCG, args[0], args[1], false, ForkJoinPool.commonPool());
+            } catch (IllegalArgumentException e){
+                rejected = true;
+            }
+            assertTrue(rejected);
+        }
+        assertTrue(HyperAnf.compute(compactCG, 6, 3, false, ForkJoinPool.commonPool()).countsAt(1) == null);
+    }
+
+    @Test
+    public void histogramTest (){
+        //buckets tile the longs: each bucket's bounds map back to it and meet the next bucket
+        assertEquals(0, Histogram.lowerBound(0));
+        assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.BUCKETS - 1));
+        for (int b=0; b<Histogram.BUCKETS; b++){
+            assertEquals(b, Histogram.bucketOf(Histogram.lowerBound(b)));
+            assertEquals(b, Histogram.bucketOf(Histogram.upperBound(b)));
+            if (b > 0){
+                assertEquals(Histogram.upperBound(b - 1) + 1, Histogram.lowerBound(b));
+            }
+            //within 1/16 of the bucket's smallest value
+            assertTrue(Histogram.upperBound(b) - Histogram.lowerBound(b) <= Math.max(0, Histogram.lowerBound(b) / 16));
+        }
+        assertEquals(0, Histogram.bucketOf(-5));
+        Random random = new Random(2);
+        for (int i=0; i<10000; i++){
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int b = Histogram.bucketOf(value);
+            assertTrue(Histogram.lowerBound(b) <= value && value <= Histogram.upperBound(b));
+        }
+
+        //values 1..1000 once each, plus 900 recorded three more times
+        long[] counts = new long[Histogram.BUCKETS];
+        long sum = 0;
+        for (long value=1; value<=1000; value++){
+            counts[Histogram.bucketOf(value)]++;
+            sum += value;
+        }
+        counts[Histogram.bucketOf(900)] += 3;
+        sum += 3 * 900;
+        Histogram histogram = new Histogram(counts, sum);
+        assertEquals(1003, histogram.count());
+        assertEquals(sum, histogram.sum());
+        assertEquals((double) sum / 1003, histogram.mean(), 1e-9);
+        assertEquals(1, histogram.min());
+        assertEquals(Histogram.upperBound(Histogram.bucketOf(1000)), histogram.max());
+        assertEquals(histogram.max(), histogram.percentile(100));
+        assertEquals(Histogram.upperBound(Histogram.bucketOf(1)), histogram.percentile(0));
+        double[] percentiles = {10, 50, 89.5, 90, 99, 99.9};
+        for (double percentile : percentiles){
+            //the exact value at that rank, reported as the top of its bucket
+            long rank = (long) Math.ceil(1003 * percentile / 100);
+            long exact = rank <= 900 ? rank : rank <= 903 ? 900 : rank - 3;
+            assertEquals(Histogram.upperBound(Histogram.bucketOf(exact)), histogram.percentile(percentile));
+            assertTrue(histogram.percentile(percentile) >= exact);
+            assertTrue(histogram.percentile(percentile) <= exact + exact / 16);
+        }
+        Histogram empty = new Histogram(new long[Histogram.BUCKETS], 0);
+        assertEquals(0, empty.percentile(50));
+        assertEquals(0, empty.max());
+        assertEquals(0, empty.mean(), 0);
+        Histogram difference = histogram.minus(empty);
+        assertEquals(histogram.count(), difference.count());
+        assertEquals(0, histogram.minus(histogram).count());
+    }
+
+    @Test
+    public void queryMetricsTest () throws Exception{
+        testCG = new CapstoneDoSGraph();
+        loadGraph(testCG, "data/facebook_1000.txt");
+        final QueryMetrics metrics = new QueryMetrics();
+        testCG.setMetrics(metrics);
+        final List<Integer> users = new ArrayList<Integer>(getNodes());
+        Collections.sort(users);
+        Random random = new Random(1);
+        long distances = 0;
+        for (int i=0; i<200; i++){
+            distances += Math.max(0, testCG.getDegreeOfSeparation(users.get(random.nextInt(users.size())),
+                    users.get(random.nextInt(users.size()))));
+        }
+        QueryMetrics.Snapshot first = metrics.snapshot();
+        QueryMetrics.QueryStats degree = first.get(QueryMetrics.Query.GET_DEGREE_OF_SEPARATION);
+        assertEquals(200, degree.calls);
+        assertEquals(200, degree.latency.count());
+        assertEquals(200, degree.resultSize.count());
+        assertEquals(distances, degree.resultSize.sum());
+        //the traversal work is charged to the inner getPath only
+        assertEquals(0, degree.verticesVisited);
+        QueryMetrics.QueryStats path = first.get(QueryMetrics.Query.GET_PATH);
+        assertEquals(200, path.calls);
+        assertEquals(distances, path.resultSize.sum());
+        assertTrue(path.verticesVisited > 0 && path.edgesScanned > 0);
+        assertEquals(path.levels, path.frontierSize.count());
+
+        //four threads, each with its own recorder, all summed by snapshot()
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        long mutualFriends = 0;
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (int t=0; t<4; t++){
+                final int seed = t;
+                futures.add(pool.submit(() -> {
+                    Random local = new Random(seed);
+                    long sizes = 0;
+                    for (int i=0; i<100; i++){
+                        sizes += testCG.getMutualFriends(users.get(local.nextInt(users.size())),
+                                users.get(local.nextInt(users.size()))).size();
+                    }
+                    for (int i=0; i<50; i++){
+                        testCG.getNDegreeConnections(users.get(local.nextInt(users.size())), 2);
+                    }
+                    return sizes;
+                }));
+            }
+            for (Future<Long> future : futures){
+                mutualFriends += future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        QueryMetrics.Snapshot second = metrics.snapshot();
+        QueryMetrics.Snapshot since = second.since(first);
+        assertEquals(400, second.get(QueryMetrics.Query.GET_MUTUAL_FRIENDS).calls);
+        assertEquals(400, since.get(QueryMetrics.Query.GET_MUTUAL_FRIENDS).calls);
+        assertEquals(mutualFriends, since.get(QueryMetrics.Query.GET_MUTUAL_FRIENDS).resultSize.sum());
+        assertEquals(200, since.get(QueryMetrics.Query.GET_N_DEGREE_CONNECTIONS).calls);
+        assertEquals(200, second.get(QueryMetrics.Query.GET_DEGREE_OF_SEPARATION).calls);
+        assertEquals(0, since.get(QueryMetrics.Query.GET_DEGREE_OF_SEPARATION).calls);
+        assertEquals(0, since.get(QueryMetrics.Query.GET_DEGREE_OF_SEPARATION).latency.count());
+        assertEquals(path.verticesVisited, second.get(QueryMetrics.Query.GET_PATH).verticesVisited);
+
+        //switched off, nothing more is recorded
+        testCG.setMetrics(null);
+        testCG.getDegreeOfSeparation(users.get(0), users.get(1));
+        assertEquals(200, metrics.snapshot().get(QueryMetrics.Query.GET_DEGREE_OF_SEPARATION).calls);
+    }
+
+    @Test
+    public void streamLevelsTest (){
+        for (int trial=0; trial<2; trial++){
+            testCG = new CapstoneDoSGraph();
+            if (trial == 0){
+                loadGraph(testCG, "data/facebook_1000.txt");
+            } else {
+                //directed and split into several components
+                Random random = new Random(10);
+                for (int i=0; i<900; i++){
+                    testCG.addEdge(random.nextInt(600), random.nextInt(600));
+                }
+            }
+            CSRGraph compactCG = CSRGraph.fromGraph(testCG);
+            for (final Integer user : getNodes()){
+                //levels of a plain BFS, for every degree
+                final HashMap<Integer, Integer> distances = bfsDistances(user);
+                int eccentricity = Collections.max(distances.values());
+                final List<HashSet<Integer>> levels = new ArrayList<HashSet<Integer>>();
+                int count = testCG.streamLevels(user, Integer.MAX_VALUE, new LevelVisitor() {
+                    public boolean visitLevel(int degree, int[] users, int count) {
+                        assertEquals(levels.size() + 1, degree);
+                        levels.add(toSet(Arrays.copyOf(users, count)));
+                        return true;
+                    }
+                });
+                assertEquals(eccentricity, count);
+                assertEquals(eccentricity, levels.size());
+                final List<HashSet<Integer>> compactLevels = new ArrayList<HashSet<Integer>>();
+                assertEquals(eccentricity, compactCG.streamLevels(user, Integer.MAX_VALUE, new LevelVisitor() {
+                    public boolean visitLevel(int degree, int[] users, int count) {
+                        compactLevels.add(toSet(Arrays.copyOf(users, count)));
+                        return true;
+                    }
+                }));
+                assertEquals(levels, compactLevels);
+                for (int degree=1; degree<=eccentricity + 1; degree++){
+                    HashSet<Integer> expected = new HashSet<Integer>();
+                    for (Map.Entry<Integer, Integer> entry : distances.entrySet()){
+                        if (entry.getValue() == degree){
+                            expected.add(entry.getKey());
+                        }
+                    }
+                    HashSet<Integer> level = degree <= eccentricity ? levels.get(degree - 1) : new HashSet<Integer>();
+                    assertEquals(expected, level);
+                    assertEquals(testCG.getNDegreeConnections(user, degree), level);
+                    assertEquals(level, toSet(compactCG.getNDegreeConnections(user, degree)));
+                }
+
+                //a visitor that returns false stops the traversal at that level
+                if (eccentricity >= 2){
+                    final int[] calls = new int[1];
+                    assertEquals(2, testCG.streamLevels(user, Integer.MAX_VALUE, new LevelVisitor() {
+                        public boolean visitLevel(int degree, int[] users, int count) {
+                            calls[0]++;
+                            return degree < 2;
+                        }
+                    }));
+                    assertEquals(2, calls[0]);
+                    calls[0] = 0;
+                    assertEquals(2, compactCG.streamLevels(user, Integer.MAX_VALUE, new LevelVisitor() {
+                        public boolean visitLevel(int degree, int[] users, int count) {
+                            calls[0]++;
+                            return degree < 2;
+                        }
+                    }));
+                    assertEquals(2, calls[0]);
+                    //and so does the degree limit
+                    assertEquals(1, testCG.streamLevels(user, 1, new LevelVisitor() {
+                        public boolean visitLevel(int degree, int[] users, int count) {
+                            assertEquals(1, degree);
+                            return true;
+                        }
+                    }));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void traversalContextTest (){
+        testCG = new CapstoneDoSGraph();
+        loadGraph(testCG, "data/facebook_1000.txt");
+        final List<Integer> users = new ArrayList<Integer>(getNodes());
+        Collections.sort(users);
+        Random random = new Random(13);
+
+        //a caller-owned context serves every query that takes one
+        TraversalContext context = new TraversalContext();
+        for (int i=0; i<50; i++){
+            Integer user1 = users.get(random.nextInt(users.size()));
+            Integer user2 = users.get(random.nextInt(users.size()));
+            HashMap<Integer, Integer> distances = bfsDistances(user1);
+            int epoch = context.epoch;
+            int expected = distances.containsKey(user2) ? distances.get(user2) : CapstoneDoSGraph.UNREACHABLE;
+            assertEquals(expected, testCG.getDegreeOfSeparation(user1, user2, context));
+            assertTrue(context.epoch > epoch);
+            assertEquals(testCG.getSecondDegreeMutualCounts(user1).size(),
+                    testCG.getSecondDegreeMutualCounts(user1, context).size());
+            assertTrue(!context.inUse);
+        }
+
+        //the epoch wraps around: stamps are cleared, so no stale mark reads as visited
+        context.epoch = Integer.MAX_VALUE - 7;
+        for (int i=0; i<8; i++){
+            Integer user1 = users.get(random.nextInt(users.size()));
+            HashMap<Integer, Integer> distances = bfsDistances(user1);
+            for (Integer user2 : users){
+                int expected = distances.containsKey(user2) ? distances.get(user2) : CapstoneDoSGraph.UNREACHABLE;
+                assertEquals(expected, testCG.getDegreeOfSeparation(user1, user2, context));
+            }
+        }
+        assertTrue(context.epoch < 1000000);
+        context.epoch = Integer.MAX_VALUE - 2;
+        assertEquals(2, context.begin(users.size()));
+        for (int stamp : context.stamp){
+            assertEquals(0, stamp);
+        }
+
+        //a query started inside another on the same thread gets a fresh context
+        final Integer user = users.get(0);
+        final HashMap<Integer, Integer> distances = bfsDistances(user);
+        final int[] levels = new int[1];
+        testCG.streamLevels(user, Integer.MAX_VALUE, new LevelVisitor() {
+            public boolean visitLevel(int degree, int[] ids, int count) {
+                levels[0]++;
+                for (int i=0; i<count; i++){
+                    assertEquals(degree, (int) distances.get(ids[i]));
+                    assertEquals(degree, testCG.getDegreeOfSeparation(user, ids[i]));
+                }
+                assertEquals(count, testCG.getNDegreeConnections(user, degree).size());
+                return true;
+            }
+        });
+        assertEquals((int) Collections.max(distances.values()), levels[0]);
+
+        //but a caller's context that is already running a query is refused
+        final TraversalContext owned = new TraversalContext();
+        final boolean[] rejected = new boolean[1];
+        testCG.streamLevels(user, 1, new LevelVisitor() {
+            public boolean visitLevel(int degree, int[] ids, int count) {
+                try {
+                    testCG.getDegreeOfSeparation(user, ids[0], owned);
+                } catch (IllegalStateException e){
+                    rejected[0] = true;
+                }
+                return true;
+            }
+        }, owned);
+        assertTrue(rejected[0]);
+        assertTrue(!owned.inUse);
+        assertEquals(1, testCG.getDegreeOfSeparation(user, testCG.getConnections(user).iterator().next(), owned));
+    }
+
+    @Test
+    public void reorderedGraphTest (){
+        for (int trial=0; trial<2; trial++){
+            testCG = new CapstoneDoSGraph();
+            if (trial == 0){
+                loadGraph(testCG, "data/facebook_1000.txt");
+            } else {
+                //directed and split into several components
+                Random random = new Random(14);
+                for (int i=0; i<1200; i++){
+                    testCG.addEdge(random.nextInt(700), random.nextInt(700));
+                }
+            }
+            CSRGraph compactCG = CSRGraph.fromGraph(testCG);
+            int n = compactCG.vertexCount();
+            for (ReorderedGraph.Ordering ordering : ReorderedGraph.Ordering.values()){
+                ReorderedGraph reordered = ReorderedGraph.reorder(compactCG, ordering);
+                assertReorderedMatches(compactCG, reordered);
+                if (ordering == ReorderedGraph.Ordering.DEGREE){
+                    for (int v=1; v<n; v++){
+                        assertTrue(reordered.degree(v - 1) >= reordered.degree(v));
+                    }
+                }
+            }
+            //an explicit order: a shuffle puts user idOf(order[i]) at index i
+            List<Integer> shuffled = new ArrayList<Integer>();
+            for (int v=0; v<n; v++){
+                shuffled.add(v);
+            }
+            Collections.shuffle(shuffled, new Random(trial));
+            int[] order = new int[n];
+            for (int i=0; i<n; i++){
+                order[i] = shuffled.get(i);
+            }
+            ReorderedGraph reordered = ReorderedGraph.reorder(compactCG, order);
+            for (int i=0; i<n; i++){
+                assertEquals(compactCG.idOf(order[i]), reordered.idOf(i));
+            }
+            assertReorderedMatches(compactCG, reordered);
+
+            //orders that are not permutations of 0..n-1 are rejected
+            int[][] invalid = {Arrays.copyOf(order, n - 1), Arrays.copyOf(order, n + 1),
+                    order.clone(), order.clone(), order.clone()};
+            invalid[2][1] = invalid[2][0];
+            invalid[3][0] = -1;
+            invalid[4][0] = n;
+            for (int[] bad : invalid){
+                boolean rejected = false;
+                try {
+                    ReorderedGraph.reorder(compactCG, bad);
+                } catch (IllegalArgumentException e){
+                    rejected = true;
+                }
+                assertTrue(rejected);
+            }
+        }
+    }
+
+    //a renumbered copy is a permutation of g whose queries, in user IDs, match g's
+    private void assertReorderedMatches(CSRGraph g, ReorderedGraph reordered){
+        int n = g.vertexCount();
+        assertEquals(n, reordered.vertexCount());
+        assertEquals(g.edgeCount(), reordered.edgeCount());
+        assertEquals(g.isSymmetric(), reordered.isSymmetric());
+        HashSet<Integer> ids = new HashSet<Integer>();
+        for (int v=0; v<n; v++){
+            int user = reordered.idOf(v);
+            assertTrue(ids.add(user));
+            assertEquals(v, reordered.indexOf(user));
+            assertEquals(g.degree(g.indexOf(user)), reordered.degree(v));
+            assertEquals(g.inDegree(g.indexOf(user)), reordered.inDegree(v));
+            assertTrue(Arrays.equals(g.getConnections(user), reordered.getConnections(user)));
+        }
+        assertEquals(toSet(g.vertexIds()), ids);
+        assertEquals(-1, reordered.indexOf(Integer.MAX_VALUE));
+        Random random = new Random(15);
+        for (int i=0; i<300; i++){
+            int user1 = g.idOf(random.nextInt(n));
+            int user2 = g.idOf(random.nextInt(n));
+            int distance = g.getDegreeOfSeparation(user1, user2);
+            assertEquals(distance, reordered.getDegreeOfSeparation(user1, user2));
+            int[] path = reordered.getPath(user1, user2);
+            assertEquals(distance, path == null ? CapstoneDoSGraph.UNREACHABLE : path.length);
+            if (path != null && path.length > 0){
+                //user2 first, then back along real edges to a friend of user1
+                assertEquals(user2, path[0]);
+                for (int j=0; j<path.length - 1; j++){
+                    assertTrue(toSet(g.getConnections(path[j + 1])).contains(path[j]));
+                }
+                assertTrue(toSet(g.getConnections(user1)).contains(path[path.length - 1]));
+            }
+            assertTrue(Arrays.equals(g.getMutualFriends(user1, user2), reordered.getMutualFriends(user1, user2)));
+            for (int degree=1; degree<=3; degree++){
+                assertEquals(toSet(g.getNDegreeConnections(user1, degree)),
+                        toSet(reordered.getNDegreeConnections(user1, degree)));
+            }
         }
-        return total/getNumNodes();
     }
 
     /**
@@ -144,19 +1513,19 @@ public class CapstoneTester {
 
 	//returns list of all nodes in graph
 	public Set<Integer> getNodes(){
-		return testCG.graphMap.keySet();
+		return testCG.adjacency().keySet();
 	}
 
 	//returns number of nodes in graph
 	public int getNumNodes() {
-		return testCG.graphMap.size();
+		return testCG.adjacency().size();
 	}
 
 	//returns total number of edges in graph
 	public int getNumEdges() {
 		int numEdges = 0;
-		for (Integer i : testCG.graphMap.keySet()) {
-            int currEdgeCount = testCG.graphMap.get(i).size();
+		for (Integer i : testCG.adjacency().keySet()) {
+            int currEdgeCount = testCG.adjacency().get(i).size();
 			numEdges+=currEdgeCount;
 		}
 		return numEdges;
@@ -169,8 +1538,8 @@ public class CapstoneTester {
      */
     //prints a given graph for debugging/testing purposes
     public void printGraph() {
-        for (Integer i : testCG.graphMap.keySet()) {
-            Set<Integer> edges = testCG.graphMap.get(i);
+        for (Integer i : testCG.adjacency().keySet()) {
+            Set<Integer> edges = testCG.adjacency().get(i);
             for (Integer k : edges) {
                 System.out.println(i+" -> "+k);
             }
@@ -231,6 +1600,15 @@ public class CapstoneTester {
         System.out.println(" }");
     }
 
+    public void printLevel(Integer user, int degree, int[] users, int count){
+        System.out.println("There are "+count+" "+degree+" degree connections for user " + user);
+        System.out.print("{");
+        for(int i=0; i<count; i++){
+            System.out.print(users[i]+", ");
+        }
+        System.out.println(" }");
+    }
+
     public void printSecondDegreeMutualFriends(Integer baseUser) {
         HashSet<Integer> commonConnections = testCG.getSecondDegreeMutualFriends(baseUser);
         //print user friends
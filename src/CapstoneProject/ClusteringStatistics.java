@@ -0,0 +1,19 @@
+package CapstoneProject;
+
+/**
+ * How tightly knit a graph is, whether counted exactly (TriangleCounts)
+ * or estimated by sampling (WedgeSampler), so callers can switch between
+ * the two. Edges are taken as undirected friendships: u and v are friends
+ * if either lists the other, and self-loops are ignored.
+ */
+public interface ClusteringStatistics {
+
+    /* the number of triangles, i.e. groups of three users who are all friends */
+    public double triangles();
+
+    /* the fraction of pairs of a user's friends who are friends themselves, over all users' pairs */
+    public double transitivity();
+
+    /* the local clustering coefficient averaged over every user, counting users with fewer than two friends as 0 */
+    public double averageClustering();
+}
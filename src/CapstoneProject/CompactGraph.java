@@ -0,0 +1,608 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Base class for read-only graphs that remap user IDs to dense indices
+ * 0..n-1 and keep each vertex's neighbors as a sorted list of dense
+ * indices. The numbering follows ascending ID order unless a subclass
+ * picks another one (ReorderedGraph numbers users for memory locality).
+ *
+ * Subclasses decide where the adjacency lives (on-heap arrays in
+ * CSRGraph, memory-mapped files in MappedGraph, gap-encoded bytes in
+ * CompressedGraph); the primitive query methods here only go through
+ * the accessors below, so every representation answers the same
+ * questions in the same shape.
+ */
+public abstract class CompactGraph implements Graph {
+
+    /* largest in- or out-degree, found on first use */
+    private int maxDegree = -1;
+    private volatile MutualFriendEngine mutualFriendEngine;
+    /* scratch for getPath and getSecondDegreeMutualCounts, one per thread */
+    private final ThreadLocal<Workspace> workspaces;
+
+    protected CompactGraph() {
+        workspaces = ThreadLocal.withInitial(Workspace::new);
+    }
+
+    /*
+     * Shares the per-thread scratch of an earlier version of the same graph,
+     * so publishing a new version does not cost every reader fresh arrays
+     */
+    CompactGraph(CompactGraph previous) {
+        workspaces = previous.workspaces;
+    }
+
+    /**
+     * Scratch state for one thread's queries. Marks are epoch stamps: a
+     * vertex counts as visited by a side only while its stamp equals that
+     * side's epoch, so a query starts in O(1) instead of clearing O(n)
+     * arrays. The arrays only ever grow.
+     */
+    private static class Workspace {
+        /* stamp[v] == epoch or epoch + 1 says which side (or role) v has */
+        int[] stamp = new int[0];
+        /* parents for each side of getPath; mutual friend counts in the 2-hop pass */
+        int[] parent = new int[0];
+        int[] otherParent = new int[0];
+        /* BFS queues; the 2-hop pass keeps its candidates and the user's friends here */
+        int[] queue = new int[0];
+        int[] otherQueue = new int[0];
+        /* one neighbor list */
+        int[] buf = new int[0];
+        int epoch;
+
+        /* grows the arrays to fit g, takes two fresh epoch values and returns the first */
+        int begin(CompactGraph g) {
+            int n = g.vertexCount();
+            if (stamp.length < n) {
+                stamp = Arrays.copyOf(stamp, n);
+                parent = new int[n];
+                otherParent = new int[n];
+                queue = new int[n];
+                otherQueue = new int[n];
+            }
+            if (buf.length < g.maxDegree()) {
+                buf = new int[g.maxDegree()];
+            }
+            if (epoch >= Integer.MAX_VALUE - 2) {
+                Arrays.fill(stamp, 0);
+                epoch = 0;
+            }
+            epoch += 2;
+            return epoch;
+        }
+    }
+
+    /*
+     * Accessors for the dense index space
+     */
+    public abstract int vertexCount();
+
+    public abstract long edgeCount();
+
+    /**
+     * @param user	an integer representing one person's ID
+     * @return 		the dense index of user, or -1 if user is not in the graph
+     */
+    public abstract int indexOf(int user);
+
+    /**
+     * @param v		a dense vertex index
+     * @return 		the original user ID of v
+     */
+    public abstract int idOf(int v);
+
+    public abstract int degree(int v);
+
+    public abstract int inDegree(int v);
+
+    /**
+     * @return 		true if every edge u -> v is matched by an edge v -> u
+     */
+    public abstract boolean isSymmetric();
+
+    /**
+     * Copies the sorted out-neighbors of v into dest
+     *
+     * @param v		a dense vertex index
+     * @param dest	an array with room for at least degree(v) entries
+     * @return 		the number of neighbors copied, i.e. degree(v)
+     */
+    public abstract int copyNeighbors(int v, int[] dest);
+
+    /**
+     * Copies the sorted in-neighbors of v into dest
+     *
+     * @param v		a dense vertex index
+     * @param dest	an array with room for at least inDegree(v) entries
+     * @return 		the number of neighbors copied, i.e. inDegree(v)
+     */
+    public abstract int copyInNeighbors(int v, int[] dest);
+
+    /**
+     * In-place view of the out-lists for graphs that keep them in one int
+     * array: v's sorted out-neighbors are
+     * neighborArray()[neighborOffsets()[v] .. neighborOffsets()[v + 1]).
+     * Callers must treat both arrays as read-only.
+     *
+     * @return 		the shared neighbor array, or null if the lists can only
+     * 				be read through copyNeighbors (mapped or encoded graphs)
+     */
+    int[] neighborArray() {
+        return null;
+    }
+
+    /**
+     * @return 		the offsets that go with neighborArray(), or null if it is null
+     */
+    int[] neighborOffsets() {
+        return null;
+    }
+
+    /**
+     * @return 		the largest in- or out-degree in the graph, which is
+     * 				the scratch space any single neighbor copy needs
+     */
+    public int maxDegree() {
+        if (maxDegree < 0) {
+            int max = 0;
+            for (int v = 0; v < vertexCount(); v++) {
+                max = Math.max(max, Math.max(degree(v), inDegree(v)));
+            }
+            maxDegree = max;
+        }
+        return maxDegree;
+    }
+
+    /**
+     * Compact graphs are read-only; vertices can only be supplied at build time
+     */
+    public void addVertex(int num) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is read-only");
+    }
+
+    /**
+     * Compact graphs are read-only; edges can only be supplied at build time
+     */
+    public void addEdge(int from, int to) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is read-only");
+    }
+
+    /**
+     * Rebuilds the boxed adjacency map, mainly for interop and testing
+     */
+    public HashMap<Integer, HashSet<Integer>> exportGraph() {
+        HashMap<Integer, HashSet<Integer>> map = new HashMap<Integer, HashSet<Integer>>();
+        int[] buf = new int[maxDegree()];
+        for (int v = 0; v < vertexCount(); v++) {
+            HashSet<Integer> friends = new HashSet<Integer>();
+            int degree = copyNeighbors(v, buf);
+            for (int i = 0; i < degree; i++) {
+                friends.add(idOf(buf[i]));
+            }
+            map.put(idOf(v), friends);
+        }
+        return map;
+    }
+
+    /**
+     * Primitive equivalent of CapstoneDoSGraph.getConnections
+     *
+     * @param user	an integer representing one person's ID
+     * @return 		sorted IDs of the direct connections of user,
+     * 				or null if user is not in the graph
+     */
+    public int[] getConnections(int user) {
+        int v = indexOf(user);
+        if (v < 0) {
+            return null;
+        }
+        int[] friends = new int[degree(v)];
+        copyNeighbors(v, friends);
+        for (int i = 0; i < friends.length; i++) {
+            friends[i] = idOf(friends[i]);
+        }
+        return friends;
+    }
+
+    /**
+     * @return 		the engine behind the mutual-friend queries, created on first use
+     */
+    public MutualFriendEngine mutualFriendEngine() {
+        MutualFriendEngine engine = mutualFriendEngine;
+        if (engine == null) {
+            //a racing thread may build a second engine; either one is correct
+            engine = new MutualFriendEngine(this);
+            mutualFriendEngine = engine;
+        }
+        return engine;
+    }
+
+    /**
+     * Primitive equivalent of CapstoneDoSGraph.getMutualFriends
+     *
+     * @param user1	an integer representing one person's ID
+     * @param user2	an integer representing a second person's ID
+     * @return 		sorted IDs of the connections shared by both people
+     * 				(empty if either person is not in the graph)
+     */
+    public int[] getMutualFriends(int user1, int user2) {
+        int a = indexOf(user1);
+        int b = indexOf(user2);
+        if (a < 0 || b < 0) {
+            return new int[0];
+        }
+        int[] mutual = new int[Math.min(degree(a), degree(b))];
+        int count = mutualFriendEngine().intersect(a, b, mutual, 0);
+        for (int i = 0; i < count; i++) {
+            mutual[i] = idOf(mutual[i]);
+        }
+        return Arrays.copyOf(mutual, count);
+    }
+
+    /**
+     * Writes the IDs of the connections shared by both people into a
+     * caller-supplied buffer, in ascending order, without allocating
+     *
+     * @param out	room for the smaller of the two users' connection counts
+     * @return 		the number of IDs written (0 if either person is not in the graph)
+     */
+    public int getMutualFriends(int user1, int user2, int[] out) {
+        int a = indexOf(user1);
+        int b = indexOf(user2);
+        if (a < 0 || b < 0) {
+            return 0;
+        }
+        int count = mutualFriendEngine().intersect(a, b, out, 0);
+        for (int i = 0; i < count; i++) {
+            out[i] = idOf(out[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Counts the connections shared by both people without allocating
+     *
+     * @return 		the number of mutual friends (0 if either person is not in the graph)
+     */
+    public int countMutualFriends(int user1, int user2) {
+        int a = indexOf(user1);
+        int b = indexOf(user2);
+        if (a < 0 || b < 0) {
+            return 0;
+        }
+        return mutualFriendEngine().count(a, b);
+    }
+
+    /**
+     * Primitive equivalent of CapstoneDoSGraph.getSecondDegreeMutualCounts:
+     * one pass over the friends' friends finds every user exactly 2 degrees
+     * away and counts their mutual friends in a scratch array. Symmetric
+     * graphs walk each friend's list once; otherwise out-lists find the
+     * candidates and in-lists count the mutual friends. Scratch space
+     * comes from the calling thread's workspace, so only the result is
+     * allocated.
+     *
+     * @param user	an integer representing one person's ID
+     * @return 		the second degree connections, their mutual friend counts
+     * 				and the friends that link to at least one of them
+     */
+    public SecondDegreeCounts getSecondDegreeMutualCounts(int user) {
+        int u = indexOf(user);
+        if (u < 0) {
+            return new SecondDegreeCounts(user, new int[0], new int[0], new int[0]);
+        }
+        Workspace ws = workspaces.get();
+        //stamp: epoch = user or friend, epoch + 1 = candidate with parent[w] mutual friends
+        int epoch = ws.begin(this);
+        int[] friends = ws.otherQueue;
+        int numFriends = copyNeighbors(u, friends);
+        int[] mutualCounts = ws.parent;
+        int[] candidates = ws.queue;
+        int numCandidates = 0;
+        int[] linkingFriends = new int[numFriends];
+        int numLinking = 0;
+        int[] buf = ws.buf;
+        boolean symmetric = isSymmetric();
+
+        ws.stamp[u] = epoch;
+        for (int i = 0; i < numFriends; i++) {
+            ws.stamp[friends[i]] = epoch;
+        }
+        for (int j = 0; j < numFriends; j++) {
+            int f = friends[j];
+            int degree = copyNeighbors(f, buf);
+            boolean links = false;
+            for (int i = 0; i < degree; i++) {
+                int w = buf[i];
+                if (ws.stamp[w] != epoch && ws.stamp[w] != epoch + 1) {
+                    ws.stamp[w] = epoch + 1;
+                    candidates[numCandidates++] = w;
+                    //a directed graph counts mutual friends over in-lists below
+                    mutualCounts[w] = symmetric ? 1 : 0;
+                    links = true;
+                } else if (symmetric && ws.stamp[w] == epoch + 1) {
+                    mutualCounts[w]++;
+                    links = true;
+                }
+            }
+            if (links && symmetric) {
+                linkingFriends[numLinking++] = idOf(f);
+            }
+        }
+        if (!symmetric) {
+            for (int j = 0; j < numFriends; j++) {
+                int f = friends[j];
+                int degree = copyInNeighbors(f, buf);
+                boolean links = false;
+                for (int i = 0; i < degree; i++) {
+                    int w = buf[i];
+                    if (ws.stamp[w] == epoch + 1) {
+                        mutualCounts[w]++;
+                        links = true;
+                    }
+                }
+                if (links) {
+                    linkingFriends[numLinking++] = idOf(f);
+                }
+            }
+        }
+
+        int[] candidateIds = new int[numCandidates];
+        int[] candidateCounts = new int[numCandidates];
+        for (int i = 0; i < numCandidates; i++) {
+            candidateIds[i] = idOf(candidates[i]);
+            candidateCounts[i] = mutualCounts[candidates[i]];
+        }
+        return new SecondDegreeCounts(user, candidateIds, candidateCounts,
+                Arrays.copyOf(linkingFriends, numLinking));
+    }
+
+    /**
+     * Primitive equivalent of CapstoneDoSGraph.getSecondDegreeMutualFriends
+     *
+     * @return 		sorted IDs of the user's friends that are also friends
+     * 				with at least one second degree connection
+     */
+    public int[] getSecondDegreeMutualFriends(int user) {
+        int[] mutualFriends = getSecondDegreeMutualCounts(user).mutualFriends;
+        Arrays.sort(mutualFriends);
+        return mutualFriends;
+    }
+
+    /**
+     * Primitive equivalent of CapstoneDoSGraph.getPath.
+     * Bidirectional breadth first search: one search walks out-edges from
+     * user1, the other walks in-edges from user2, and each round expands
+     * whichever frontier is smaller until the two meet. The marks, parents
+     * and queues come from the calling thread's workspace.
+     *
+     * @param user1	an integer representing the starting person's ID
+     * @param user2	an integer representing the target person's ID
+     * @return 		the path in the same shape as CapstoneDoSGraph.getPath:
+     * 				user2 first, walking back towards (but excluding) user1;
+     * 				null if either user is missing or user2 is unreachable
+     */
+    public int[] getPath(int user1, int user2) {
+        int start = indexOf(user1);
+        int end = indexOf(user2);
+        if (start < 0 || end < 0) {
+            return null;
+        }
+        if (start == end) {
+            return new int[0];
+        }
+        Workspace ws = workspaces.get();
+        //stamp epoch = reached from start, epoch + 1 = reached from end
+        int epoch = ws.begin(this);
+        //fwdParent[v] is v's predecessor from start, bwdParent[v] its successor towards end
+        int[] fwdParent = ws.parent;
+        int[] bwdParent = ws.otherParent;
+        ws.stamp[start] = epoch;
+        ws.stamp[end] = epoch + 1;
+        fwdParent[start] = start;
+        bwdParent[end] = end;
+        int[] fwdQueue = ws.queue;
+        int[] bwdQueue = ws.otherQueue;
+        int fwdHead = 0, fwdTail = 1;
+        int bwdHead = 0, bwdTail = 1;
+        fwdQueue[0] = start;
+        bwdQueue[0] = end;
+        int[] buf = ws.buf;
+
+        while (fwdHead < fwdTail && bwdHead < bwdTail) {
+            int meet;
+            if (fwdTail - fwdHead <= bwdTail - bwdHead) {
+                int levelEnd = fwdTail;
+                meet = expandLevel(fwdQueue, fwdHead, levelEnd, true, ws.stamp, epoch, fwdParent, buf);
+                fwdHead = levelEnd;
+                fwdTail = meet < 0 ? -meet - 1 : fwdTail;
+            } else {
+                int levelEnd = bwdTail;
+                meet = expandLevel(bwdQueue, bwdHead, levelEnd, false, ws.stamp, epoch + 1, bwdParent, buf);
+                bwdHead = levelEnd;
+                bwdTail = meet < 0 ? -meet - 1 : bwdTail;
+            }
+            if (meet >= 0) {
+                return reconstructPath(start, end, meet, fwdParent, bwdParent);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Expands queue[head..levelEnd) by one level over out-edges (forward)
+     * or in-edges, stamping what it reaches with mark. Returns the first
+     * vertex already claimed by the opposite search, or -(newTail + 1) if
+     * the searches have not met yet. Because a whole level is expanded at a
+     * time, the first meeting vertex lies on a shortest path.
+     */
+    private int expandLevel(int[] queue, int head, int levelEnd, boolean forward,
+                            int[] stamp, int mark, int[] parent, int[] buf) {
+        //the two sides' marks are epoch and epoch + 1
+        int otherMark = forward ? mark + 1 : mark - 1;
+        int tail = levelEnd;
+        for (int q = head; q < levelEnd; q++) {
+            int curr = queue[q];
+            int degree = forward ? copyNeighbors(curr, buf) : copyInNeighbors(curr, buf);
+            for (int i = 0; i < degree; i++) {
+                int friend = buf[i];
+                if (stamp[friend] != mark) {
+                    parent[friend] = curr;
+                    if (stamp[friend] == otherMark) {
+                        return friend;
+                    }
+                    stamp[friend] = mark;
+                    queue[tail++] = friend;
+                }
+            }
+        }
+        return -(tail + 1);
+    }
+
+    /*
+     * Joins the two half paths at meet: end back to meet along bwdParent,
+     * then meet back to (but excluding) start along fwdParent
+     */
+    private int[] reconstructPath(int start, int end, int meet, int[] fwdParent, int[] bwdParent) {
+        int length = 0;
+        for (int v = meet; v != start; v = fwdParent[v]) {
+            length++;
+        }
+        int fwdLength = length;
+        for (int v = meet; v != end; v = bwdParent[v]) {
+            length++;
+        }
+        int[] path = new int[length];
+        int pos = length - fwdLength;
+        for (int v = meet; v != start; v = fwdParent[v]) {
+            path[pos++] = idOf(v);
+        }
+        pos = length - fwdLength;
+        for (int v = meet; v != end; ) {
+            v = bwdParent[v];
+            path[--pos] = idOf(v);
+        }
+        return path;
+    }
+
+    /**
+     * Primitive equivalent of CapstoneDoSGraph.getDegreeOfSeparation
+     *
+     * @param user1	an integer representing one person's ID
+     * @param user2	an integer representing a second person's ID
+     * @return 		the number of hops from user1 to user2, or
+     * 				CapstoneDoSGraph.UNREACHABLE if either user is missing
+     * 				or there is no path
+     */
+    public int getDegreeOfSeparation(int user1, int user2) {
+        int[] path = getPath(user1, user2);
+        return path == null ? CapstoneDoSGraph.UNREACHABLE : path.length;
+    }
+
+    /**
+     * Degrees of separation for many pairs, with one BFS per distinct
+     * source; see DistanceBatch
+     *
+     * @param users1	the first user ID of each pair
+     * @param users2	the second user ID of each pair
+     * @param pool		the pool that runs the searches
+     * @return 			the degree of separation of each pair, in order
+     */
+    public int[] getDegreesOfSeparation(int[] users1, int[] users2, ForkJoinPool pool) {
+        return DistanceBatch.compute(this, users1, users2, pool);
+    }
+
+    /**
+     * Primitive equivalent of CapstoneDoSGraph.getNDegreeConnections
+     *
+     * @param user		an integer representing one person's ID
+     * @param degreeOfSeparation
+     * 					the number of hops between the user and
+     * 					the returned connections
+     * @return 			sorted IDs of the users exactly n degrees
+     * 					of separation from user
+     */
+    public int[] getNDegreeConnections(int user, final int degreeOfSeparation) {
+        if (degreeOfSeparation == 0) {
+            return indexOf(user) < 0 ? new int[0] : new int[] { user };
+        }
+        final int[][] result = { new int[0] };
+        streamLevels(user, degreeOfSeparation, new LevelVisitor() {
+            public boolean visitLevel(int degree, int[] users, int count) {
+                if (degree == degreeOfSeparation) {
+                    result[0] = Arrays.copyOf(users, count);
+                }
+                return true;
+            }
+        });
+        Arrays.sort(result[0]);
+        return result[0];
+    }
+
+    /**
+     * Primitive equivalent of CapstoneDoSGraph.streamLevels: hands each
+     * BFS level to the visitor as soon as it is complete. Memory is two
+     * int frontiers, one ID buffer and a visited bitmap.
+     *
+     * @param user		an integer representing one person's ID
+     * @param maxDegree	the last degree of separation to visit
+     * @param visitor	receives each level as user IDs; returns false to stop
+     * @return 			the number of levels handed to the visitor
+     */
+    public int streamLevels(int user, int maxDegree, LevelVisitor visitor) {
+        int start = indexOf(user);
+        if (start < 0) {
+            return 0;
+        }
+        long[] visited = new long[(vertexCount() + 63) >>> 6];
+        visited[start >>> 6] |= 1L << start;
+        int[] frontier = new int[16];
+        int[] next = new int[16];
+        int[] ids = new int[16];
+        int[] buf = new int[maxDegree()];
+        frontier[0] = start;
+        int frontierSize = 1;
+
+        int degree = 0;
+        while (frontierSize > 0 && degree < maxDegree) {
+            int nextSize = 0;
+            for (int q = 0; q < frontierSize; q++) {
+                int count = copyNeighbors(frontier[q], buf);
+                for (int i = 0; i < count; i++) {
+                    int w = buf[i];
+                    if ((visited[w >>> 6] & (1L << w)) == 0) {
+                        visited[w >>> 6] |= 1L << w;
+                        if (nextSize == next.length) {
+                            next = Arrays.copyOf(next, 2 * nextSize);
+                        }
+                        next[nextSize++] = w;
+                    }
+                }
+            }
+            if (nextSize == 0) {
+                break;
+            }
+            degree++;
+            if (ids.length < nextSize) {
+                ids = new int[next.length];
+            }
+            for (int i = 0; i < nextSize; i++) {
+                ids[i] = idOf(next[i]);
+            }
+            if (!visitor.visitLevel(degree, ids, nextSize)) {
+                break;
+            }
+            int[] temp = frontier;
+            frontier = next;
+            frontierSize = nextSize;
+            next = temp;
+        }
+        return degree;
+    }
+}
@@ -0,0 +1,271 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Connected-component index for a CapstoneDoSGraph, kept up to date by
+ * addVertex and addEdge so queries can reject unreachable pairs in O(1).
+ *
+ * A union-find over dense user indices tracks the weakly connected
+ * components (edges taken as undirected): users in different components
+ * can never reach each other. For a symmetric graph that is the whole
+ * story. For a directed graph the strongly connected components are also
+ * found, with Tarjan's algorithm. Tarjan numbers components in reverse
+ * topological order, so if u reaches v then scc(u) >= scc(v). A pair with
+ * scc(u) < scc(v) is therefore unreachable.
+ *
+ * A new edge u -> v with scc(u) > scc(v) cannot close a cycle, so it
+ * leaves the numbering valid. Any other new edge between components marks
+ * the SCCs stale. Stale SCCs are not rebuilt by the next query: queries
+ * answer from the weak components alone, which can only err towards "may
+ * reach", until enough of them have gone by to pay for the O(V + E)
+ * rebuild (one query per REBUILD_SHARE users and edges). Interleaved
+ * inserts and queries therefore cost each query O(1) amortized. Removing
+ * edges (by re-adding a vertex) can split a component, which union-find
+ * cannot undo, so it marks everything stale and the next query rebuilds
+ * the union-find.
+ *
+ * The index also hands out version stamps for QueryCache, all drawn from
+ * one increasing clock. A user's vertex version changes whenever its own
+ * connections change. A component version changes whenever an edge is
+ * added anywhere in the component (including a merge). A cached answer
+ * that depends only on those is still valid while the stamps it was
+ * computed under still match.
+ */
+class ComponentIndex {
+
+    /* stale SCCs are rebuilt after (users + edges) / REBUILD_SHARE queries */
+    private static final int REBUILD_SHARE = 64;
+
+    private final CapstoneDoSGraph graph;
+    /* union-find parent and, at each root, the component size */
+    private int[] parent = new int[16];
+    private int[] size = new int[16];
+    private int count;
+    /* edges recorded by addEdge, repeats included; only sizes the rebuild budget */
+    private long edges;
+    private boolean stale;
+
+    /* strongly connected component of each user, valid while sccValid */
+    private int[] sccIds = new int[16];
+    private int sccCount;
+    private boolean sccValid = true;
+    /* queries answered without the SCCs since they went stale */
+    private long staleQueries;
+
+    /* version stamps: per dense index, and per union-find root */
+    private long clock;
+    private long[] vertexVersions = new long[16];
+    private long[] rootVersions = new long[16];
+
+    ComponentIndex(CapstoneDoSGraph graph) {
+        this.graph = graph;
+    }
+
+    /* registers the next dense index as a component of its own */
+    synchronized void addIndex(int v) {
+        if (v == parent.length) {
+            parent = Arrays.copyOf(parent, 2 * v);
+            size = Arrays.copyOf(size, 2 * v);
+            sccIds = Arrays.copyOf(sccIds, 2 * v);
+            vertexVersions = Arrays.copyOf(vertexVersions, 2 * v);
+            rootVersions = Arrays.copyOf(rootVersions, 2 * v);
+        }
+        parent[v] = v;
+        size[v] = 1;
+        vertexVersions[v] = rootVersions[v] = ++clock;
+        count = v + 1;
+        //an isolated user can sit anywhere in the topological order
+        sccIds[v] = sccCount++;
+    }
+
+    /* records a new edge between two dense indices */
+    synchronized void addEdge(int from, int to) {
+        vertexVersions[from] = ++clock;
+        edges++;
+        if (stale) {
+            return;
+        }
+        union(from, to);
+        rootVersions[find(from)] = clock;
+        if (sccValid && sccIds[from] < sccIds[to]) {
+            sccValid = false;
+        }
+    }
+
+    /* user v lost its edges; rebuild everything on the next query */
+    synchronized void invalidate(int v) {
+        vertexVersions[v] = ++clock;
+        stale = true;
+        sccValid = false;
+    }
+
+    /**
+     * @return 		the weakly connected component of dense index v,
+     * 				identified by its union-find root
+     */
+    synchronized int componentOf(int v) {
+        refresh();
+        return find(v);
+    }
+
+    /**
+     * @return 		the number of users in v's weakly connected component,
+     * 				an upper bound on how many users v can reach
+     */
+    synchronized int componentSize(int v) {
+        refresh();
+        return size[find(v)];
+    }
+
+    /**
+     * @return 		false if there is certainly no path from u to v; true if
+     * 				there may be one (for a symmetric graph, there is one)
+     */
+    synchronized boolean mayReach(int u, int v) {
+        refresh();
+        if (find(u) != find(v)) {
+            return false;
+        }
+        if (graph.isSymmetric()) {
+            return true;
+        }
+        if (!sccValid) {
+            if (++staleQueries * REBUILD_SHARE < count + edges) {
+                return true;
+            }
+            computeSccs();
+        }
+        return sccIds[u] >= sccIds[v];
+    }
+
+    /* changes whenever any user or connection is added or dropped */
+    synchronized long version() {
+        return clock;
+    }
+
+    /* changes whenever v's own connections change */
+    synchronized long vertexVersion(int v) {
+        return vertexVersions[v];
+    }
+
+    /* changes whenever an edge is added anywhere in v's component */
+    synchronized long componentVersion(int v) {
+        refresh();
+        return rootVersions[find(v)];
+    }
+
+    private int find(int v) {
+        while (parent[v] != v) {
+            //path halving
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    private void union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b) {
+            return;
+        }
+        if (size[a] < size[b]) {
+            int temp = a;
+            a = b;
+            b = temp;
+        }
+        parent[b] = a;
+        size[a] += size[b];
+    }
+
+    /* rebuilds the union-find from the graph's edges if it is stale */
+    private void refresh() {
+        if (!stale) {
+            return;
+        }
+        clock++;
+        for (int v = 0; v < count; v++) {
+            parent[v] = v;
+            size[v] = 1;
+            rootVersions[v] = clock;
+        }
+        for (Map.Entry<Integer, HashSet<Integer>> entry : graph.adjacency().entrySet()) {
+            int u = graph.indexOf(entry.getKey());
+            for (Integer friend : entry.getValue()) {
+                union(u, graph.indexOf(friend));
+            }
+        }
+        stale = false;
+    }
+
+    /*
+     * Iterative Tarjan over the graph's out-edges. Components are numbered
+     * in the order they complete, which is reverse topological order.
+     */
+    @SuppressWarnings("unchecked")
+    private void computeSccs() {
+        int n = count;
+        int[] order = new int[n];
+        int[] low = new int[n];
+        Arrays.fill(order, -1);
+        boolean[] onStack = new boolean[n];
+        int[] sccStack = new int[n];
+        int sccTop = 0;
+        int[] callStack = new int[n];
+        Iterator<Integer>[] edges = (Iterator<Integer>[]) new Iterator<?>[n];
+        Map<Integer, HashSet<Integer>> adjacency = graph.adjacency();
+        int visited = 0;
+        sccCount = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (order[root] >= 0) {
+                continue;
+            }
+            int callTop = 0;
+            callStack[callTop++] = root;
+            order[root] = low[root] = visited++;
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+            while (callTop > 0) {
+                int v = callStack[callTop - 1];
+                if (edges[v] == null) {
+                    HashSet<Integer> friends = adjacency.get(graph.idOf(v));
+                    edges[v] = friends == null ? new HashSet<Integer>().iterator() : friends.iterator();
+                }
+                if (edges[v].hasNext()) {
+                    int w = graph.indexOf(edges[v].next());
+                    if (order[w] < 0) {
+                        order[w] = low[w] = visited++;
+                        sccStack[sccTop++] = w;
+                        onStack[w] = true;
+                        callStack[callTop++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                    continue;
+                }
+                edges[v] = null;
+                callTop--;
+                if (low[v] == order[v]) {
+                    int w;
+                    do {
+                        w = sccStack[--sccTop];
+                        onStack[w] = false;
+                        sccIds[w] = sccCount;
+                    } while (w != v);
+                    sccCount++;
+                }
+                if (callTop > 0) {
+                    int caller = callStack[callTop - 1];
+                    low[caller] = Math.min(low[caller], low[v]);
+                }
+            }
+        }
+        sccValid = true;
+        staleQueries = 0;
+    }
+}
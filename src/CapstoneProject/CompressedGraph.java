@@ -0,0 +1,384 @@
+package CapstoneProject;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Read-only graph with gap-encoded neighbor lists, for graphs whose 4
+ * bytes per edge in CSRGraph no longer fit in memory.
+ *
+ * A list is stored as its degree, then its first neighbor as a signed
+ * (zigzag) distance from the vertex itself, then the gaps between
+ * consecutive neighbors minus one, in whichever of two formats is
+ * smaller for that list:
+ *   varint      7 bits per byte, so a gap below 128 costs one byte;
+ *               best when a few large gaps sit among many small ones
+ *   bit-packed  every gap in the width of the largest one, read by one
+ *               unaligned 8-byte load, a shift and a mask; a run of
+ *               consecutive neighbors has width 0 and takes no space
+ * Gaps are small when friends have nearby dense indices, which is what
+ * ReorderedGraph's orderings arrange, so compressing a ReorderedGraph
+ * gains more than compressing a CSRGraph numbered by user ID.
+ *
+ * Lists are kept in pages of up to 1GB, and no list crosses a page, so a
+ * graph may hold more than 2^31 bytes of adjacency. Any list can be found
+ * directly, without decoding the ones before it:
+ *   groupStart[v / 64] + pointer[v] is its byte position, where
+ *   groupStart is a long per 64 vertices and pointer an int per vertex
+ * copyNeighbors decodes a whole list in one forward pass into the
+ * caller's buffer, which is how every traversal and intersection in
+ * CompactGraph, MutualFriendEngine and ParallelBFS already reads
+ * neighbors, so all of them work on this class unchanged.
+ *
+ * The graph keeps the dense numbering of the graph it was built from.
+ * When that numbering is not in ascending ID order, results that
+ * CompactGraph promises sorted by ID are sorted here.
+ */
+public class CompressedGraph extends CompactGraph {
+
+    /* pages hold 2^PAGE_BITS bytes at most */
+    private static final int PAGE_BITS = 30;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    /* every page ends with this many spare bytes, so 8-byte loads never run off it */
+    private static final int PADDING = 8;
+    /* vertices that share one groupStart entry */
+    private static final int GROUP_BITS = 6;
+    /* format byte of a varint list; any other value is a bit-packed width */
+    private static final int VARINT = 0xFF;
+    private static final VarHandle LONGS =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /* dense index -> original user ID */
+    private final int[] vertexIds;
+    /* user IDs sorted ascending and the dense index of each, or null when vertexIds is sorted */
+    private final int[] sortedIds;
+    private final int[] sortedIndex;
+    private final Lists out;
+    /* the in-neighbor lists; the same object as out when every edge is mutual */
+    private final Lists in;
+    private final long edgeCount;
+
+    /* one direction's encoded lists */
+    private static final class Lists {
+        final byte[][] pages;
+        final long[] groupStart;
+        final int[] pointer;
+
+        Lists(byte[][] pages, long[] groupStart, int[] pointer) {
+            this.pages = pages;
+            this.groupStart = groupStart;
+            this.pointer = pointer;
+        }
+
+        long position(int v) {
+            return groupStart[v >>> GROUP_BITS] + pointer[v];
+        }
+
+        long bytes() {
+            long bytes = 8L * groupStart.length + 4L * pointer.length;
+            for (byte[] page : pages) {
+                bytes += page.length;
+            }
+            return bytes;
+        }
+    }
+
+    private CompressedGraph(int[] vertexIds, int[] sortedIds, int[] sortedIndex, Lists out, Lists in,
+                            long edgeCount) {
+        this.vertexIds = vertexIds;
+        this.sortedIds = sortedIds;
+        this.sortedIndex = sortedIndex;
+        this.out = out;
+        this.in = in;
+        this.edgeCount = edgeCount;
+    }
+
+    /**
+     * Builds a compressed copy of any compact graph, keeping its numbering
+     *
+     * @param g		the graph to compress; a CSRGraph, ReorderedGraph or MappedGraph
+     * @return 		a CompressedGraph with the same vertices, edges and dense indices
+     */
+    public static CompressedGraph fromGraph(CompactGraph g) {
+        int n = g.vertexCount();
+        int[] vertexIds = new int[n];
+        boolean ascending = true;
+        for (int v = 0; v < n; v++) {
+            vertexIds[v] = g.idOf(v);
+            ascending &= v == 0 || vertexIds[v - 1] < vertexIds[v];
+        }
+        int[] sortedIds = null;
+        int[] sortedIndex = null;
+        if (!ascending) {
+            long[] keys = new long[n];
+            for (int v = 0; v < n; v++) {
+                keys[v] = ((long) vertexIds[v] << 32) | v;
+            }
+            Arrays.sort(keys);
+            sortedIds = new int[n];
+            sortedIndex = new int[n];
+            for (int i = 0; i < n; i++) {
+                sortedIds[i] = (int) (keys[i] >> 32);
+                sortedIndex[i] = (int) keys[i];
+            }
+        }
+        int[] buf = new int[g.maxDegree()];
+        Lists out = encode(g, true, buf);
+        Lists in = g.isSymmetric() ? out : encode(g, false, buf);
+        return new CompressedGraph(vertexIds, sortedIds, sortedIndex, out, in, g.edgeCount());
+    }
+
+    /*
+     * Encodes the out- (forward) or in-neighbor lists of g. Pages grow by
+     * doubling and are trimmed when closed; a list that might not fit in
+     * the rest of a page starts a new one.
+     */
+    private static Lists encode(CompactGraph g, boolean forward, int[] buf) {
+        int n = g.vertexCount();
+        long[] groupStart = new long[(n >>> GROUP_BITS) + 1];
+        int[] pointer = new int[n];
+        byte[][] pages = new byte[1][];
+        int numPages = 0;
+        byte[] page = new byte[1024];
+        int pos = 0;
+        for (int v = 0; v < n; v++) {
+            int degree = forward ? g.copyNeighbors(v, buf) : g.copyInNeighbors(v, buf);
+            //degree, first neighbor and every gap take at most 5 bytes each, plus the format byte
+            long worstCase = 5L * (degree + 1) + 1 + PADDING;
+            if (pos + worstCase > PAGE_SIZE) {
+                if (numPages == pages.length) {
+                    pages = Arrays.copyOf(pages, 2 * numPages);
+                }
+                pages[numPages++] = Arrays.copyOf(page, pos + PADDING);
+                page = new byte[1024];
+                pos = 0;
+            }
+            if (pos + worstCase > page.length) {
+                page = Arrays.copyOf(page, (int) Math.min(PAGE_SIZE,
+                        Math.max(2L * page.length, pos + worstCase)));
+            }
+            long at = ((long) numPages << PAGE_BITS) + pos;
+            if ((v & ((1 << GROUP_BITS) - 1)) == 0) {
+                groupStart[v >>> GROUP_BITS] = at;
+            }
+            pointer[v] = Math.toIntExact(at - groupStart[v >>> GROUP_BITS]);
+            pos = writeList(page, pos, v, buf, degree);
+        }
+        if (numPages == pages.length) {
+            pages = Arrays.copyOf(pages, numPages + 1);
+        }
+        pages[numPages++] = Arrays.copyOf(page, pos + PADDING);
+        return new Lists(Arrays.copyOf(pages, numPages), groupStart, pointer);
+    }
+
+    /* writes one list in its smaller format and returns the new position */
+    private static int writeList(byte[] page, int pos, int v, int[] list, int degree) {
+        pos = writeVarint(page, pos, degree);
+        if (degree == 0) {
+            return pos;
+        }
+        int first = list[0] - v;
+        pos = writeVarint(page, pos, (first << 1) ^ (first >> 31));
+        int maxGap = 0;
+        long varintBytes = 0;
+        for (int i = 1; i < degree; i++) {
+            int gap = list[i] - list[i - 1] - 1;
+            maxGap |= gap;
+            varintBytes += varintLength(gap);
+        }
+        int width = 32 - Integer.numberOfLeadingZeros(maxGap);
+        long packedBytes = ((long) (degree - 1) * width + 7) >>> 3;
+        if (varintBytes < packedBytes) {
+            page[pos++] = (byte) VARINT;
+            for (int i = 1; i < degree; i++) {
+                pos = writeVarint(page, pos, list[i] - list[i - 1] - 1);
+            }
+            return pos;
+        }
+        page[pos++] = (byte) width;
+        if (width == 0) {
+            return pos;
+        }
+        long bits = 0;
+        int used = 0;
+        for (int i = 1; i < degree; i++) {
+            bits |= (long) (list[i] - list[i - 1] - 1) << used;
+            used += width;
+            while (used >= 8) {
+                page[pos++] = (byte) bits;
+                bits >>>= 8;
+                used -= 8;
+            }
+        }
+        if (used > 0) {
+            page[pos++] = (byte) bits;
+        }
+        return pos;
+    }
+
+    private static int varintLength(int value) {
+        return value >>> 7 == 0 ? 1 : value >>> 14 == 0 ? 2 : value >>> 21 == 0 ? 3 : value >>> 28 == 0 ? 4 : 5;
+    }
+
+    /* writes value as an unsigned varint, low 7 bits first, and returns the new position */
+    private static int writeVarint(byte[] page, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            page[pos++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        page[pos++] = (byte) value;
+        return pos;
+    }
+
+    /* the degree stored at the head of v's list in lists */
+    private static int readDegree(Lists lists, int v) {
+        long at = lists.position(v);
+        byte[] page = lists.pages[(int) (at >>> PAGE_BITS)];
+        int pos = (int) at & (PAGE_SIZE - 1);
+        int b = page[pos++];
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = page[pos++];
+            value |= (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    /*
+     * Decodes v's list into dest. Varints are read inline: a byte with
+     * its top bit clear (non-negative as a Java byte) ends a value.
+     * Bit-packed gaps need no branches at all.
+     */
+    private static int decode(Lists lists, int v, int[] dest) {
+        long at = lists.position(v);
+        byte[] page = lists.pages[(int) (at >>> PAGE_BITS)];
+        int pos = (int) at & (PAGE_SIZE - 1);
+        int b = page[pos++];
+        int degree = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = page[pos++];
+            degree |= (b & 0x7F) << shift;
+        }
+        if (degree == 0) {
+            return 0;
+        }
+        b = page[pos++];
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = page[pos++];
+            value |= (b & 0x7F) << shift;
+        }
+        int prev = v + ((value >>> 1) ^ -(value & 1));
+        dest[0] = prev;
+        int width = page[pos++] & 0xFF;
+        if (width == VARINT) {
+            for (int i = 1; i < degree; i++) {
+                b = page[pos++];
+                int gap = b & 0x7F;
+                for (int shift = 7; b < 0; shift += 7) {
+                    b = page[pos++];
+                    gap |= (b & 0x7F) << shift;
+                }
+                prev += gap + 1;
+                dest[i] = prev;
+            }
+            return degree;
+        }
+        long mask = (1L << width) - 1;
+        long bit = (long) pos << 3;
+        for (int i = 1; i < degree; i++, bit += width) {
+            long word = (long) LONGS.get(page, (int) (bit >>> 3));
+            prev += (int) ((word >>> (bit & 7)) & mask) + 1;
+            dest[i] = prev;
+        }
+        return degree;
+    }
+
+    /**
+     * @return 		the bytes held for the adjacency (pages and list
+     * 				pointers of both directions), not counting the ID tables
+     */
+    public long adjacencyBytes() {
+        return in == out ? out.bytes() : out.bytes() + in.bytes();
+    }
+
+    public int vertexCount() {
+        return vertexIds.length;
+    }
+
+    public long edgeCount() {
+        return edgeCount;
+    }
+
+    public int indexOf(int user) {
+        if (sortedIds == null) {
+            int v = Arrays.binarySearch(vertexIds, user);
+            return v >= 0 ? v : -1;
+        }
+        int i = Arrays.binarySearch(sortedIds, user);
+        return i >= 0 ? sortedIndex[i] : -1;
+    }
+
+    public int idOf(int v) {
+        return vertexIds[v];
+    }
+
+    public int degree(int v) {
+        return readDegree(out, v);
+    }
+
+    public int inDegree(int v) {
+        return readDegree(in, v);
+    }
+
+    public boolean isSymmetric() {
+        return in == out;
+    }
+
+    public int copyNeighbors(int v, int[] dest) {
+        return decode(out, v, dest);
+    }
+
+    public int copyInNeighbors(int v, int[] dest) {
+        return decode(in, v, dest);
+    }
+
+    /**
+     * @return 		sorted IDs of the direct connections of user,
+     * 				or null if user is not in the graph
+     */
+    @Override
+    public int[] getConnections(int user) {
+        int[] friends = super.getConnections(user);
+        if (friends != null && sortedIds != null) {
+            Arrays.sort(friends);
+        }
+        return friends;
+    }
+
+    /**
+     * @return 		sorted IDs of the connections shared by both people
+     */
+    @Override
+    public int[] getMutualFriends(int user1, int user2) {
+        int[] mutual = super.getMutualFriends(user1, user2);
+        if (sortedIds != null) {
+            Arrays.sort(mutual);
+        }
+        return mutual;
+    }
+
+    /**
+     * @return 		the number of IDs written to out, in ascending order
+     */
+    @Override
+    public int getMutualFriends(int user1, int user2, int[] out) {
+        int count = super.getMutualFriends(user1, user2, out);
+        if (sortedIds != null) {
+            Arrays.sort(out, 0, count);
+        }
+        return count;
+    }
+}
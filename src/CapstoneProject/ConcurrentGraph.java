@@ -0,0 +1,287 @@
+package CapstoneProject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A graph that can take new friendships while it is being queried.
+ *
+ * Readers never lock. They query an immutable OverlayGraph snapshot that
+ * is published through a volatile field, so a query sees one consistent
+ * version of the graph from start to finish. Writers append addEdge and
+ * addVertex calls to a delta buffer. publish() applies the delta to the
+ * snapshot with OverlayGraph.withEdges, which copies only the lists the
+ * delta touches, and swaps the result in atomically. A publish also
+ * happens on its own whenever the delta reaches the batch size. Readers
+ * keep using the old snapshot until the swap, and writers keep filling a
+ * fresh delta while a merge runs.
+ *
+ * Once the overlay holds more than half as many ints as the graph has
+ * edges, the writer whose batch crossed the line folds it back into a
+ * CSRGraph with OverlayGraph.compact. That full pass runs outside both
+ * locks; deltas published meanwhile are replayed onto the result before
+ * it is swapped in. A reader publishing its own writes therefore only
+ * ever waits for a delta to be applied, never for a rebuild.
+ *
+ * Consistency levels:
+ *   SNAPSHOT           reads see the last published snapshot; edges
+ *                      still in the delta are invisible to everyone
+ *   READ_YOUR_WRITES   as SNAPSHOT, but a thread that added edges since
+ *                      the last publish publishes them before its next
+ *                      read, so it always sees its own writes
+ *
+ * Unlike CapstoneDoSGraph.addVertex, adding a user that already exists
+ * leaves its edges alone; edges are never removed.
+ */
+public class ConcurrentGraph implements Graph {
+
+    /* what a read is guaranteed to see */
+    public enum Consistency { SNAPSHOT, READ_YOUR_WRITES }
+
+    public static final int DEFAULT_BATCH_SIZE = 1 << 16;
+
+    private final Consistency consistency;
+    private final int batchSize;
+    private volatile OverlayGraph snapshot;
+    /* sequence number of the last write included in snapshot */
+    private volatile long publishedSequence;
+
+    /* the delta, guarded by writeLock */
+    private final Object writeLock = new Object();
+    private int[] deltaFrom = new int[16];
+    private int[] deltaTo = new int[16];
+    private int deltaEdges;
+    private int[] deltaUsers = new int[16];
+    private int deltaUserCount;
+    private long writeSequence;
+
+    /* serializes merges so deltas are applied in order */
+    private final Object publishLock = new Object();
+    /* set while a compaction runs; deltas published meanwhile, guarded by publishLock */
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private ArrayList<Delta> sinceCompaction;
+    /* sequence number of each thread's latest write, for READ_YOUR_WRITES */
+    private final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[1]);
+
+    public ConcurrentGraph() {
+        this(Consistency.SNAPSHOT, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param consistency	what reads are guaranteed to see
+     * @param batchSize		the number of buffered writes that triggers a publish
+     */
+    public ConcurrentGraph(Consistency consistency, int batchSize) {
+        this(CSRGraph.fromEdges(new int[0], new int[0], 0), consistency, batchSize);
+    }
+
+    /**
+     * Starts from an existing compact graph, e.g. one loaded with
+     * FastGraphLoader or GraphSnapshot
+     */
+    public ConcurrentGraph(CSRGraph initial, Consistency consistency, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.snapshot = new OverlayGraph(initial);
+        this.consistency = consistency;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Adds a user without edges; visible after the next publish
+     *
+     * @param num	the num/ID of the new node
+     */
+    public void addVertex(int num) {
+        boolean full;
+        synchronized (writeLock) {
+            if (deltaUserCount == deltaUsers.length) {
+                deltaUsers = Arrays.copyOf(deltaUsers, 2 * deltaUserCount);
+            }
+            deltaUsers[deltaUserCount++] = num;
+            lastWrite.get()[0] = ++writeSequence;
+            full = deltaEdges + deltaUserCount >= batchSize;
+        }
+        if (full) {
+            publish();
+            compactIfLarge();
+        }
+    }
+
+    /**
+     * Adds an edge; visible after the next publish
+     *
+     * @param from	an integer representing one person's ID
+     * @param to	an integer representing a second person's ID
+     */
+    public void addEdge(int from, int to) {
+        boolean full;
+        synchronized (writeLock) {
+            if (deltaEdges == deltaFrom.length) {
+                deltaFrom = Arrays.copyOf(deltaFrom, 2 * deltaEdges);
+                deltaTo = Arrays.copyOf(deltaTo, 2 * deltaEdges);
+            }
+            deltaFrom[deltaEdges] = from;
+            deltaTo[deltaEdges++] = to;
+            lastWrite.get()[0] = ++writeSequence;
+            full = deltaEdges + deltaUserCount >= batchSize;
+        }
+        if (full) {
+            publish();
+            compactIfLarge();
+        }
+    }
+
+    /* one handed-over delta buffer */
+    private static class Delta {
+        final int[] from;
+        final int[] to;
+        final int edges;
+        final int[] users;
+        final int userCount;
+
+        Delta(int[] from, int[] to, int edges, int[] users, int userCount) {
+            this.from = from;
+            this.to = to;
+            this.edges = edges;
+            this.users = users;
+            this.userCount = userCount;
+        }
+
+        OverlayGraph applyTo(OverlayGraph graph) {
+            return graph.withEdges(from, to, edges, users, userCount);
+        }
+    }
+
+    /**
+     * Applies every write buffered so far to a new snapshot and makes it
+     * visible to readers. Writers are only blocked while the delta is
+     * handed over, not while it is applied, and applying it costs time in
+     * proportion to the lists it touches rather than to the whole graph.
+     *
+     * @return 		the snapshot now visible to readers
+     */
+    public CompactGraph publish() {
+        synchronized (publishLock) {
+            Delta delta;
+            long sequence;
+            synchronized (writeLock) {
+                if (deltaEdges == 0 && deltaUserCount == 0) {
+                    return snapshot;
+                }
+                delta = new Delta(deltaFrom, deltaTo, deltaEdges, deltaUsers, deltaUserCount);
+                sequence = writeSequence;
+                deltaFrom = new int[16];
+                deltaTo = new int[16];
+                deltaEdges = 0;
+                deltaUsers = new int[16];
+                deltaUserCount = 0;
+            }
+            OverlayGraph next = delta.applyTo(snapshot);
+            if (sinceCompaction != null) {
+                sinceCompaction.add(delta);
+            }
+            snapshot = next;
+            publishedSequence = sequence;
+            return next;
+        }
+    }
+
+    /**
+     * Folds the published snapshot's overlay back into a CSRGraph, so
+     * lookups stop going through page tables and later publishes copy
+     * less. The pass over the graph runs without holding either lock;
+     * readers and writers carry on meanwhile.
+     */
+    public void compact() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            OverlayGraph from;
+            synchronized (publishLock) {
+                from = snapshot;
+                sinceCompaction = new ArrayList<Delta>();
+            }
+            OverlayGraph compacted = from.compact();
+            synchronized (publishLock) {
+                for (Delta delta : sinceCompaction) {
+                    compacted = delta.applyTo(compacted);
+                }
+                snapshot = compacted;
+            }
+        } finally {
+            synchronized (publishLock) {
+                sinceCompaction = null;
+            }
+            compacting.set(false);
+        }
+    }
+
+    /* compacts once the overlay has grown to half the size of the graph */
+    private void compactIfLarge() {
+        OverlayGraph current = snapshot;
+        if (current.overlaySize() > current.edgeCount() / 2 + batchSize) {
+            compact();
+        }
+    }
+
+    /**
+     * The graph a read should run on under this graph's consistency level.
+     * Queries on the returned graph need no locking, and it never changes,
+     * so several queries on it see the same version.
+     */
+    public CompactGraph read() {
+        if (consistency == Consistency.READ_YOUR_WRITES && lastWrite.get()[0] > publishedSequence) {
+            return publish();
+        }
+        return snapshot;
+    }
+
+    /* the last published snapshot, whatever the consistency level */
+    public CompactGraph snapshot() {
+        return snapshot;
+    }
+
+    /* writes buffered but not yet published */
+    public int pendingWrites() {
+        synchronized (writeLock) {
+            return deltaEdges + deltaUserCount;
+        }
+    }
+
+    public Consistency consistency() {
+        return consistency;
+    }
+
+    public int[] getPath(int user1, int user2) {
+        return read().getPath(user1, user2);
+    }
+
+    public int getDegreeOfSeparation(int user1, int user2) {
+        return read().getDegreeOfSeparation(user1, user2);
+    }
+
+    public int[] getMutualFriends(int user1, int user2) {
+        return read().getMutualFriends(user1, user2);
+    }
+
+    public int[] getNDegreeConnections(int user, int degreeOfSeparation) {
+        return read().getNDegreeConnections(user, degreeOfSeparation);
+    }
+
+    public int[] getSecondDegreeMutualFriends(int user) {
+        return read().getSecondDegreeMutualFriends(user);
+    }
+
+    /**
+     * @return 		the connections of the snapshot a read would see
+     */
+    public HashMap<Integer, HashSet<Integer>> exportGraph() {
+        return read().exportGraph();
+    }
+}
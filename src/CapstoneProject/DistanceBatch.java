@@ -0,0 +1,201 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Degrees of separation for many (source, target) pairs at once.
+ *
+ * Pairs are grouped by source, and each group is answered by a single BFS
+ * from its source that stops as soon as every target in the group has been
+ * reached. A source with only one target, the usual case when most pairs
+ * have distinct sources, is answered by a bidirectional search instead,
+ * which is cheaper for a single pair. Groups run in parallel on the
+ * caller's pool, both kinds of search reusing the worker's epoch-stamped
+ * scratch arrays, and the answers come back in one int[] in the order
+ * the pairs were given.
+ */
+public class DistanceBatch {
+
+    /**
+     * Scratch state for one worker's searches
+     */
+    private static class Workspace {
+        /* stamp[v] == epoch: reached from the source; epoch + 1: from the target */
+        final int[] stamp;
+        final int[] targetStamp;
+        /* hops from the side that reached v */
+        final int[] dist;
+        final int[] queue;
+        final int[] otherQueue;
+        final int[] buf;
+        int epoch;
+
+        Workspace(int n, int maxDegree) {
+            stamp = new int[n];
+            targetStamp = new int[n];
+            dist = new int[n];
+            queue = new int[n];
+            otherQueue = new int[n];
+            buf = new int[maxDegree];
+        }
+
+        /* takes two fresh epoch values and returns the first */
+        int begin() {
+            if (epoch >= Integer.MAX_VALUE - 2) {
+                Arrays.fill(stamp, 0);
+                Arrays.fill(targetStamp, 0);
+                epoch = 0;
+            }
+            epoch += 2;
+            return epoch;
+        }
+    }
+
+    /**
+     * @param g			the graph to query
+     * @param sources	the first user ID of each pair
+     * @param targets	the second user ID of each pair
+     * @param pool		the pool that runs the source groups
+     * @return 			the degree of separation of each pair, or
+     * 					CapstoneDoSGraph.UNREACHABLE where there is no path
+     * 					or a user is missing
+     */
+    public static int[] compute(final CompactGraph g, final int[] sources, final int[] targets, ForkJoinPool pool) {
+        if (sources.length != targets.length) {
+            throw new IllegalArgumentException("sources and targets differ in length: "
+                    + sources.length + " vs " + targets.length);
+        }
+        final int[] result = new int[sources.length];
+        //sort pair numbers by source index, so each group is a contiguous run
+        int pairs = 0;
+        final long[] sorted = new long[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            int s = g.indexOf(sources[i]);
+            if (s < 0 || g.indexOf(targets[i]) < 0) {
+                result[i] = CapstoneDoSGraph.UNREACHABLE;
+            } else {
+                sorted[pairs++] = ((long) s << 32) | i;
+            }
+        }
+        Arrays.sort(sorted, 0, pairs);
+        int groups = 0;
+        final int[] groupStart = new int[pairs + 1];
+        for (int p = 0; p < pairs; p++) {
+            if (p == 0 || (sorted[p] >>> 32) != (sorted[p - 1] >>> 32)) {
+                groupStart[groups++] = p;
+            }
+        }
+        groupStart[groups] = pairs;
+
+        final ThreadLocal<Workspace> workspaces =
+                ThreadLocal.withInitial(() -> new Workspace(g.vertexCount(), g.maxDegree()));
+        Parallel.forRange(pool, groups, (from, to) -> {
+            Workspace ws = workspaces.get();
+            for (int group = from; group < to; group++) {
+                answerGroup(g, sorted, groupStart[group], groupStart[group + 1], targets, result, ws);
+            }
+        });
+        return result;
+    }
+
+    /* answers the pairs sorted[first..last), which share a source */
+    private static void answerGroup(CompactGraph g, long[] sorted, int first, int last,
+                                    int[] targets, int[] result, Workspace ws) {
+        int source = (int) (sorted[first] >>> 32);
+        if (last - first == 1) {
+            int pair = (int) sorted[first];
+            result[pair] = distance(g, source, g.indexOf(targets[pair]), ws);
+            return;
+        }
+        int epoch = ws.begin();
+        int remaining = 0;
+        for (int p = first; p < last; p++) {
+            int t = g.indexOf(targets[(int) sorted[p]]);
+            if (ws.targetStamp[t] != epoch && t != source) {
+                ws.targetStamp[t] = epoch;
+                remaining++;
+            }
+        }
+
+        //BFS from the source until every distinct target has been reached
+        ws.stamp[source] = epoch;
+        ws.dist[source] = 0;
+        ws.queue[0] = source;
+        int head = 0;
+        int tail = 1;
+        while (head < tail && remaining > 0) {
+            int v = ws.queue[head++];
+            int degree = g.copyNeighbors(v, ws.buf);
+            for (int i = 0; i < degree; i++) {
+                int w = ws.buf[i];
+                if (ws.stamp[w] != epoch) {
+                    ws.stamp[w] = epoch;
+                    ws.dist[w] = ws.dist[v] + 1;
+                    ws.queue[tail++] = w;
+                    if (ws.targetStamp[w] == epoch) {
+                        remaining--;
+                    }
+                }
+            }
+        }
+
+        for (int p = first; p < last; p++) {
+            int pair = (int) sorted[p];
+            int t = g.indexOf(targets[pair]);
+            result[pair] = ws.stamp[t] == epoch ? ws.dist[t] : CapstoneDoSGraph.UNREACHABLE;
+        }
+    }
+
+    /*
+     * Bidirectional search between two dense indices: the source side walks
+     * out-edges, the target side in-edges, and each round expands a whole
+     * level of the smaller frontier. The first vertex found by both sides
+     * lies on a shortest path.
+     */
+    private static int distance(CompactGraph g, int source, int target, Workspace ws) {
+        if (source == target) {
+            return 0;
+        }
+        int epoch = ws.begin();
+        ws.stamp[source] = epoch;
+        ws.dist[source] = 0;
+        ws.queue[0] = source;
+        ws.stamp[target] = epoch + 1;
+        ws.dist[target] = 0;
+        ws.otherQueue[0] = target;
+        int fwdHead = 0, fwdTail = 1;
+        int bwdHead = 0, bwdTail = 1;
+        while (fwdHead < fwdTail && bwdHead < bwdTail) {
+            boolean forward = fwdTail - fwdHead <= bwdTail - bwdHead;
+            int[] queue = forward ? ws.queue : ws.otherQueue;
+            int mark = forward ? epoch : epoch + 1;
+            int otherMark = forward ? epoch + 1 : epoch;
+            int levelEnd = forward ? fwdTail : bwdTail;
+            int tail = levelEnd;
+            for (int q = forward ? fwdHead : bwdHead; q < levelEnd; q++) {
+                int v = queue[q];
+                int degree = forward ? g.copyNeighbors(v, ws.buf) : g.copyInNeighbors(v, ws.buf);
+                for (int i = 0; i < degree; i++) {
+                    int w = ws.buf[i];
+                    if (ws.stamp[w] == otherMark) {
+                        return ws.dist[v] + 1 + ws.dist[w];
+                    }
+                    if (ws.stamp[w] != mark) {
+                        ws.stamp[w] = mark;
+                        ws.dist[w] = ws.dist[v] + 1;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+            if (forward) {
+                fwdHead = levelEnd;
+                fwdTail = tail;
+            } else {
+                bwdHead = levelEnd;
+                bwdTail = tail;
+            }
+        }
+        return CapstoneDoSGraph.UNREACHABLE;
+    }
+}
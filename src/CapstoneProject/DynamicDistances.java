@@ -0,0 +1,244 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps exact degree-of-separation arrays for a tracked set of users up to
+ * date while friendships keep arriving.
+ *
+ * Edges go through this class (it implements Graph, so it can be handed
+ * to a loader) and are added to the underlying CapstoneDoSGraph. A new
+ * edge u -> v can only shorten distances, and only if it gives v a
+ * shorter route: dist(v) > dist(u) + 1. In that case v is lowered, and the
+ * decrease is pushed outwards level by level. A user is touched only if
+ * its own distance actually drops. addEdges inserts a whole batch first
+ * and then repairs each tracked user once. The batch's improvements are
+ * seeded in order of their new distance, so even with many seeds each
+ * user is lowered at most once per repair.
+ *
+ * Re-adding an existing user with CapstoneDoSGraph.addVertex drops its
+ * edges, which can lengthen distances. addVertex here therefore only adds
+ * users that are missing. Edges added to the graph directly, bypassing
+ * this class, are not seen until recomputeAll().
+ */
+public class DynamicDistances implements Graph {
+
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    private final CapstoneDoSGraph graph;
+    /* distances from each tracked user, indexed by the graph's dense index */
+    private final LinkedHashMap<Integer, int[]> distances = new LinkedHashMap<Integer, int[]>();
+    /* scratch for repairs: new-distance-ordered seeds and the level queue */
+    private long[] seeds = new long[16];
+    private int[] queue = new int[16];
+    private long relaxed;
+
+    public DynamicDistances(CapstoneDoSGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Starts keeping distances from a user, with one full BFS
+     *
+     * @param user	an integer representing one person's ID
+     */
+    public void track(int user) {
+        if (graph.indexOf(user) < 0) {
+            throw new IllegalArgumentException("user " + user + " is not in the graph");
+        }
+        distances.put(user, bfs(user));
+    }
+
+    public void untrack(int user) {
+        distances.remove(user);
+    }
+
+    public int[] trackedUsers() {
+        int[] users = new int[distances.size()];
+        int i = 0;
+        for (Integer user : distances.keySet()) {
+            users[i++] = user;
+        }
+        return users;
+    }
+
+    /**
+     * @param source	a tracked user's ID
+     * @param user		any user's ID
+     * @return 			the degree of separation from source to user, or
+     * 					CapstoneDoSGraph.UNREACHABLE if there is no path
+     */
+    public int distance(int source, int user) {
+        int[] dist = distancesFrom(source);
+        int v = graph.indexOf(user);
+        if (v < 0 || v >= dist.length || dist[v] == INFINITE) {
+            return CapstoneDoSGraph.UNREACHABLE;
+        }
+        return dist[v];
+    }
+
+    /* the live distance array of a tracked user, indexed by dense index */
+    private int[] distancesFrom(int source) {
+        int[] dist = distances.get(source);
+        if (dist == null) {
+            throw new IllegalArgumentException("user " + source + " is not tracked");
+        }
+        return dist;
+    }
+
+    /* number of times a user's distance has been lowered by a repair */
+    public long relaxed() {
+        return relaxed;
+    }
+
+    /**
+     * Adds a user if it is not in the graph yet
+     *
+     * @param num	the num/ID of the new node
+     */
+    public void addVertex(int num) {
+        if (graph.indexOf(num) < 0) {
+            graph.addVertex(num);
+        }
+    }
+
+    /**
+     * Adds an edge and repairs every tracked user's distances
+     *
+     * @param from	an integer representing one person's ID
+     * @param to	an integer representing a second person's ID
+     */
+    public void addEdge(int from, int to) {
+        addEdges(new int[] { from }, new int[] { to }, 1);
+    }
+
+    /**
+     * Adds a batch of edges, then repairs each tracked user's distances
+     * once for the whole batch
+     *
+     * @param from		source user ID of each edge
+     * @param to		target user ID of each edge
+     * @param count		number of edges stored in the arrays
+     */
+    public void addEdges(int[] from, int[] to, int count) {
+        for (int e = 0; e < count; e++) {
+            graph.addEdge(from[e], to[e]);
+        }
+        int n = graph.indexCount();
+        if (queue.length < n) {
+            queue = new int[n];
+        }
+        if (seeds.length < count) {
+            seeds = new long[count];
+        }
+        for (Map.Entry<Integer, int[]> entry : distances.entrySet()) {
+            int[] dist = entry.getValue();
+            if (dist.length < n) {
+                int old = dist.length;
+                dist = Arrays.copyOf(dist, Math.max(n, old + (old >> 1)));
+                Arrays.fill(dist, old, dist.length, INFINITE);
+                entry.setValue(dist);
+            }
+            repair(dist, from, to, count);
+        }
+    }
+
+    /*
+     * Seeds every edge endpoint whose distance the batch improves, sorted
+     * by new distance, then runs a BFS that merges each seed in when the
+     * search reaches its level
+     */
+    private void repair(int[] dist, int[] from, int[] to, int count) {
+        int numSeeds = 0;
+        for (int e = 0; e < count; e++) {
+            int du = dist[graph.indexOf(from[e])];
+            int v = graph.indexOf(to[e]);
+            if (du != INFINITE && du + 1 < dist[v]) {
+                seeds[numSeeds++] = ((long) (du + 1) << 32) | v;
+            }
+        }
+        if (numSeeds == 0) {
+            return;
+        }
+        Arrays.sort(seeds, 0, numSeeds);
+
+        int head = 0;
+        int tail = 0;
+        int next = 0;
+        while (head < tail || next < numSeeds) {
+            //the next level is either the queued users' or the closest seed's
+            int level = head < tail ? dist[queue[head]] : (int) (seeds[next] >>> 32);
+            while (next < numSeeds && (int) (seeds[next] >>> 32) == level) {
+                int v = (int) seeds[next++];
+                if (dist[v] > level) {
+                    dist[v] = level;
+                    queue[tail++] = v;
+                    relaxed++;
+                }
+            }
+            int levelEnd = tail;
+            for (; head < levelEnd; head++) {
+                HashSet<Integer> friends = graph.getConnections(graph.idOf(queue[head]));
+                if (friends == null) {
+                    continue;
+                }
+                for (Integer friend : friends) {
+                    int w = graph.indexOf(friend);
+                    if (dist[w] > level + 1) {
+                        dist[w] = level + 1;
+                        queue[tail++] = w;
+                        relaxed++;
+                    }
+                }
+            }
+        }
+    }
+
+    /* plain BFS from a user over the whole graph */
+    private int[] bfs(int user) {
+        int n = graph.indexCount();
+        int[] dist = new int[n];
+        Arrays.fill(dist, INFINITE);
+        if (queue.length < n) {
+            queue = new int[n];
+        }
+        int start = graph.indexOf(user);
+        dist[start] = 0;
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int v = queue[head++];
+            HashSet<Integer> friends = graph.getConnections(graph.idOf(v));
+            if (friends == null) {
+                continue;
+            }
+            for (Integer friend : friends) {
+                int w = graph.indexOf(friend);
+                if (dist[w] == INFINITE) {
+                    dist[w] = dist[v] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Recomputes every tracked user from scratch, e.g. after edges were
+     * added to or removed from the graph behind this class's back
+     */
+    public void recomputeAll() {
+        for (Map.Entry<Integer, int[]> entry : distances.entrySet()) {
+            entry.setValue(bfs(entry.getKey()));
+        }
+    }
+
+    public HashMap<Integer, HashSet<Integer>> exportGraph() {
+        return graph.exportGraph();
+    }
+}
@@ -0,0 +1,280 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * "People you may know": ranks the users exactly 2 degrees away from a
+ * user and returns the K best.
+ *
+ * Candidates are scored in the same 2-hop pass as
+ * CompactGraph.getSecondDegreeMutualCounts, either by their number of
+ * mutual friends or by Adamic-Adar (each mutual friend f adds
+ * 1 / log(degree(f)), so friends with few connections count for more).
+ * The K best are kept in a fixed-size min-heap rather than sorting every
+ * candidate. All per-query state lives in a per-thread workspace that is
+ * reused and cleared by walking only the entries a query touched, so a
+ * query allocates nothing beyond its result however large the 2-hop
+ * neighborhood is.
+ */
+public class FriendRecommender {
+
+    /* how candidates are scored */
+    public enum Scoring { MUTUAL_FRIENDS, ADAMIC_ADAR }
+
+    private static final byte SELF_OR_FRIEND = 1;
+    private static final byte CANDIDATE = 2;
+
+    private final CompactGraph graph;
+    private final Scoring scoring;
+    private final ThreadLocal<Workspace> workspaces;
+
+    /**
+     * Scratch state for one thread's queries, sized to the graph once
+     */
+    private static class Workspace {
+        final byte[] role;
+        final double[] scores;
+        final int[] candidates;
+        final int[] friends;
+        final int[] buf;
+        int[] heapIds = new int[0];
+        double[] heapScores = new double[0];
+
+        Workspace(int n, int maxDegree) {
+            role = new byte[n];
+            scores = new double[n];
+            candidates = new int[n];
+            friends = new int[maxDegree];
+            buf = new int[maxDegree];
+        }
+    }
+
+    /**
+     * Recommendations for many users, packed into flat arrays:
+     * the results for users[i] are ids/scores[i*k .. i*k + counts[i])
+     */
+    public static class Batch {
+        public final int k;
+        public final int[] ids;
+        public final double[] scores;
+        public final int[] counts;
+
+        Batch(int users, int k) {
+            int size;
+            try {
+                size = Math.multiplyExact(users, k);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException(users + " users with " + k
+                        + " recommendations each do not fit in one batch");
+            }
+            this.k = k;
+            ids = new int[size];
+            scores = new double[size];
+            counts = new int[users];
+        }
+    }
+
+    public FriendRecommender(CompactGraph graph) {
+        this(graph, Scoring.MUTUAL_FRIENDS);
+    }
+
+    public FriendRecommender(final CompactGraph graph, Scoring scoring) {
+        this.graph = graph;
+        this.scoring = scoring;
+        workspaces = ThreadLocal.withInitial(() -> new Workspace(graph.vertexCount(), graph.maxDegree()));
+    }
+
+    /**
+     * Returns the K best-scored users exactly 2 degrees away from user
+     *
+     * @param user	an integer representing one person's ID
+     * @param k		the number of recommendations wanted
+     * @return 		recommended user IDs, best first (fewer than k if
+     * 				there are not enough candidates)
+     */
+    public int[] recommend(int user, int k) {
+        int[] ids = new int[k];
+        double[] scores = new double[k];
+        int count = recommend(user, k, ids, scores, 0);
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Writes the K best-scored users exactly 2 degrees away from user into
+     * the caller's arrays, best first. Ties are broken by lower user ID.
+     *
+     * @param outIds	receives recommended user IDs from outPos
+     * @param outScores	receives the matching scores from outPos
+     * @return 			the number of recommendations written, at most k
+     */
+    public int recommend(int user, int k, int[] outIds, double[] outScores, int outPos) {
+        int u = graph.indexOf(user);
+        if (u < 0 || k <= 0) {
+            return 0;
+        }
+        Workspace ws = workspaces.get();
+        int numCandidates = scoreCandidates(u, ws);
+        int count = selectTopK(ws, numCandidates, k);
+        //pop the min-heap from the back so the best candidate ends up first
+        for (int i = count - 1; i >= 0; i--) {
+            outIds[outPos + i] = graph.idOf(ws.heapIds[0]);
+            outScores[outPos + i] = ws.heapScores[0];
+            popMin(ws, i + 1);
+        }
+        clear(ws, u, numCandidates);
+        return count;
+    }
+
+    /**
+     * Scores many users in parallel, each on its worker thread's workspace
+     *
+     * @param users		the users to recommend for
+     * @param k			the number of recommendations wanted per user
+     * @param pool		the pool that runs the queries
+     * @return 			every user's recommendations packed into flat arrays
+     */
+    public Batch recommendAll(final int[] users, final int k, ForkJoinPool pool) {
+        final Batch batch = new Batch(users.length, k);
+        Parallel.forRange(pool, users.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                batch.counts[i] = recommend(users[i], k, batch.ids, batch.scores, Math.multiplyExact(i, k));
+            }
+        });
+        return batch;
+    }
+
+    /*
+     * Marks the user and friends, then finds and scores every candidate.
+     * Symmetric graphs need one pass over the friends' lists; otherwise the
+     * friends' out-lists find candidates and their in-lists do the scoring.
+     * Returns the number of candidates recorded in ws.candidates.
+     */
+    private int scoreCandidates(int u, Workspace ws) {
+        int numFriends = graph.copyNeighbors(u, ws.friends);
+        boolean symmetric = graph.isSymmetric();
+        int numCandidates = 0;
+        ws.role[u] = SELF_OR_FRIEND;
+        for (int i = 0; i < numFriends; i++) {
+            ws.role[ws.friends[i]] = SELF_OR_FRIEND;
+        }
+        for (int i = 0; i < numFriends; i++) {
+            int f = ws.friends[i];
+            double weight = weight(f);
+            int degree = graph.copyNeighbors(f, ws.buf);
+            for (int j = 0; j < degree; j++) {
+                int w = ws.buf[j];
+                if (ws.role[w] == 0) {
+                    ws.role[w] = CANDIDATE;
+                    ws.candidates[numCandidates++] = w;
+                }
+                if (symmetric && ws.role[w] == CANDIDATE) {
+                    ws.scores[w] += weight;
+                }
+            }
+        }
+        if (!symmetric) {
+            for (int i = 0; i < numFriends; i++) {
+                int f = ws.friends[i];
+                double weight = weight(f);
+                int degree = graph.copyInNeighbors(f, ws.buf);
+                for (int j = 0; j < degree; j++) {
+                    if (ws.role[ws.buf[j]] == CANDIDATE) {
+                        ws.scores[ws.buf[j]] += weight;
+                    }
+                }
+            }
+        }
+        return numCandidates;
+    }
+
+    /* what one mutual friend f contributes to a candidate's score */
+    private double weight(int f) {
+        if (scoring == Scoring.MUTUAL_FRIENDS) {
+            return 1;
+        }
+        return 1 / Math.log(Math.max(2, graph.degree(f)));
+    }
+
+    /* keeps the k best candidates in a min-heap at the front of heapIds */
+    private int selectTopK(Workspace ws, int numCandidates, int k) {
+        if (ws.heapIds.length < k) {
+            ws.heapIds = new int[k];
+            ws.heapScores = new double[k];
+        }
+        int size = 0;
+        for (int i = 0; i < numCandidates; i++) {
+            int c = ws.candidates[i];
+            double score = ws.scores[c];
+            if (size < k) {
+                ws.heapIds[size] = c;
+                ws.heapScores[size] = score;
+                siftUp(ws, size++);
+            } else if (better(score, c, ws.heapScores[0], ws.heapIds[0])) {
+                ws.heapIds[0] = c;
+                ws.heapScores[0] = score;
+                siftDown(ws, 0, size);
+            }
+        }
+        return size;
+    }
+
+    /* true if (scoreA, a) should rank ahead of (scoreB, b); lower ID wins ties */
+    private boolean better(double scoreA, int a, double scoreB, int b) {
+        return scoreA > scoreB || (scoreA == scoreB && graph.idOf(a) < graph.idOf(b));
+    }
+
+    private void siftUp(Workspace ws, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(ws.heapScores[parent], ws.heapIds[parent], ws.heapScores[i], ws.heapIds[i])) {
+                break;
+            }
+            swap(ws, i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(Workspace ws, int i, int size) {
+        while (true) {
+            int worst = i;
+            for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                if (better(ws.heapScores[worst], ws.heapIds[worst], ws.heapScores[child], ws.heapIds[child])) {
+                    worst = child;
+                }
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(ws, i, worst);
+            i = worst;
+        }
+    }
+
+    private void popMin(Workspace ws, int size) {
+        swap(ws, 0, size - 1);
+        siftDown(ws, 0, size - 1);
+    }
+
+    private void swap(Workspace ws, int i, int j) {
+        int id = ws.heapIds[i];
+        ws.heapIds[i] = ws.heapIds[j];
+        ws.heapIds[j] = id;
+        double score = ws.heapScores[i];
+        ws.heapScores[i] = ws.heapScores[j];
+        ws.heapScores[j] = score;
+    }
+
+    /* resets only the entries this query touched */
+    private void clear(Workspace ws, int u, int numCandidates) {
+        int numFriends = graph.copyNeighbors(u, ws.friends);
+        ws.role[u] = 0;
+        for (int i = 0; i < numFriends; i++) {
+            ws.role[ws.friends[i]] = 0;
+        }
+        for (int i = 0; i < numCandidates; i++) {
+            ws.role[ws.candidates[i]] = 0;
+            ws.scores[ws.candidates[i]] = 0;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package CapstoneProject;
+
+import util.FastGraphLoader;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a compact graph, so a process can restart without
+ * re-parsing the text edge lists in data/.
+ *
+ * Layout (little-endian):
+ *   header   magic "DOSG", version, flags, vertex count n,
+ *            edge count m (long), CRC32 of the payload (long)
+ *   payload  vertexIds int[n], offsets int[n+1], neighbors int[m],
+ *            and, unless the SYMMETRIC flag is set,
+ *            inOffsets int[n+1], inNeighbors int[m]
+ *
+ * The payload is exactly the arrays of a CSRGraph, so load is a bulk
+ * copy out of the mapped file with no per-edge parsing. That copy, and
+ * the checksum pass load makes by default, still take time linear in the
+ * size of the graph; only MappedGraph.open starts in constant time, by
+ * serving queries from the file without loading it.
+ * Offsets are ints, so a snapshot holds at most 2^31-1 edges.
+ */
+public class GraphSnapshot {
+
+    static final int MAGIC = 0x444F5347;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    /* set when in-neighbors equal out-neighbors and are not stored twice */
+    static final int FLAG_SYMMETRIC = 1;
+
+    /* ints moved per write buffer / per mapped segment */
+    private static final int BLOCK_INTS = 1 << 20;
+    private static final long MAX_SEGMENT_INTS = Integer.MAX_VALUE / 4;
+    /* edges parsed per block when building a snapshot straight from text */
+    private static final int EDGE_BLOCK = 1 << 20;
+
+    /**
+     * Header fields of a snapshot file, read without touching the payload
+     */
+    static class Header {
+        final int flags;
+        final int vertexCount;
+        final long edgeCount;
+        final long checksum;
+
+        Header(int flags, int vertexCount, long edgeCount, long checksum) {
+            this.flags = flags;
+            this.vertexCount = vertexCount;
+            this.edgeCount = edgeCount;
+            this.checksum = checksum;
+        }
+
+        boolean isSymmetric() {
+            return (flags & FLAG_SYMMETRIC) != 0;
+        }
+
+        /* byte offsets of each payload array within the file */
+        long vertexIdsAt() {
+            return HEADER_BYTES;
+        }
+
+        long offsetsAt() {
+            return vertexIdsAt() + 4L * vertexCount;
+        }
+
+        long neighborsAt() {
+            return offsetsAt() + 4L * (vertexCount + 1);
+        }
+
+        long inOffsetsAt() {
+            return isSymmetric() ? offsetsAt() : neighborsAt() + 4L * edgeCount;
+        }
+
+        long inNeighborsAt() {
+            return isSymmetric() ? neighborsAt() : inOffsetsAt() + 4L * (vertexCount + 1);
+        }
+
+        long fileSize() {
+            return isSymmetric() ? neighborsAt() + 4L * edgeCount : inNeighborsAt() + 4L * edgeCount;
+        }
+    }
+
+    /**
+     * Writes a snapshot of a CapstoneDoSGraph
+     *
+     * @param g			the graph to save
+     * @param filename	the snapshot file to create or overwrite
+     */
+    public static void save(CapstoneDoSGraph g, String filename) throws IOException {
+        save(CSRGraph.fromGraph(g), filename);
+    }
+
+    /**
+     * Writes a snapshot of an exportGraph()-style adjacency map
+     */
+    public static void save(HashMap<Integer, HashSet<Integer>> map, String filename) throws IOException {
+        save(CSRGraph.fromMap(map), filename);
+    }
+
+    /**
+     * Writes a snapshot of a compact graph
+     *
+     * @param g			the graph to save
+     * @param filename	the snapshot file to create or overwrite
+     */
+    public static void save(CSRGraph g, String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
+        try {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            channel.position(HEADER_BYTES);
+            ByteBuffer block = ByteBuffer.allocateDirect(4 * BLOCK_INTS).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+            writeInts(channel, block, crc, g.vertexIds());
+            writeInts(channel, block, crc, g.offsets());
+            writeInts(channel, block, crc, g.neighbors());
+            int flags = 0;
+            if (g.isSymmetric()) {
+                flags |= FLAG_SYMMETRIC;
+            } else {
+                writeInts(channel, block, crc, g.inOffsets());
+                writeInts(channel, block, crc, g.inNeighbors());
+            }
+
+            writeHeader(channel, flags, g.vertexCount(), g.edgeCount(), crc.getValue());
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes a snapshot straight from a text edge list without ever holding
+     * the edges on the heap: only the vertex table and per-vertex offsets
+     * are kept in memory, while the neighbor arrays are filled, sorted and
+     * transposed inside the memory-mapped output file. Use this to prepare
+     * graphs that are larger than the heap for MappedGraph.
+     *
+     * @param edgeListFile	file with 2 integers per line, "from" then "to"
+     * @param filename		the snapshot file to create or overwrite
+     */
+    public static void saveFromEdgeList(String edgeListFile, String filename) throws IOException {
+        //pass 1: distinct user IDs, merged block by block into a sorted table
+        final SortedIdSet ids = new SortedIdSet();
+        long edges = FastGraphLoader.streamEdges(edgeListFile, EDGE_BLOCK,
+                (from, to, count) -> ids.add(from, to, count));
+        if (edges > Integer.MAX_VALUE - 8) {
+            throw new IOException(edgeListFile + " has too many edges for int offsets");
+        }
+        final int[] vertexIds = ids.toArray();
+        final int n = vertexIds.length;
+
+        //pass 2: out-degree of every vertex, repeated edges included for now
+        final int[] offsets = new int[n + 1];
+        FastGraphLoader.streamEdges(edgeListFile, EDGE_BLOCK, (from, to, count) -> {
+            for (int i = 0; i < count; i++) {
+                offsets[Arrays.binarySearch(vertexIds, from[i]) + 1]++;
+            }
+        });
+        int maxDegree = 0;
+        for (int v = 0; v < n; v++) {
+            maxDegree = Math.max(maxDegree, offsets[v + 1]);
+            offsets[v + 1] += offsets[v];
+        }
+
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
+        try {
+            //size the file for the worst case: no repeats and no symmetry
+            Header provisional = new Header(0, n, edges, 0);
+            file.setLength(0);
+            file.setLength(provisional.fileSize());
+            FileChannel channel = file.getChannel();
+
+            //pass 3: scatter every edge into its source's range
+            final MappedIntArray scattered = new MappedIntArray(channel, provisional.neighborsAt(), edges, true);
+            final int[] cursor = Arrays.copyOf(offsets, n);
+            FastGraphLoader.streamEdges(edgeListFile, EDGE_BLOCK, (from, to, count) -> {
+                for (int i = 0; i < count; i++) {
+                    int v = Arrays.binarySearch(vertexIds, from[i]);
+                    scattered.put(cursor[v]++, Arrays.binarySearch(vertexIds, to[i]));
+                }
+            });
+
+            //sort and de-duplicate each range, compacting towards the front
+            int[] buf = new int[maxDegree];
+            int write = 0;
+            int start = 0;
+            for (int v = 0; v < n; v++) {
+                int end = offsets[v + 1];
+                scattered.get(start, buf, 0, end - start);
+                Arrays.sort(buf, 0, end - start);
+                int unique = 0;
+                for (int i = 0; i < end - start; i++) {
+                    if (i == 0 || buf[i] != buf[i - 1]) {
+                        buf[unique++] = buf[i];
+                    }
+                }
+                scattered.put(write, buf, 0, unique);
+                offsets[v] = write;
+                write += unique;
+                start = end;
+            }
+            offsets[n] = write;
+            int m = write;
+
+            //transpose into the region that follows the compacted neighbors
+            Header layout = new Header(0, n, m, 0);
+            int[] inOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                int degree = offsets[v + 1] - offsets[v];
+                scattered.get(offsets[v], buf, 0, degree);
+                for (int i = 0; i < degree; i++) {
+                    inOffsets[buf[i] + 1]++;
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                inOffsets[v + 1] += inOffsets[v];
+            }
+            MappedIntArray inNeighbors = new MappedIntArray(channel, layout.inNeighborsAt(), m, true);
+            System.arraycopy(inOffsets, 0, cursor, 0, n);
+            for (int v = 0; v < n; v++) {
+                int degree = offsets[v + 1] - offsets[v];
+                scattered.get(offsets[v], buf, 0, degree);
+                for (int i = 0; i < degree; i++) {
+                    inNeighbors.put(cursor[buf[i]]++, v);
+                }
+            }
+            boolean symmetric = Arrays.equals(inOffsets, offsets) && sameContents(scattered, inNeighbors, m);
+
+            //write the tables, trim the file to its final layout and seal it
+            Header header = new Header(symmetric ? FLAG_SYMMETRIC : 0, n, m, 0);
+            new MappedIntArray(channel, header.vertexIdsAt(), n, true).put(0, vertexIds, 0, n);
+            new MappedIntArray(channel, header.offsetsAt(), n + 1, true).put(0, offsets, 0, n + 1);
+            if (!symmetric) {
+                new MappedIntArray(channel, header.inOffsetsAt(), n + 1, true).put(0, inOffsets, 0, n + 1);
+            }
+            file.setLength(header.fileSize());
+            writeHeader(channel, header.flags, n, m, payloadChecksum(channel));
+        } finally {
+            file.close();
+        }
+    }
+
+    /* compares the first count ints of two mapped arrays, a block at a time */
+    private static boolean sameContents(MappedIntArray a, MappedIntArray b, long count) {
+        int[] left = new int[EDGE_BLOCK];
+        int[] right = new int[EDGE_BLOCK];
+        for (long pos = 0; pos < count; pos += EDGE_BLOCK) {
+            int length = (int) Math.min(EDGE_BLOCK, count - pos);
+            a.get(pos, left, 0, length);
+            b.get(pos, right, 0, length);
+            for (int i = 0; i < length; i++) {
+                if (left[i] != right[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Sorted table of distinct IDs built from a stream of edge blocks.
+     * New IDs collect in a pending buffer that is merged into the table
+     * once it is as large as the table, so merging stays amortized.
+     */
+    private static class SortedIdSet {
+        private int[] sorted = new int[0];
+        private int[] pending = new int[2 * EDGE_BLOCK];
+        private int pendingSize = 0;
+
+        void add(int[] from, int[] to, int count) {
+            if (pendingSize + 2 * count > pending.length && pendingSize >= sorted.length) {
+                flush();
+            }
+            if (pendingSize + 2 * count > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(2 * pending.length, pendingSize + 2 * count));
+            }
+            System.arraycopy(from, 0, pending, pendingSize, count);
+            System.arraycopy(to, 0, pending, pendingSize + count, count);
+            pendingSize += 2 * count;
+        }
+
+        int[] toArray() {
+            flush();
+            return sorted;
+        }
+
+        private void flush() {
+            Arrays.sort(pending, 0, pendingSize);
+            int[] merged = new int[sorted.length + pendingSize];
+            int i = 0, j = 0, size = 0;
+            while (i < sorted.length || j < pendingSize) {
+                int next;
+                if (j >= pendingSize || (i < sorted.length && sorted[i] <= pending[j])) {
+                    next = sorted[i++];
+                } else {
+                    next = pending[j++];
+                }
+                if (size == 0 || merged[size - 1] != next) {
+                    merged[size++] = next;
+                }
+            }
+            sorted = Arrays.copyOf(merged, size);
+            pendingSize = 0;
+        }
+    }
+
+    /**
+     * Loads a snapshot, verifying its checksum
+     *
+     * @param filename	a file written by save
+     * @return 			the saved graph
+     */
+    public static CSRGraph load(String filename) throws IOException {
+        return load(filename, true);
+    }
+
+    /**
+     * Loads a snapshot by mapping the file and bulk-copying each array,
+     * which takes O(n + m) time either way. Skipping verification avoids
+     * a second pass over the payload for callers that trust the file
+     * (e.g. one they wrote themselves).
+     *
+     * @param filename	a file written by save
+     * @param verify	whether to check the payload against the stored CRC32
+     * @return 			the saved graph
+     */
+    public static CSRGraph load(String filename, boolean verify) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            Header header = readHeader(channel, filename);
+            if (header.edgeCount > Integer.MAX_VALUE - 8) {
+                throw new IOException(filename + " has too many edges for a CSRGraph");
+            }
+            if (verify) {
+                verifyChecksum(channel, header, filename);
+            }
+            int n = header.vertexCount;
+            int m = (int) header.edgeCount;
+            int[] vertexIds = readInts(channel, header.vertexIdsAt(), n);
+            int[] offsets = readInts(channel, header.offsetsAt(), n + 1);
+            int[] neighbors = readInts(channel, header.neighborsAt(), m);
+            if (header.isSymmetric()) {
+                return new CSRGraph(vertexIds, offsets, neighbors, offsets, neighbors);
+            }
+            int[] inOffsets = readInts(channel, header.inOffsetsAt(), n + 1);
+            int[] inNeighbors = readInts(channel, header.inNeighborsAt(), m);
+            return new CSRGraph(vertexIds, offsets, neighbors, inOffsets, inNeighbors);
+        } finally {
+            file.close();
+        }
+    }
+
+    /* reads and validates the fixed-size header */
+    static Header readHeader(FileChannel channel, String filename) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, buf.position()) < 0) {
+                throw new IOException(filename + " is too short to be a graph snapshot");
+            }
+        }
+        buf.flip();
+        if (buf.getInt() != MAGIC) {
+            throw new IOException(filename + " is not a graph snapshot");
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new IOException(filename + " has unsupported snapshot version " + version);
+        }
+        Header header = new Header(buf.getInt(), buf.getInt(), buf.getLong(), buf.getLong());
+        if (channel.size() != header.fileSize()) {
+            throw new IOException(filename + " is truncated or has trailing data");
+        }
+        return header;
+    }
+
+    private static void writeHeader(FileChannel channel, int flags, int vertexCount, long edgeCount,
+                                    long checksum) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(vertexCount);
+        header.putLong(edgeCount).putLong(checksum);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /* recomputes the payload CRC32 over the mapped file */
+    static void verifyChecksum(FileChannel channel, Header header, String filename) throws IOException {
+        if (payloadChecksum(channel) != header.checksum) {
+            throw new IOException(filename + " failed its checksum");
+        }
+    }
+
+    private static long payloadChecksum(FileChannel channel) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = channel.size();
+        for (long pos = HEADER_BYTES; pos < size; ) {
+            long length = Math.min(4 * MAX_SEGMENT_INTS, size - pos);
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, length));
+            pos += length;
+        }
+        return crc.getValue();
+    }
+
+    /* maps count ints starting at byte position pos and copies them out */
+    private static int[] readInts(FileChannel channel, long pos, int count) throws IOException {
+        int[] values = new int[count];
+        for (int done = 0; done < count; ) {
+            int length = (int) Math.min(MAX_SEGMENT_INTS, count - done);
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos + 4L * done, 4L * length);
+            buf.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values, done, length);
+            done += length;
+        }
+        return values;
+    }
+
+    /* writes values at the channel's position through the block buffer */
+    private static void writeInts(FileChannel channel, ByteBuffer block, CRC32 crc, int[] values)
+            throws IOException {
+        block.clear();
+        IntBuffer ints = block.asIntBuffer();
+        for (int done = 0; done < values.length; ) {
+            int length = Math.min(BLOCK_INTS, values.length - done);
+            ints.clear();
+            ints.put(values, done, length);
+            block.clear().limit(4 * length);
+            crc.update(block);
+            block.rewind();
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+            done += length;
+        }
+    }
+}
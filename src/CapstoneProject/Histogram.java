@@ -0,0 +1,136 @@
+package CapstoneProject;
+
+/**
+ * Immutable log-linear histogram of non-negative long values, in the
+ * style of HdrHistogram: values below 16 get a bucket each, and every
+ * power of two above that is split into 16 equal buckets. Any value up
+ * to Long.MAX_VALUE is therefore stored within 1/16 (6.25%) of its true
+ * size, in a fixed 960 buckets.
+ *
+ * QueryMetrics fills the bucket counts; this class only reads them.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /* 16 linear buckets, then 16 for each power of two from 2^4 to 2^62 */
+    static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+
+    /**
+     * @param counts	the number of values in each bucket; not copied
+     * @param sum		the exact sum of the recorded values
+     */
+    Histogram(long[] counts, long sum) {
+        this.counts = counts;
+        this.sum = sum;
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        count = total;
+    }
+
+    /* the bucket a value falls into; negative values count as 0 */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return value <= 0 ? 0 : (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> magnitude) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (magnitude << SUB_BUCKET_BITS) + sub;
+    }
+
+    /* the smallest value that falls into bucket */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = (bucket - SUB_BUCKETS) >>> SUB_BUCKET_BITS;
+        long sub = (bucket - SUB_BUCKETS) & (SUB_BUCKETS - 1);
+        return (SUB_BUCKETS + sub) << magnitude;
+    }
+
+    /* the largest value that falls into bucket */
+    static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long sum() {
+        return sum;
+    }
+
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /* the smallest recorded value, to within a bucket */
+    public long min() {
+        for (int b = 0; b < BUCKETS; b++) {
+            if (counts[b] != 0) {
+                return lowerBound(b);
+            }
+        }
+        return 0;
+    }
+
+    /* the largest recorded value, to within a bucket */
+    public long max() {
+        for (int b = BUCKETS - 1; b >= 0; b--) {
+            if (counts[b] != 0) {
+                return upperBound(b);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param percentile	between 0 and 100
+     * @return 				a value that at least that percentage of the
+     * 						recorded values are less than or equal to
+     */
+    public long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, percentile) / 100));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return upperBound(b);
+            }
+        }
+        return max();
+    }
+
+    /* the number of values recorded in bucket, as laid out by bucketOf */
+    public long countAt(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * @return 		the values recorded here but not in earlier, for a
+     * 				histogram that only ever grows from earlier
+     */
+    public Histogram minus(Histogram earlier) {
+        long[] difference = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            difference[b] = counts[b] - earlier.counts[b];
+        }
+        return new Histogram(difference, sum - earlier.sum);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1f p50=%d p99=%d max=%d",
+                count, mean(), percentile(50), percentile(99), max());
+    }
+}
@@ -0,0 +1,164 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Exact hop distribution of a graph: for every vertex and every degree of
+ * separation d, the number of users exactly d hops away - the statistic
+ * CapstoneTester prints as "average connections at n degrees".
+ *
+ * Instead of one BFS per vertex and per degree, sources are processed 64
+ * at a time with a multi-source bit-parallel BFS: bit i of a vertex's
+ * 64-bit word says whether source i has reached it, so one pass over an
+ * edge advances all 64 searches. Batches of 64 sources run in parallel,
+ * each worker reusing its own frontier and visited words.
+ */
+public class HopDistribution implements NeighborhoodFunction {
+
+    private final int vertexCount;
+    /* counts[d][v] = number of users exactly d hops from dense vertex v */
+    private final int[][] counts;
+
+    private HopDistribution(int vertexCount, int maxDegree) {
+        this.vertexCount = vertexCount;
+        counts = new int[maxDegree + 1][];
+    }
+
+    /**
+     * Computes the full distribution, out to the largest distance in the graph
+     *
+     * @param g		the graph to measure
+     * @param pool	the pool that runs the source batches
+     */
+    public static HopDistribution compute(CompactGraph g, ForkJoinPool pool) {
+        return compute(g, Math.max(0, g.vertexCount() - 1), pool);
+    }
+
+    /**
+     * Computes the distribution up to a given degree of separation
+     *
+     * @param g			the graph to measure
+     * @param maxDegree	the largest degree of separation to count
+     * @param pool		the pool that runs the source batches
+     */
+    public static HopDistribution compute(final CompactGraph g, final int maxDegree, ForkJoinPool pool) {
+        final int n = g.vertexCount();
+        final HopDistribution result = new HopDistribution(n, maxDegree);
+        final ThreadLocal<long[][]> words = ThreadLocal.withInitial(() -> new long[3][n]);
+        final ThreadLocal<int[]> buffers = ThreadLocal.withInitial(() -> new int[g.maxDegree()]);
+        int batches = (n + 63) >>> 6;
+        Parallel.forRange(pool, batches, 1, (from, to) -> {
+            for (int batch = from; batch < to; batch++) {
+                result.runBatch(g, batch << 6, maxDegree, words.get(), buffers.get());
+            }
+        });
+        return result;
+    }
+
+    /*
+     * Multi-source BFS from dense vertices [first, first + 64). Each level
+     * ORs every frontier word into the neighbors' next words, then keeps
+     * only the bits a vertex has not seen before.
+     */
+    private void runBatch(CompactGraph g, int first, int maxDegree, long[][] words, int[] buf) {
+        int n = vertexCount;
+        long[] visited = words[0];
+        long[] frontier = words[1];
+        long[] next = words[2];
+        Arrays.fill(visited, 0);
+        Arrays.fill(frontier, 0);
+        Arrays.fill(next, 0);
+        int sources = Math.min(64, n - first);
+        for (int s = 0; s < sources; s++) {
+            visited[first + s] = 1L << s;
+            frontier[first + s] = 1L << s;
+        }
+
+        for (int degree = 1; degree <= maxDegree; degree++) {
+            for (int v = 0; v < n; v++) {
+                long bits = frontier[v];
+                if (bits == 0) {
+                    continue;
+                }
+                int count = g.copyNeighbors(v, buf);
+                for (int i = 0; i < count; i++) {
+                    next[buf[i]] |= bits;
+                }
+            }
+            boolean advanced = false;
+            int[] level = null;
+            for (int w = 0; w < n; w++) {
+                long fresh = next[w] & ~visited[w];
+                next[w] = 0;
+                frontier[w] = fresh;
+                if (fresh == 0) {
+                    continue;
+                }
+                visited[w] |= fresh;
+                if (level == null) {
+                    level = levelCounts(degree);
+                }
+                advanced = true;
+                while (fresh != 0) {
+                    level[first + Long.numberOfTrailingZeros(fresh)]++;
+                    fresh &= fresh - 1;
+                }
+            }
+            if (!advanced) {
+                return;
+            }
+        }
+    }
+
+    /* the per-source counts for a degree, created when first reached */
+    private synchronized int[] levelCounts(int degree) {
+        if (counts[degree] == null) {
+            counts[degree] = new int[vertexCount];
+        }
+        return counts[degree];
+    }
+
+    /**
+     * @return 		the largest degree of separation at which anyone was found
+     */
+    public int maxSeparation() {
+        for (int d = counts.length - 1; d > 0; d--) {
+            if (counts[d] != null) {
+                return d;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param degree	a degree of separation, 1 or more
+     * @return 			per-source counts indexed by dense vertex index
+     * 					(all zero beyond the largest distance)
+     */
+    public int[] countsAt(int degree) {
+        if (degree < 1 || degree >= counts.length || counts[degree] == null) {
+            return new int[vertexCount];
+        }
+        return counts[degree];
+    }
+
+    /**
+     * @return 		the number of (source, user) pairs exactly degree hops apart
+     */
+    public long totalAt(int degree) {
+        long total = 0;
+        for (int c : countsAt(degree)) {
+            total += c;
+        }
+        return total;
+    }
+
+    /**
+     * @return 		the average number of connections at the given
+     * 				degree of separation, over every vertex
+     */
+    public double averageAt(int degree) {
+        return vertexCount == 0 ? 0 : (double) totalAt(degree) / vertexCount;
+    }
+}
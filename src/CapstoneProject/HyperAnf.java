@@ -0,0 +1,299 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Approximate neighborhood function in the style of ANF/HyperANF, for
+ * graphs too large for even a bit-parallel exact BFS.
+ *
+ * Every vertex keeps a HyperLogLog counter of the users it can reach.
+ * Round t sets each counter to the union of its own counter and its
+ * out-neighbors' counters from round t-1, so after t rounds it estimates
+ * the ball |N_{<=t}(v)|, and the users exactly t hops away are the
+ * difference between consecutive balls. A round only needs the previous
+ * round's registers, so memory is two register arrays of n * 2^precision
+ * bytes however many degrees are measured.
+ *
+ * A HyperLogLog with m = 2^precision registers has a relative standard
+ * error of about 1.04 / sqrt(m). The bounds reported here widen every
+ * estimate by two standard errors (roughly 95%) and assume the worst
+ * case of fully correlated errors when summing over vertices.
+ */
+public class HyperAnf implements NeighborhoodFunction {
+
+    public static final int DEFAULT_PRECISION = 6;
+    /* largest byte[] holding one block of registers */
+    private static final int BLOCK_BYTES = 1 << 30;
+
+    private final int vertexCount;
+    private final int precision;
+    /* ballTotals[t] = estimated sum over v of |N_{<=t}(v)| */
+    private final double[] ballTotals;
+    /* perVertex[d][v] = estimated |N_d(v)|, kept only when requested */
+    private final float[][] perVertex;
+
+    private HyperAnf(int vertexCount, int precision, double[] ballTotals, float[][] perVertex) {
+        this.vertexCount = vertexCount;
+        this.precision = precision;
+        this.ballTotals = ballTotals;
+        this.perVertex = perVertex;
+    }
+
+    /**
+     * Estimates the neighborhood function with default precision out to
+     * the largest distance in the graph, keeping only graph-wide totals
+     */
+    public static HyperAnf compute(CompactGraph g, ForkJoinPool pool) {
+        return compute(g, DEFAULT_PRECISION, Math.max(0, g.vertexCount() - 1), false, pool);
+    }
+
+    /**
+     * Estimates the neighborhood function
+     *
+     * @param g				the graph to measure
+     * @param precision		log2 of the registers per counter, 4 to 16
+     * @param maxDegree		the largest degree of separation to estimate
+     * @param keepPerVertex	also keep every vertex's estimate at every degree
+     * @param pool			the pool that runs each round
+     */
+    public static HyperAnf compute(final CompactGraph g, final int precision, int maxDegree,
+                                   boolean keepPerVertex, ForkJoinPool pool) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("precision must be between 4 and 16: " + precision);
+        }
+        if (maxDegree < 0) {
+            throw new IllegalArgumentException("maxDegree must not be negative: " + maxDegree);
+        }
+        final int n = g.vertexCount();
+        final int m = 1 << precision;
+        final Registers[] regs = { new Registers(n, m), new Registers(n, m) };
+        final double[] estimates = new double[n];
+        final boolean[][] changed = { new boolean[n], new boolean[n] };
+        final ThreadLocal<int[]> buffers = ThreadLocal.withInitial(() -> new int[g.maxDegree()]);
+
+        //round 0: every counter holds just its own vertex
+        final DoubleAdder ball = new DoubleAdder();
+        Parallel.forRange(pool, n, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                regs[0].add(v, hash(v), precision);
+                estimates[v] = regs[0].estimate(v);
+                changed[0][v] = true;
+                ball.add(estimates[v]);
+            }
+        });
+        double[] totals = new double[maxDegree + 1];
+        totals[0] = ball.sum();
+        float[][] perVertex = keepPerVertex ? new float[maxDegree + 1][] : null;
+
+        int rounds = 0;
+        for (int t = 1; t <= maxDegree; t++) {
+            final Registers curr = regs[(t - 1) & 1];
+            final Registers next = regs[t & 1];
+            final boolean[] wasChanged = changed[(t - 1) & 1];
+            final boolean[] nowChanged = changed[t & 1];
+            final float[] level = keepPerVertex ? new float[n] : null;
+            final AtomicBoolean anyChanged = new AtomicBoolean();
+            final DoubleAdder total = new DoubleAdder();
+            Parallel.forRange(pool, n, (from, to) -> {
+                int[] buf = buffers.get();
+                boolean rangeChanged = false;
+                double rangeTotal = 0;
+                for (int v = from; v < to; v++) {
+                    next.copyFrom(curr, v);
+                    boolean grew = false;
+                    int degree = g.copyNeighbors(v, buf);
+                    for (int i = 0; i < degree; i++) {
+                        //a neighbor that did not change last round has nothing new to give
+                        if (wasChanged[buf[i]]) {
+                            grew |= next.union(v, curr, buf[i]);
+                        }
+                    }
+                    nowChanged[v] = grew;
+                    double before = estimates[v];
+                    if (grew) {
+                        estimates[v] = next.estimate(v);
+                        rangeChanged = true;
+                    }
+                    if (level != null) {
+                        level[v] = (float) Math.max(0, estimates[v] - before);
+                    }
+                    rangeTotal += estimates[v];
+                }
+                total.add(rangeTotal);
+                if (rangeChanged) {
+                    anyChanged.set(true);
+                }
+            });
+            if (!anyChanged.get()) {
+                break;
+            }
+            totals[t] = total.sum();
+            if (perVertex != null) {
+                perVertex[t] = level;
+            }
+            rounds = t;
+        }
+        return new HyperAnf(n, precision, Arrays.copyOf(totals, rounds + 1),
+                perVertex == null ? null : Arrays.copyOf(perVertex, rounds + 1));
+    }
+
+    /* 64-bit finalizer from MurmurHash3, spreading dense indices over all bits */
+    private static long hash(long v) {
+        long h = v + 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /*
+     * m one-byte registers per vertex, stored in blocks of at most 1GB so
+     * n * m may exceed the size of a single array
+     */
+    private static class Registers {
+        private final int m;
+        private final int shift;
+        private final int mask;
+        private final byte[][] blocks;
+
+        Registers(int n, int m) {
+            this.m = m;
+            int perBlock = Integer.highestOneBit(Math.max(1, BLOCK_BYTES / m));
+            shift = Integer.numberOfTrailingZeros(perBlock);
+            mask = perBlock - 1;
+            int count = (int) (((long) n + perBlock - 1) >>> shift);
+            blocks = new byte[count][];
+            for (int b = 0; b < count; b++) {
+                int vertices = (int) Math.min(perBlock, (long) n - ((long) b << shift));
+                blocks[b] = new byte[vertices * m];
+            }
+        }
+
+        void add(int v, long hash, int precision) {
+            int register = (int) (hash >>> (64 - precision));
+            //the sentinel bit caps the rank at 64 - precision + 1
+            int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+            byte[] block = blocks[v >>> shift];
+            int at = (v & mask) * m + register;
+            if (block[at] < rank) {
+                block[at] = (byte) rank;
+            }
+        }
+
+        void copyFrom(Registers other, int v) {
+            System.arraycopy(other.blocks[v >>> shift], (v & mask) * m, blocks[v >>> shift], (v & mask) * m, m);
+        }
+
+        /* max-merges w's registers in other into v's; true if any grew */
+        boolean union(int v, Registers other, int w) {
+            byte[] block = blocks[v >>> shift];
+            byte[] source = other.blocks[w >>> shift];
+            int at = (v & mask) * m;
+            int from = (w & mask) * m;
+            boolean grew = false;
+            for (int j = 0; j < m; j++) {
+                if (source[from + j] > block[at + j]) {
+                    block[at + j] = source[from + j];
+                    grew = true;
+                }
+            }
+            return grew;
+        }
+
+        /* HyperLogLog estimate with the linear-counting correction for small sets */
+        double estimate(int v) {
+            byte[] block = blocks[v >>> shift];
+            int at = (v & mask) * m;
+            double sum = 0;
+            int zeros = 0;
+            for (int j = 0; j < m; j++) {
+                sum += Math.scalb(1.0, -block[at + j]);
+                if (block[at + j] == 0) {
+                    zeros++;
+                }
+            }
+            double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+            double estimate = alpha * m * m / sum;
+            if (estimate <= 2.5 * m && zeros > 0) {
+                estimate = m * Math.log((double) m / zeros);
+            }
+            return estimate;
+        }
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * @return 		the relative standard error of each counter, 1.04 / sqrt(2^precision)
+     */
+    public double relativeStandardError() {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    public int maxSeparation() {
+        return ballTotals.length - 1;
+    }
+
+    /**
+     * @return 		the estimated number of (source, user) pairs exactly degree hops apart
+     */
+    public double totalAt(int degree) {
+        if (degree < 1 || degree >= ballTotals.length) {
+            return 0;
+        }
+        return Math.max(0, ballTotals[degree] - ballTotals[degree - 1]);
+    }
+
+    public double averageAt(int degree) {
+        return vertexCount == 0 ? 0 : totalAt(degree) / vertexCount;
+    }
+
+    /**
+     * @return 		a (roughly 95%) lower bound on averageAt(degree)
+     */
+    public double lowerBoundAt(int degree) {
+        if (degree < 1 || degree >= ballTotals.length || vertexCount == 0) {
+            return 0;
+        }
+        double err = 2 * relativeStandardError();
+        return Math.max(0, ballTotals[degree] * (1 - err) - ballTotals[degree - 1] * (1 + err)) / vertexCount;
+    }
+
+    /**
+     * Past maxSeparation() the counters stopped growing, but users reached
+     * that late can leave every register unchanged, so the bound there is
+     * the error band of the final ball rather than 0.
+     *
+     * @return 		a (roughly 95%) upper bound on averageAt(degree)
+     */
+    public double upperBoundAt(int degree) {
+        if (degree < 1 || vertexCount == 0) {
+            return 0;
+        }
+        double err = 2 * relativeStandardError();
+        return Math.max(0, ballAt(degree) * (1 + err) - ballAt(degree - 1) * (1 - err)) / vertexCount;
+    }
+
+    /* the estimated ball total after t rounds, constant once the rounds stopped */
+    private double ballAt(int t) {
+        return ballTotals[Math.min(t, ballTotals.length - 1)];
+    }
+
+    /**
+     * @return 		estimated |N_degree(v)| for every dense vertex v, or null
+     * 				if per-vertex estimates were not kept
+     */
+    public float[] countsAt(int degree) {
+        if (perVertex == null) {
+            return null;
+        }
+        if (degree < 1 || degree >= perVertex.length) {
+            return new float[vertexCount];
+        }
+        return perVertex[degree];
+    }
+}
@@ -0,0 +1,165 @@
+package CapstoneProject;
+
+/**
+ * Intersection of sorted, duplicate-free int ranges, the core of every
+ * mutual-friend query over a compact graph.
+ *
+ * The strategy is picked from the size ratio of the two ranges:
+ * lists of similar size are merged linearly, a short list against a
+ * long one gallops (exponential then binary search) through the long
+ * one, and a very short list binary-searches each of its values in
+ * the remaining part of the long one. None of them allocate.
+ */
+public class Intersections {
+
+    /* larger/smaller size ratio at which galloping beats a linear merge */
+    static final int GALLOP_RATIO = 8;
+    /* ratio at which independent binary searches beat galloping */
+    static final int BINARY_RATIO = 256;
+
+    /**
+     * Counts the values shared by a[aFrom, aTo) and b[bFrom, bTo)
+     */
+    public static int count(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+        return intersect(a, aFrom, aTo, b, bFrom, bTo, null, 0);
+    }
+
+    /**
+     * Writes the values shared by a[aFrom, aTo) and b[bFrom, bTo) into
+     * out, in ascending order, starting at outPos. If out is null the
+     * values are only counted.
+     *
+     * @return 		the number of shared values
+     */
+    public static int intersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo,
+                                int[] out, int outPos) {
+        int aSize = aTo - aFrom;
+        int bSize = bTo - bFrom;
+        if (aSize == 0 || bSize == 0) {
+            return 0;
+        }
+        //always walk the shorter range
+        if (aSize > bSize) {
+            return intersect(b, bFrom, bTo, a, aFrom, aTo, out, outPos);
+        }
+        if (bSize / aSize >= BINARY_RATIO) {
+            return binarySearchIntersect(a, aFrom, aTo, b, bFrom, bTo, out, outPos);
+        }
+        if (bSize / aSize >= GALLOP_RATIO) {
+            return gallopIntersect(a, aFrom, aTo, b, bFrom, bTo, out, outPos);
+        }
+        return mergeIntersect(a, aFrom, aTo, b, bFrom, bTo, out, outPos);
+    }
+
+    static int mergeIntersect(int[] a, int i, int aTo, int[] b, int j, int bTo, int[] out, int outPos) {
+        int count = 0;
+        while (i < aTo && j < bTo) {
+            int x = a[i];
+            int y = b[j];
+            if (x < y) {
+                i++;
+            } else if (x > y) {
+                j++;
+            } else {
+                if (out != null) {
+                    out[outPos + count] = x;
+                }
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    static int gallopIntersect(int[] a, int aFrom, int aTo, int[] b, int j, int bTo, int[] out, int outPos) {
+        int count = 0;
+        for (int i = aFrom; i < aTo && j < bTo; i++) {
+            int x = a[i];
+            //gallop to a window b[j + step/2, j + step] that must hold x if present
+            int step = 1;
+            while (j + step < bTo && b[j + step] < x) {
+                step <<= 1;
+            }
+            j = lowerBound(b, j + (step >>> 1), Math.min(bTo, j + step + 1), x);
+            if (j < bTo && b[j] == x) {
+                if (out != null) {
+                    out[outPos + count] = x;
+                }
+                count++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    static int binarySearchIntersect(int[] a, int aFrom, int aTo, int[] b, int j, int bTo,
+                                     int[] out, int outPos) {
+        int count = 0;
+        for (int i = aFrom; i < aTo && j < bTo; i++) {
+            int x = a[i];
+            j = lowerBound(b, j, bTo, x);
+            if (j < bTo && b[j] == x) {
+                if (out != null) {
+                    out[outPos + count] = x;
+                }
+                count++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /* first index in [from, to) whose value is >= key, or to if none */
+    static int lowerBound(int[] values, int from, int to, int key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Intersects a sorted range with a bitset: each value of a[aFrom, aTo)
+     * whose bit is set in bits is counted (and written to out if non-null)
+     */
+    public static int intersectBits(int[] a, int aFrom, int aTo, long[] bits, int[] out, int outPos) {
+        int count = 0;
+        for (int i = aFrom; i < aTo; i++) {
+            int x = a[i];
+            if ((bits[x >>> 6] & (1L << x)) != 0) {
+                if (out != null) {
+                    out[outPos + count] = x;
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Intersects two bitsets word by word; set bits are counted
+     * (and written to out in ascending order if non-null)
+     */
+    public static int intersectBits(long[] a, long[] b, int[] out, int outPos) {
+        int count = 0;
+        for (int w = 0; w < a.length; w++) {
+            long word = a[w] & b[w];
+            if (out == null) {
+                count += Long.bitCount(word);
+                continue;
+            }
+            while (word != 0) {
+                out[outPos + count++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return count;
+    }
+}
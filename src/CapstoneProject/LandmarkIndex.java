@@ -0,0 +1,502 @@
+package CapstoneProject;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+/**
+ * Landmark distance oracle for degree-of-separation queries.
+ *
+ * k landmarks are picked up front, and a BFS from each one stores its
+ * distance to every user (and, for a directed graph, every user's distance
+ * to it) in one byte per user. By the triangle inequality, for any
+ * landmark L
+ *
+ *   d(u, L) + d(L, v)     is an upper bound on d(u, v)
+ *   d(L, v) - d(L, u)     is a lower bound, as is d(u, L) - d(v, L)
+ *
+ * so each query reads 2k bytes to bound the answer. When the bounds meet
+ * the answer is exact; otherwise getDegreeOfSeparation falls back to a
+ * bidirectional BFS that stops as soon as it cannot beat the upper bound
+ * and skips every user whose lower bound already rules it out. The bytes
+ * also prove some pairs unreachable: if L reaches u but not v, u cannot
+ * reach v either.
+ *
+ * Distances of FAR (254) or more are stored as FAR, which still works as a
+ * lower bound; UNREACHED (255) means the landmark never got there.
+ */
+public class LandmarkIndex {
+
+    /* returned by lowerBound and upperBound when there is no finite bound */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    static final int MAGIC = 0x444F534C;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int FLAG_SYMMETRIC = 1;
+
+    private static final int FAR = 254;
+    private static final int UNREACHED = 255;
+
+    private final CompactGraph graph;
+    /* dense indices of the landmarks */
+    private final int[] landmarks;
+    /* fromLandmark[i][v] = d(landmarks[i], v) */
+    private final byte[][] fromLandmark;
+    /* toLandmark[i][v] = d(v, landmarks[i]); the same arrays when the graph is symmetric */
+    private final byte[][] toLandmark;
+    private final ThreadLocal<Workspace> workspaces;
+
+    /**
+     * Scratch state for one thread's fallback searches, reused across
+     * queries with the same epoch stamps as TraversalContext. A search
+     * owns three stamp values: reached forward, reached backward, and
+     * pruned by the bounds. One pruned value serves both directions: a
+     * pruned user lies on no path shorter than the upper bound, so
+     * neither side needs to reach it.
+     */
+    private static class Workspace {
+        final int[] stamp;
+        final int[] fwdQueue;
+        final int[] bwdQueue;
+        final int[] buf;
+        int epoch;
+
+        Workspace(int n, int maxDegree) {
+            stamp = new int[n];
+            fwdQueue = new int[n];
+            bwdQueue = new int[n];
+            buf = new int[maxDegree];
+        }
+
+        int begin() {
+            if (epoch >= Integer.MAX_VALUE - 3) {
+                Arrays.fill(stamp, 0);
+                epoch = 0;
+            }
+            epoch += 3;
+            return epoch;
+        }
+    }
+
+    private LandmarkIndex(final CompactGraph graph, int[] landmarks, byte[][] fromLandmark, byte[][] toLandmark) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+        workspaces = ThreadLocal.withInitial(() -> new Workspace(graph.vertexCount(), graph.maxDegree()));
+    }
+
+    /**
+     * Picks k landmarks and runs their BFS in parallel
+     *
+     * @param g		the graph to index
+     * @param k		the number of landmarks; more gives tighter bounds
+     * 				at 1 (or 2, if directed) bytes per user each
+     * @param pool	the pool that runs the landmark searches
+     */
+    public static LandmarkIndex build(final CompactGraph g, int k, ForkJoinPool pool) {
+        final int[] landmarks = selectLandmarks(g, k);
+        final int count = landmarks.length;
+        final boolean symmetric = g.isSymmetric();
+        final byte[][] from = new byte[count][];
+        final byte[][] to = symmetric ? from : new byte[count][];
+        final ThreadLocal<int[]> queues = ThreadLocal.withInitial(() -> new int[g.vertexCount()]);
+        final ThreadLocal<int[]> buffers = ThreadLocal.withInitial(() -> new int[g.maxDegree()]);
+        //one job per landmark and direction
+        Parallel.forRange(pool, symmetric ? count : 2 * count, 1, (lo, hi) -> {
+            for (int job = lo; job < hi; job++) {
+                boolean forward = job < count;
+                byte[] dist = distances(g, landmarks[job % count], forward, queues.get(), buffers.get());
+                if (forward) {
+                    from[job] = dist;
+                } else {
+                    to[job - count] = dist;
+                }
+            }
+        });
+        return new LandmarkIndex(g, landmarks, from, to);
+    }
+
+    /*
+     * Highest degree first, skipping users next to a landmark already
+     * chosen so the landmarks spread over the graph. If that leaves fewer
+     * than k, the best remaining users by degree fill the gap.
+     */
+    static int[] selectLandmarks(CompactGraph g, int k) {
+        int n = g.vertexCount();
+        k = Math.min(k, n);
+        //sort by descending degree, then ascending index, packed into longs
+        long[] order = new long[n];
+        for (int v = 0; v < n; v++) {
+            long degree = (long) g.degree(v) + g.inDegree(v);
+            order[v] = (-degree << 32) | v;
+        }
+        Arrays.sort(order);
+        int[] chosen = new int[k];
+        int size = 0;
+        boolean[] covered = new boolean[n];
+        int[] buf = new int[g.maxDegree()];
+        for (int i = 0; i < n && size < k; i++) {
+            int v = (int) order[i];
+            if (!covered[v]) {
+                chosen[size++] = v;
+                covered[v] = true;
+                int degree = g.copyNeighbors(v, buf);
+                for (int j = 0; j < degree; j++) {
+                    covered[buf[j]] = true;
+                }
+            }
+        }
+        boolean[] isLandmark = new boolean[n];
+        for (int i = 0; i < size; i++) {
+            isLandmark[chosen[i]] = true;
+        }
+        for (int i = 0; i < n && size < k; i++) {
+            int v = (int) order[i];
+            if (!isLandmark[v]) {
+                chosen[size++] = v;
+                isLandmark[v] = true;
+            }
+        }
+        return chosen;
+    }
+
+    /* BFS from (or, following in-edges, towards) a landmark, one byte per user */
+    private static byte[] distances(CompactGraph g, int landmark, boolean forward, int[] queue, int[] buf) {
+        byte[] dist = new byte[g.vertexCount()];
+        Arrays.fill(dist, (byte) UNREACHED);
+        dist[landmark] = 0;
+        queue[0] = landmark;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int v = queue[head++];
+            int next = Math.min(FAR, (dist[v] & 0xFF) + 1);
+            int degree = forward ? g.copyNeighbors(v, buf) : g.copyInNeighbors(v, buf);
+            for (int i = 0; i < degree; i++) {
+                int w = buf[i];
+                if ((dist[w] & 0xFF) == UNREACHED) {
+                    dist[w] = (byte) next;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Writes the index to a file, so it can be reloaded against the same graph
+     *
+     * Layout (little-endian):
+     *   header   magic "DOSL", version, flags, vertex count n, landmark
+     *            count k, CRC32 of the payload, edge count m (long)
+     *   payload  landmark IDs int[k], k distance rows from the landmarks
+     *            of n bytes each, and, unless the SYMMETRIC flag is set,
+     *            k rows of distances to the landmarks
+     *
+     * @param filename	the file to create or overwrite
+     */
+    public void save(String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
+        try {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            channel.position(HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            ByteBuffer ids = ByteBuffer.allocate(4 * landmarks.length).order(ByteOrder.LITTLE_ENDIAN);
+            for (int landmark : landmarks) {
+                ids.putInt(graph.idOf(landmark));
+            }
+            writeBytes(channel, crc, ids.array());
+            for (byte[] row : fromLandmark) {
+                writeBytes(channel, crc, row);
+            }
+            boolean symmetric = toLandmark == fromLandmark;
+            if (!symmetric) {
+                for (byte[] row : toLandmark) {
+                    writeBytes(channel, crc, row);
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(symmetric ? FLAG_SYMMETRIC : 0);
+            header.putInt(graph.vertexCount()).putInt(landmarks.length).putInt((int) crc.getValue());
+            header.putLong(graph.edgeCount());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads an index written by save
+     *
+     * @param g			the graph the index was built for
+     * @param filename	the file to read
+     * @throws IOException	if the file is damaged or was built for a different graph
+     */
+    public static LandmarkIndex load(CompactGraph g, String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = readBytes(channel, 0, HEADER_BYTES, filename);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(filename + " is not a landmark index");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(filename + " has unsupported landmark index version " + version);
+            }
+            boolean symmetric = (header.getInt() & FLAG_SYMMETRIC) != 0;
+            int n = header.getInt();
+            int k = header.getInt();
+            int checksum = header.getInt();
+            long m = header.getLong();
+            if (n != g.vertexCount() || m != g.edgeCount() || symmetric != g.isSymmetric()) {
+                throw new IOException(filename + " was built for a different graph");
+            }
+            long size = HEADER_BYTES + 4L * k + (symmetric ? 1L : 2L) * k * n;
+            if (channel.size() != size) {
+                throw new IOException(filename + " is truncated or has trailing data");
+            }
+
+            CRC32 crc = new CRC32();
+            ByteBuffer ids = readBytes(channel, HEADER_BYTES, 4 * k, filename);
+            crc.update(ids.array());
+            int[] landmarks = new int[k];
+            for (int i = 0; i < k; i++) {
+                landmarks[i] = g.indexOf(ids.getInt());
+                if (landmarks[i] < 0) {
+                    throw new IOException(filename + " was built for a different graph");
+                }
+            }
+            long pos = HEADER_BYTES + 4L * k;
+            byte[][] from = new byte[k][];
+            for (int i = 0; i < k; i++, pos += n) {
+                from[i] = readBytes(channel, pos, n, filename).array();
+                crc.update(from[i]);
+            }
+            byte[][] to = from;
+            if (!symmetric) {
+                to = new byte[k][];
+                for (int i = 0; i < k; i++, pos += n) {
+                    to[i] = readBytes(channel, pos, n, filename).array();
+                    crc.update(to[i]);
+                }
+            }
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException(filename + " failed its checksum");
+            }
+            return new LandmarkIndex(g, landmarks, from, to);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static void writeBytes(FileChannel channel, CRC32 crc, byte[] bytes) throws IOException {
+        crc.update(bytes);
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private static ByteBuffer readBytes(FileChannel channel, long pos, int count, String filename)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(count).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                throw new IOException(filename + " is truncated");
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * @return 		IDs of the landmarks, best first
+     */
+    public int[] landmarks() {
+        int[] ids = new int[landmarks.length];
+        for (int i = 0; i < landmarks.length; i++) {
+            ids[i] = graph.idOf(landmarks[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * The landmark estimate of the degree of separation: never below the
+     * true distance, and usually equal or one more on social graphs
+     *
+     * @param user1		an integer representing the starting person's ID
+     * @param user2		an integer representing the target person's ID
+     * @return 			an upper bound on the distance, or UNBOUNDED if no
+     * 					landmark lies on a path between them
+     */
+    public int upperBound(int user1, int user2) {
+        int u = graph.indexOf(user1);
+        int v = graph.indexOf(user2);
+        if (u < 0 || v < 0) {
+            return UNBOUNDED;
+        }
+        return u == v ? 0 : upper(u, v);
+    }
+
+    /**
+     * @param user1		an integer representing the starting person's ID
+     * @param user2		an integer representing the target person's ID
+     * @return 			a lower bound on the distance, or UNBOUNDED if the
+     * 					landmarks prove user2 unreachable from user1
+     */
+    public int lowerBound(int user1, int user2) {
+        int u = graph.indexOf(user1);
+        int v = graph.indexOf(user2);
+        if (u < 0 || v < 0) {
+            return UNBOUNDED;
+        }
+        return u == v ? 0 : lower(u, v);
+    }
+
+    /**
+     * Exact degree of separation: answered from the landmarks alone when
+     * the bounds meet, otherwise by a bidirectional BFS the bounds prune
+     *
+     * @param user1		an integer representing the starting person's ID
+     * @param user2		an integer representing the target person's ID
+     * @return 			the number of hops from user1 to user2, or
+     * 					CapstoneDoSGraph.UNREACHABLE if there is no path
+     */
+    public int getDegreeOfSeparation(int user1, int user2) {
+        int u = graph.indexOf(user1);
+        int v = graph.indexOf(user2);
+        if (u < 0 || v < 0) {
+            return CapstoneDoSGraph.UNREACHABLE;
+        }
+        if (u == v) {
+            return 0;
+        }
+        int lower = lower(u, v);
+        if (lower == UNBOUNDED) {
+            return CapstoneDoSGraph.UNREACHABLE;
+        }
+        int upper = upper(u, v);
+        if (lower == upper) {
+            return lower;
+        }
+        return search(u, v, upper, workspaces.get());
+    }
+
+    /* min over landmarks of d(u, L) + d(L, v), using only exact distances */
+    private int upper(int u, int v) {
+        int best = UNBOUNDED;
+        for (int i = 0; i < landmarks.length; i++) {
+            int toL = toLandmark[i][u] & 0xFF;
+            int fromL = fromLandmark[i][v] & 0xFF;
+            if (toL < FAR && fromL < FAR) {
+                best = Math.min(best, toL + fromL);
+            }
+        }
+        return best;
+    }
+
+    /*
+     * max over landmarks of d(L, v) - d(L, u) and d(u, L) - d(v, L).
+     * The subtracted distance must be exact; the other may be FAR, which
+     * understates it. UNBOUNDED if some landmark proves v unreachable.
+     */
+    private int lower(int u, int v) {
+        int best = 1;
+        for (int i = 0; i < landmarks.length; i++) {
+            int fromU = fromLandmark[i][u] & 0xFF;
+            int fromV = fromLandmark[i][v] & 0xFF;
+            if (fromU < FAR) {
+                if (fromV == UNREACHED) {
+                    return UNBOUNDED;
+                }
+                best = Math.max(best, fromV - fromU);
+            }
+            int toU = toLandmark[i][u] & 0xFF;
+            int toV = toLandmark[i][v] & 0xFF;
+            if (toV < FAR) {
+                if (toU == UNREACHED) {
+                    return UNBOUNDED;
+                }
+                best = Math.max(best, toU - toV);
+            }
+        }
+        return best;
+    }
+
+    /*
+     * Bidirectional BFS from u and towards v that expands the smaller side
+     * one level at a time. It gives up (answering upper) once the two
+     * depths show no shorter path can remain, and drops every user whose
+     * depth plus lower bound to the far end already reaches upper.
+     */
+    private int search(int u, int v, int upper, Workspace ws) {
+        int fwd = ws.begin();
+        int bwd = fwd + 1;
+        //a pruned user cannot be on a path shorter than upper, so meeting it proves nothing
+        int pruned = fwd + 2;
+        int[] stamp = ws.stamp;
+        stamp[u] = fwd;
+        stamp[v] = bwd;
+        ws.fwdQueue[0] = u;
+        ws.bwdQueue[0] = v;
+        int fwdHead = 0, fwdTail = 1, fwdDepth = 0;
+        int bwdHead = 0, bwdTail = 1, bwdDepth = 0;
+
+        while (fwdHead < fwdTail && bwdHead < bwdTail) {
+            if (fwdDepth + bwdDepth + 1 >= upper) {
+                return upper;
+            }
+            boolean forward = fwdTail - fwdHead <= bwdTail - bwdHead;
+            int[] queue = forward ? ws.fwdQueue : ws.bwdQueue;
+            int mark = forward ? fwd : bwd;
+            int otherMark = forward ? bwd : fwd;
+            int depth = (forward ? fwdDepth : bwdDepth) + 1;
+            int head = forward ? fwdHead : bwdHead;
+            int levelEnd = forward ? fwdTail : bwdTail;
+            int tail = levelEnd;
+            for (int q = head; q < levelEnd; q++) {
+                int curr = queue[q];
+                int degree = forward ? graph.copyNeighbors(curr, ws.buf) : graph.copyInNeighbors(curr, ws.buf);
+                for (int i = 0; i < degree; i++) {
+                    int w = ws.buf[i];
+                    if (stamp[w] == mark || stamp[w] == pruned) {
+                        continue;
+                    }
+                    if (stamp[w] == otherMark) {
+                        return fwdDepth + bwdDepth + 1;
+                    }
+                    int bound = forward ? lower(w, v) : lower(u, w);
+                    if (bound != UNBOUNDED && depth + bound < upper) {
+                        stamp[w] = mark;
+                        queue[tail++] = w;
+                    } else {
+                        stamp[w] = pruned;
+                    }
+                }
+            }
+            if (forward) {
+                fwdHead = levelEnd;
+                fwdTail = tail;
+                fwdDepth = depth;
+            } else {
+                bwdHead = levelEnd;
+                bwdTail = tail;
+                bwdDepth = depth;
+            }
+        }
+        return upper == UNBOUNDED ? CapstoneDoSGraph.UNREACHABLE : upper;
+    }
+}
@@ -0,0 +1,19 @@
+package CapstoneProject;
+
+/**
+ * Receives the levels of a breadth first search one at a time,
+ * as produced by streamLevels on CapstoneDoSGraph and CompactGraph.
+ */
+public interface LevelVisitor {
+
+    /**
+     * Called once for every completed level of the search
+     *
+     * @param degree	the degree of separation of this level, starting at 1
+     * @param users		IDs of the users at exactly this degree; only
+     * 					users[0..count) is valid, and only during the call
+     * @param count		the number of users at this degree
+     * @return 			true to continue with the next level, false to stop
+     */
+    public boolean visitLevel(int degree, int[] users, int count);
+}
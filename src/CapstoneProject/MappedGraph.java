@@ -0,0 +1,121 @@
+package CapstoneProject;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only graph whose adjacency stays off-heap in a memory-mapped
+ * GraphSnapshot file, so the edge count is limited by disk and address
+ * space rather than -Xmx, and the OS page cache decides which parts stay
+ * resident. What remains on the heap grows with the vertex count, not
+ * the edges: each querying thread's workspace holds five int arrays of
+ * one entry per vertex plus a neighbor-list buffer, and a mutual-friend
+ * engine built with an explicit hub degree adds an n-bit set per hub.
+ *
+ * Opening a snapshot only reads its header and maps the arrays, so it
+ * takes roughly constant time however large the graph is.
+ */
+public class MappedGraph extends CompactGraph {
+
+    private final int vertexCount;
+    private final long edgeCount;
+    private final boolean symmetric;
+    private final MappedIntArray vertexIds;
+    private final MappedIntArray offsets;
+    private final MappedIntArray neighbors;
+    private final MappedIntArray inOffsets;
+    private final MappedIntArray inNeighbors;
+
+    private MappedGraph(FileChannel channel, GraphSnapshot.Header header) throws IOException {
+        vertexCount = header.vertexCount;
+        edgeCount = header.edgeCount;
+        symmetric = header.isSymmetric();
+        vertexIds = new MappedIntArray(channel, header.vertexIdsAt(), vertexCount, false);
+        offsets = new MappedIntArray(channel, header.offsetsAt(), vertexCount + 1, false);
+        neighbors = new MappedIntArray(channel, header.neighborsAt(), edgeCount, false);
+        if (symmetric) {
+            inOffsets = offsets;
+            inNeighbors = neighbors;
+        } else {
+            inOffsets = new MappedIntArray(channel, header.inOffsetsAt(), vertexCount + 1, false);
+            inNeighbors = new MappedIntArray(channel, header.inNeighborsAt(), edgeCount, false);
+        }
+    }
+
+    /**
+     * Opens a snapshot without reading its payload
+     *
+     * @param filename	a file written by GraphSnapshot
+     * @return 			a graph backed by the mapped file
+     */
+    public static MappedGraph open(String filename) throws IOException {
+        return open(filename, false);
+    }
+
+    /**
+     * Opens a snapshot, optionally checking the payload checksum first
+     * (which reads the whole file once)
+     *
+     * @param filename	a file written by GraphSnapshot
+     * @param verify	whether to check the payload against the stored CRC32
+     * @return 			a graph backed by the mapped file
+     */
+    public static MappedGraph open(String filename, boolean verify) throws IOException {
+        //mappings remain valid after the channel that created them is closed
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            GraphSnapshot.Header header = GraphSnapshot.readHeader(channel, filename);
+            if (verify) {
+                GraphSnapshot.verifyChecksum(channel, header, filename);
+            }
+            return new MappedGraph(channel, header);
+        } finally {
+            file.close();
+        }
+    }
+
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    public long edgeCount() {
+        return edgeCount;
+    }
+
+    public int indexOf(int user) {
+        long v = vertexIds.binarySearch(user);
+        return v >= 0 ? (int) v : -1;
+    }
+
+    public int idOf(int v) {
+        return vertexIds.get(v);
+    }
+
+    public int degree(int v) {
+        return offsets.get(v + 1) - offsets.get(v);
+    }
+
+    public int inDegree(int v) {
+        return inOffsets.get(v + 1) - inOffsets.get(v);
+    }
+
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    public int copyNeighbors(int v, int[] dest) {
+        int start = offsets.get(v);
+        int degree = offsets.get(v + 1) - start;
+        neighbors.get(start, dest, 0, degree);
+        return degree;
+    }
+
+    public int copyInNeighbors(int v, int[] dest) {
+        int start = inOffsets.get(v);
+        int degree = inOffsets.get(v + 1) - start;
+        inNeighbors.get(start, dest, 0, degree);
+        return degree;
+    }
+}
@@ -0,0 +1,98 @@
+package CapstoneProject;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A little-endian int array that lives in a memory-mapped region of a
+ * file. A single mapping cannot exceed 2GB, so the array is mapped as a
+ * series of 1GB segments and indexed with a long.
+ */
+class MappedIntArray {
+
+    /* 2^28 ints = 1GB per mapping */
+    private static final int SEGMENT_SHIFT = 28;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final IntBuffer[] segments;
+    private final long length;
+
+    /**
+     * Maps length ints of the channel starting at byte position pos
+     *
+     * @param writable	map read-write instead of read-only
+     */
+    MappedIntArray(FileChannel channel, long pos, long length, boolean writable) throws IOException {
+        this.length = length;
+        int count = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        segments = new IntBuffer[count];
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        for (int s = 0; s < count; s++) {
+            long first = (long) s << SEGMENT_SHIFT;
+            long ints = Math.min(1L << SEGMENT_SHIFT, length - first);
+            segments[s] = channel.map(mode, pos + 4 * first, 4 * ints)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+    }
+
+    long length() {
+        return length;
+    }
+
+    int get(long i) {
+        return segments[(int) (i >>> SEGMENT_SHIFT)].get((int) (i & SEGMENT_MASK));
+    }
+
+    void put(long i, int value) {
+        segments[(int) (i >>> SEGMENT_SHIFT)].put((int) (i & SEGMENT_MASK), value);
+    }
+
+    /* copies count ints starting at index from into dest[destPos..] */
+    void get(long from, int[] dest, int destPos, int count) {
+        while (count > 0) {
+            IntBuffer segment = segments[(int) (from >>> SEGMENT_SHIFT)];
+            int index = (int) (from & SEGMENT_MASK);
+            int chunk = Math.min(count, segment.limit() - index);
+            segment.get(index, dest, destPos, chunk);
+            from += chunk;
+            destPos += chunk;
+            count -= chunk;
+        }
+    }
+
+    /* copies count ints from src[srcPos..] to the array starting at index to */
+    void put(long to, int[] src, int srcPos, int count) {
+        while (count > 0) {
+            IntBuffer segment = segments[(int) (to >>> SEGMENT_SHIFT)];
+            int index = (int) (to & SEGMENT_MASK);
+            int chunk = Math.min(count, segment.limit() - index);
+            segment.put(index, src, srcPos, chunk);
+            to += chunk;
+            srcPos += chunk;
+            count -= chunk;
+        }
+    }
+
+    /**
+     * Binary search over an ascending array, with the same contract
+     * as java.util.Arrays.binarySearch
+     */
+    long binarySearch(int key) {
+        long low = 0;
+        long high = length - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            int value = get(mid);
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
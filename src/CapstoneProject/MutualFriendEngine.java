@@ -0,0 +1,129 @@
+package CapstoneProject;
+
+/**
+ * Answers mutual-friend queries on a compact graph in dense index space.
+ *
+ * Neighbor lists are intersected with Intersections, which picks a merge,
+ * galloping or binary search from the list sizes. Vertices whose degree
+ * reaches the hub threshold also get a bitset over all vertices, so a hub
+ * is intersected by probing bits (or AND-ing two bitsets) instead of
+ * walking its long list. The default threshold keeps every bitset no
+ * larger than the neighbor list it stands in for. Graphs that keep their
+ * lists off the heap (MappedGraph, CompressedGraph) get no bitsets by
+ * default, as those would bring the hubs' lists back onto the heap; pass
+ * a hub degree to opt in.
+ *
+ * Graphs that keep their lists in one array (CSRGraph, ReorderedGraph)
+ * are intersected in place, so a query costs only what its strategy
+ * reads. Other graphs copy or decode each list into per-thread scratch
+ * buffers, so after the first call on a thread the count and buffer
+ * variants allocate nothing. An engine can be shared between threads.
+ */
+public class MutualFriendEngine {
+
+    private final CompactGraph graph;
+    private final int hubDegree;
+    /* hubBits[v] is the neighbor bitset of v, or null if v is not a hub;
+     * hubBits itself is null when no bitsets are built */
+    private final long[][] hubBits;
+    /* the graph's lists in place, or null if they must be copied into scratch */
+    private final int[] neighbors;
+    private final int[] offsets;
+    private final ThreadLocal<int[][]> scratch;
+
+    /* hub degree that builds no bitsets and skips the degree scan */
+    public static final int NO_HUBS = Integer.MAX_VALUE;
+
+    /**
+     * Creates an engine with bitsets for vertices of degree n/32 or more
+     * if the graph keeps its lists in one array, or none otherwise
+     */
+    public MutualFriendEngine(CompactGraph graph) {
+        this(graph, graph.neighborArray() != null ? Math.max(64, graph.vertexCount() / 32) : NO_HUBS);
+    }
+
+    /**
+     * @param graph		the graph to answer queries on
+     * @param hubDegree	the degree from which a vertex gets a neighbor bitset,
+     * 					or NO_HUBS for none
+     */
+    public MutualFriendEngine(final CompactGraph graph, int hubDegree) {
+        this.graph = graph;
+        this.hubDegree = hubDegree;
+        neighbors = graph.neighborArray();
+        offsets = graph.neighborOffsets();
+        hubBits = hubDegree == NO_HUBS ? null : buildHubBits(graph, hubDegree);
+        scratch = ThreadLocal.withInitial(() -> new int[][] {
+                new int[graph.maxDegree()], new int[graph.maxDegree()] });
+    }
+
+    private static long[][] buildHubBits(CompactGraph graph, int hubDegree) {
+        int n = graph.vertexCount();
+        long[][] hubBits = new long[n][];
+        int[] buf = new int[graph.maxDegree()];
+        for (int v = 0; v < n; v++) {
+            if (graph.degree(v) >= hubDegree) {
+                long[] bits = new long[(n + 63) >>> 6];
+                int degree = graph.copyNeighbors(v, buf);
+                for (int i = 0; i < degree; i++) {
+                    bits[buf[i] >>> 6] |= 1L << buf[i];
+                }
+                hubBits[v] = bits;
+            }
+        }
+        return hubBits;
+    }
+
+    public int hubDegree() {
+        return hubDegree;
+    }
+
+    public boolean isHub(int v) {
+        return hubBits != null && hubBits[v] != null;
+    }
+
+    /**
+     * Counts the out-neighbors shared by dense vertices a and b
+     * without allocating
+     */
+    public int count(int a, int b) {
+        return intersect(a, b, null, 0);
+    }
+
+    /**
+     * Writes the out-neighbors shared by dense vertices a and b into out
+     * (ascending, starting at outPos). If out is null they are only counted.
+     *
+     * @param out	room for at least min(degree(a), degree(b)) values, or null
+     * @return 		the number of shared neighbors
+     */
+    public int intersect(int a, int b, int[] out, int outPos) {
+        long[] bitsA = hubBits == null ? null : hubBits[a];
+        long[] bitsB = hubBits == null ? null : hubBits[b];
+        if (bitsA != null && bitsB != null) {
+            return Intersections.intersectBits(bitsA, bitsB, out, outPos);
+        }
+        if (neighbors != null) {
+            if (bitsB != null) {
+                return Intersections.intersectBits(neighbors, offsets[a], offsets[a + 1], bitsB, out, outPos);
+            }
+            if (bitsA != null) {
+                return Intersections.intersectBits(neighbors, offsets[b], offsets[b + 1], bitsA, out, outPos);
+            }
+            return Intersections.intersect(neighbors, offsets[a], offsets[a + 1],
+                    neighbors, offsets[b], offsets[b + 1], out, outPos);
+        }
+        int[][] buffers = scratch.get();
+        if (bitsB != null) {
+            int degree = graph.copyNeighbors(a, buffers[0]);
+            return Intersections.intersectBits(buffers[0], 0, degree, bitsB, out, outPos);
+        }
+        if (bitsA != null) {
+            int degree = graph.copyNeighbors(b, buffers[0]);
+            return Intersections.intersectBits(buffers[0], 0, degree, bitsA, out, outPos);
+        }
+        int degreeA = graph.copyNeighbors(a, buffers[0]);
+        int degreeB = graph.copyNeighbors(b, buffers[1]);
+        return Intersections.intersect(buffers[0], 0, degreeA, buffers[1], 0, degreeB, out, outPos);
+    }
+}
@@ -0,0 +1,15 @@
+package CapstoneProject;
+
+/**
+ * The "average connections at n degrees of separation" curve of a graph,
+ * whether it was counted exactly (HopDistribution) or estimated (HyperAnf),
+ * so callers such as CapstoneTester can switch between the two.
+ */
+public interface NeighborhoodFunction {
+
+    /* the largest degree of separation at which anyone was found */
+    public int maxSeparation();
+
+    /* the average number of users exactly degree hops from a vertex */
+    public double averageAt(int degree);
+}
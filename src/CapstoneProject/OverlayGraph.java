@@ -0,0 +1,502 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An immutable CSRGraph plus the users and edges added since it was
+ * built; the snapshot type ConcurrentGraph publishes.
+ *
+ * Rebuilding the CSR arrays for every batch of new edges costs a pass
+ * over the whole graph, a transpose and a symmetry check. Here a batch
+ * is applied to a copy of the previous version instead: every vertex the
+ * batch touches gets a merged copy of its sorted list, held in page
+ * tables of PAGE vertices each, while untouched vertices keep reading
+ * the base arrays. A new version copies the top-level tables and the
+ * pages it touches and shares the rest with the old one, so building it
+ * costs O(n / PAGE + pages touched * PAGE + lengths of the touched lists)
+ * and the old version stays valid for readers still holding it.
+ *
+ * New users are numbered after the base's users in the order they
+ * arrive, so dense order no longer follows ID order once users have been
+ * added. Results that CompactGraph promises in ascending ID order are
+ * sorted here, as ReorderedGraph does. compact() folds everything back
+ * into a plain CSRGraph when the overlay has grown large.
+ */
+public class OverlayGraph extends CompactGraph {
+
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE = 1 << PAGE_BITS;
+
+    private final CSRGraph base;
+    private final int baseCount;
+    /* IDs of the users added since base, dense index baseCount + i */
+    private final int[] extraIds;
+    /* the same IDs sorted, with the dense index of each, for indexOf */
+    private final int[] sortedExtraIds;
+    private final int[] sortedExtraIndex;
+    /*
+     * outPages[v >> PAGE_BITS][v & (PAGE - 1)] is the sorted out-list of v
+     * if it changed since base; a null page or entry means v still reads
+     * base (or has no edges, for an added user). inPages likewise.
+     */
+    private final int[][][] outPages;
+    private final int[][][] inPages;
+    private final long edgeCount;
+    /* ints held by the overlay lists, plus one per added user */
+    private final long overlaySize;
+    private final int largestDegree;
+    /* edges u -> v without a matching v -> u; only tracked while base is symmetric */
+    private final long unmatchedEdges;
+
+    /**
+     * Starts an overlay with nothing added yet
+     *
+     * @param base	the graph the overlay adds to
+     */
+    public OverlayGraph(CSRGraph base) {
+        this.base = base;
+        baseCount = base.vertexCount();
+        extraIds = new int[0];
+        sortedExtraIds = new int[0];
+        sortedExtraIndex = new int[0];
+        outPages = new int[pageCount(baseCount)][][];
+        inPages = new int[pageCount(baseCount)][][];
+        edgeCount = base.edgeCount();
+        overlaySize = 0;
+        largestDegree = base.maxDegree();
+        unmatchedEdges = 0;
+    }
+
+    /*
+     * A compacted version of previous: a fresh base, keeping previous's
+     * per-thread scratch
+     */
+    private OverlayGraph(OverlayGraph previous, CSRGraph base) {
+        super(previous);
+        this.base = base;
+        baseCount = base.vertexCount();
+        extraIds = new int[0];
+        sortedExtraIds = new int[0];
+        sortedExtraIndex = new int[0];
+        outPages = new int[pageCount(baseCount)][][];
+        inPages = new int[pageCount(baseCount)][][];
+        edgeCount = base.edgeCount();
+        overlaySize = 0;
+        largestDegree = base.maxDegree();
+        unmatchedEdges = 0;
+    }
+
+    private OverlayGraph(OverlayGraph previous, int[] extraIds, int[] sortedExtraIds, int[] sortedExtraIndex,
+                         int[][][] outPages, int[][][] inPages, long edgeCount, long overlaySize,
+                         int largestDegree, long unmatchedEdges) {
+        super(previous);
+        this.base = previous.base;
+        this.baseCount = previous.baseCount;
+        this.extraIds = extraIds;
+        this.sortedExtraIds = sortedExtraIds;
+        this.sortedExtraIndex = sortedExtraIndex;
+        this.outPages = outPages;
+        this.inPages = inPages;
+        this.edgeCount = edgeCount;
+        this.overlaySize = overlaySize;
+        this.largestDegree = largestDegree;
+        this.unmatchedEdges = unmatchedEdges;
+    }
+
+    private static int pageCount(int n) {
+        return (n + PAGE - 1) >>> PAGE_BITS;
+    }
+
+    /**
+     * Returns a new version holding this graph's edges plus a batch of new
+     * ones; this version is left untouched. Repeated edges are collapsed,
+     * and adding a user that already exists changes nothing.
+     *
+     * @param from			source user ID of each new edge
+     * @param to			target user ID of each new edge
+     * @param count			number of new edges
+     * @param users			IDs of new users that may have no edges
+     * @param userCount		number of entries in users
+     * @return 				the new version
+     */
+    public OverlayGraph withEdges(int[] from, int[] to, int count, int[] users, int userCount) {
+        //number the users this batch introduces after the existing ones
+        HashMap<Integer, Integer> added = new HashMap<Integer, Integer>();
+        int n = vertexCount();
+        int[] batchIds = new int[2 * count + userCount];
+        int numAdded = 0;
+        for (int i = 0; i < 2 * count + userCount; i++) {
+            int user = i < count ? from[i] : i < 2 * count ? to[i - count] : users[i - 2 * count];
+            if (indexOf(user) < 0 && !added.containsKey(user)) {
+                added.put(user, n + numAdded);
+                batchIds[numAdded++] = user;
+            }
+        }
+        int[] nextExtraIds = extraIds;
+        int[] nextSorted = sortedExtraIds;
+        int[] nextSortedIndex = sortedExtraIndex;
+        if (numAdded > 0) {
+            nextExtraIds = Arrays.copyOf(extraIds, extraIds.length + numAdded);
+            System.arraycopy(batchIds, 0, nextExtraIds, extraIds.length, numAdded);
+            nextSorted = new int[nextExtraIds.length];
+            nextSortedIndex = new int[nextExtraIds.length];
+            long[] order = new long[numAdded];
+            for (int i = 0; i < numAdded; i++) {
+                order[i] = ((long) batchIds[i] << 32) | (n + i);
+            }
+            Arrays.sort(order);
+            //merge the sorted new IDs into the existing sorted table
+            for (int i = 0, j = 0, k = 0; k < nextSorted.length; k++) {
+                if (j == numAdded || (i < sortedExtraIds.length && sortedExtraIds[i] < (int) (order[j] >> 32))) {
+                    nextSorted[k] = sortedExtraIds[i];
+                    nextSortedIndex[k] = sortedExtraIndex[i++];
+                } else {
+                    nextSorted[k] = (int) (order[j] >> 32);
+                    nextSortedIndex[k] = (int) order[j++];
+                }
+            }
+        }
+        int nextN = n + numAdded;
+
+        //batch edges as sorted (source, target) and (target, source) pairs of dense indices
+        long[] forward = new long[count];
+        long[] backward = new long[count];
+        for (int e = 0; e < count; e++) {
+            Integer f = added.get(from[e]);
+            Integer t = added.get(to[e]);
+            long s = f != null ? f : indexOf(from[e]);
+            long d = t != null ? t : indexOf(to[e]);
+            forward[e] = (s << 32) | d;
+            backward[e] = (d << 32) | s;
+        }
+        Arrays.sort(forward);
+        Arrays.sort(backward);
+
+        int[][][] nextOut = Arrays.copyOf(outPages, pageCount(nextN));
+        int[][][] nextIn = Arrays.copyOf(inPages, pageCount(nextN));
+        boolean[] outCopied = new boolean[nextOut.length];
+        boolean[] inCopied = new boolean[nextIn.length];
+        long[] size = { overlaySize + numAdded };
+        int largest = largestDegree;
+        long newEdges = 0;
+        int[] buf = new int[Math.max(maxDegree(), 1)];
+        for (int e = 0; e < count; ) {
+            int v = (int) (forward[e] >>> 32);
+            int end = groupEnd(forward, e, count);
+            int oldDegree = v < n ? copyNeighbors(v, buf) : 0;
+            int[] merged = merge(oldDegree, buf, forward, e, end);
+            newEdges += merged.length - oldDegree;
+            largest = Math.max(largest, merged.length);
+            setList(nextOut, outCopied, outPages, v, merged, oldDegree, size);
+            e = end;
+        }
+        for (int e = 0; e < count; ) {
+            int v = (int) (backward[e] >>> 32);
+            int end = groupEnd(backward, e, count);
+            int oldDegree = v < n ? copyInNeighbors(v, buf) : 0;
+            int[] merged = merge(oldDegree, buf, backward, e, end);
+            largest = Math.max(largest, merged.length);
+            setList(nextIn, inCopied, inPages, v, merged, oldDegree, size);
+            e = end;
+        }
+
+        //a new edge without its reverse is unmatched; one whose reverse is older settles that one
+        long unmatched = unmatchedEdges;
+        if (base.isSymmetric()) {
+            for (int e = 0; e < count; e++) {
+                int s = (int) (forward[e] >>> 32);
+                int d = (int) forward[e];
+                if (s == d || (e > 0 && forward[e] == forward[e - 1]) || (s < n && hasEdge(s, d))) {
+                    continue;
+                }
+                int[] reverse = list(nextOut, d);
+                if (reverse != null ? Arrays.binarySearch(reverse, s) < 0 : !(d < n && hasEdge(d, s))) {
+                    unmatched++;
+                } else if (d < n && s < n && hasEdge(d, s)) {
+                    unmatched--;
+                }
+            }
+        }
+        return new OverlayGraph(this, nextExtraIds, nextSorted, nextSortedIndex, nextOut, nextIn,
+                edgeCount + newEdges, size[0], largest, unmatched);
+    }
+
+    /* the end of the run of pairs starting at from that share a first index */
+    private static int groupEnd(long[] pairs, int from, int count) {
+        int end = from;
+        while (end < count && (pairs[end] >>> 32) == (pairs[from] >>> 32)) {
+            end++;
+        }
+        return end;
+    }
+
+    /* merges the sorted list[0..length) with the sorted targets pairs[from..to) */
+    private static int[] merge(int length, int[] list, long[] pairs, int from, int to) {
+        int[] merged = new int[length + to - from];
+        int count = 0;
+        int i = 0;
+        int j = from;
+        while (i < length || j < to) {
+            int next;
+            if (j == to || (i < length && list[i] <= (int) pairs[j])) {
+                next = list[i++];
+            } else {
+                next = (int) pairs[j++];
+            }
+            if (count == 0 || merged[count - 1] != next) {
+                merged[count++] = next;
+            }
+        }
+        return count == merged.length ? merged : Arrays.copyOf(merged, count);
+    }
+
+    /* stores v's new list in a copy of its page, copying the page the first time */
+    private static void setList(int[][][] pages, boolean[] copied, int[][][] oldPages, int v, int[] list,
+                                int oldLength, long[] size) {
+        int p = v >>> PAGE_BITS;
+        if (!copied[p]) {
+            int[][] old = p < oldPages.length ? oldPages[p] : null;
+            pages[p] = old == null ? new int[PAGE][] : old.clone();
+            copied[p] = true;
+        }
+        //a list copied out of base for the first time adds all of it to the overlay
+        size[0] += pages[p][v & (PAGE - 1)] == null ? list.length : list.length - oldLength;
+        pages[p][v & (PAGE - 1)] = list;
+    }
+
+    /* v's overlay list in the given tables, or null if it reads base */
+    private static int[] list(int[][][] pages, int v) {
+        int p = v >>> PAGE_BITS;
+        if (p >= pages.length || pages[p] == null) {
+            return null;
+        }
+        return pages[p][v & (PAGE - 1)];
+    }
+
+    /* true if this version has the edge v -> w */
+    private boolean hasEdge(int v, int w) {
+        int[] list = list(outPages, v);
+        if (list != null) {
+            return Arrays.binarySearch(list, w) >= 0;
+        }
+        if (v >= baseCount) {
+            return false;
+        }
+        int[] offsets = base.offsets();
+        return Arrays.binarySearch(base.neighbors(), offsets[v], offsets[v + 1], w) >= 0;
+    }
+
+    /**
+     * Folds the overlay into a plain CSRGraph numbered by ascending ID.
+     * This is a pass over the whole graph, so run it rarely and away from
+     * threads that are waiting on a query.
+     *
+     * @return 		an equivalent version with an empty overlay
+     */
+    public OverlayGraph compact() {
+        if (edgeCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("too many edges for a CSRGraph: " + edgeCount);
+        }
+        int n = vertexCount();
+        int extras = extraIds.length;
+        //ascending ID order: merge base's sorted IDs with the sorted added ones
+        int[] ids = new int[n];
+        int[] oldIndex = new int[n];
+        for (int i = 0, j = 0, k = 0; k < n; k++) {
+            if (j == extras || (i < baseCount && base.idOf(i) < sortedExtraIds[j])) {
+                ids[k] = base.idOf(i);
+                oldIndex[k] = i++;
+            } else {
+                ids[k] = sortedExtraIds[j];
+                oldIndex[k] = sortedExtraIndex[j++];
+            }
+        }
+        int[] newIndex = new int[n];
+        for (int k = 0; k < n; k++) {
+            newIndex[oldIndex[k]] = k;
+        }
+        int[] buf = new int[Math.max(maxDegree(), 1)];
+        int[] offsets = new int[n + 1];
+        int[] neighbors = new int[(int) edgeCount];
+        int[] inOffsets = new int[n + 1];
+        int[] inNeighbors = new int[(int) edgeCount];
+        for (int k = 0; k < n; k++) {
+            int degree = copyNeighbors(oldIndex[k], buf);
+            offsets[k + 1] = offsets[k] + degree;
+            for (int i = 0; i < degree; i++) {
+                neighbors[offsets[k] + i] = newIndex[buf[i]];
+            }
+            Arrays.sort(neighbors, offsets[k], offsets[k + 1]);
+            degree = copyInNeighbors(oldIndex[k], buf);
+            inOffsets[k + 1] = inOffsets[k] + degree;
+            for (int i = 0; i < degree; i++) {
+                inNeighbors[inOffsets[k] + i] = newIndex[buf[i]];
+            }
+            Arrays.sort(inNeighbors, inOffsets[k], inOffsets[k + 1]);
+        }
+        if (Arrays.equals(offsets, inOffsets) && Arrays.equals(neighbors, inNeighbors)) {
+            inOffsets = offsets;
+            inNeighbors = neighbors;
+        }
+        return new OverlayGraph(this, new CSRGraph(ids, offsets, neighbors, inOffsets, inNeighbors));
+    }
+
+    /* the graph the overlay adds to */
+    public CSRGraph base() {
+        return base;
+    }
+
+    /**
+     * @return 		the ints held by the overlay: the lists copied out of
+     * 				base and merged, plus one per added user
+     */
+    public long overlaySize() {
+        return overlaySize;
+    }
+
+    public int vertexCount() {
+        return baseCount + extraIds.length;
+    }
+
+    public long edgeCount() {
+        return edgeCount;
+    }
+
+    public int indexOf(int user) {
+        int v = base.indexOf(user);
+        if (v >= 0) {
+            return v;
+        }
+        int i = Arrays.binarySearch(sortedExtraIds, user);
+        return i >= 0 ? sortedExtraIndex[i] : -1;
+    }
+
+    public int idOf(int v) {
+        return v < baseCount ? base.idOf(v) : extraIds[v - baseCount];
+    }
+
+    public int degree(int v) {
+        int[] list = list(outPages, v);
+        return list != null ? list.length : v < baseCount ? base.degree(v) : 0;
+    }
+
+    public int inDegree(int v) {
+        int[] list = list(inPages, v);
+        return list != null ? list.length : v < baseCount ? base.inDegree(v) : 0;
+    }
+
+    /**
+     * @return 		true if every edge is known to be mutual; edges added to
+     * 				a base that was not symmetric are not tracked, so that
+     * 				case answers false until the next compact()
+     */
+    public boolean isSymmetric() {
+        return base.isSymmetric() && unmatchedEdges == 0;
+    }
+
+    public int copyNeighbors(int v, int[] dest) {
+        int[] list = list(outPages, v);
+        if (list != null) {
+            System.arraycopy(list, 0, dest, 0, list.length);
+            return list.length;
+        }
+        return v < baseCount ? base.copyNeighbors(v, dest) : 0;
+    }
+
+    public int copyInNeighbors(int v, int[] dest) {
+        int[] list = list(inPages, v);
+        if (list != null) {
+            System.arraycopy(list, 0, dest, 0, list.length);
+            return list.length;
+        }
+        return v < baseCount ? base.copyInNeighbors(v, dest) : 0;
+    }
+
+    /* known when each version is built, rather than found by a pass over every vertex */
+    @Override
+    public int maxDegree() {
+        return largestDegree;
+    }
+
+    /**
+     * @return 		sorted IDs of the direct connections of user,
+     * 				or null if user is not in the graph
+     */
+    @Override
+    public int[] getConnections(int user) {
+        int[] friends = super.getConnections(user);
+        if (friends != null && extraIds.length > 0) {
+            Arrays.sort(friends);
+        }
+        return friends;
+    }
+
+    /**
+     * Intersects the lists where they live, without the MutualFriendEngine
+     * every new version would otherwise have to build
+     *
+     * @return 		sorted IDs of the connections shared by both people
+     */
+    @Override
+    public int[] getMutualFriends(int user1, int user2) {
+        int a = indexOf(user1);
+        int b = indexOf(user2);
+        if (a < 0 || b < 0) {
+            return new int[0];
+        }
+        int[] mutual = new int[Math.min(degree(a), degree(b))];
+        int count = mutualIds(a, b, mutual);
+        return Arrays.copyOf(mutual, count);
+    }
+
+    /**
+     * @return 		the number of IDs written to out, in ascending order
+     */
+    @Override
+    public int getMutualFriends(int user1, int user2, int[] out) {
+        int a = indexOf(user1);
+        int b = indexOf(user2);
+        if (a < 0 || b < 0) {
+            return 0;
+        }
+        return mutualIds(a, b, out);
+    }
+
+    @Override
+    public int countMutualFriends(int user1, int user2) {
+        int a = indexOf(user1);
+        int b = indexOf(user2);
+        if (a < 0 || b < 0) {
+            return 0;
+        }
+        return intersect(a, b, null);
+    }
+
+    /* writes the IDs shared by dense vertices a and b into out, sorted */
+    private int mutualIds(int a, int b, int[] out) {
+        int count = intersect(a, b, out);
+        for (int i = 0; i < count; i++) {
+            out[i] = idOf(out[i]);
+        }
+        if (extraIds.length > 0) {
+            Arrays.sort(out, 0, count);
+        }
+        return count;
+    }
+
+    /* intersects the out-lists of a and b in place, in the overlay or in base */
+    private int intersect(int a, int b, int[] out) {
+        int[] offsets = base.offsets();
+        int[] neighbors = base.neighbors();
+        int[] listA = list(outPages, a);
+        int[] listB = list(outPages, b);
+        int[] arrayA = listA != null ? listA : neighbors;
+        int fromA = listA != null ? 0 : a < baseCount ? offsets[a] : 0;
+        int toA = listA != null ? listA.length : a < baseCount ? offsets[a + 1] : 0;
+        int[] arrayB = listB != null ? listB : neighbors;
+        int fromB = listB != null ? 0 : b < baseCount ? offsets[b] : 0;
+        int toB = listB != null ? listB.length : b < baseCount ? offsets[b + 1] : 0;
+        return Intersections.intersect(arrayA, fromA, toA, arrayB, fromB, toB, out, 0);
+    }
+}
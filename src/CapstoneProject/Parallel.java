@@ -0,0 +1,65 @@
+package CapstoneProject;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Small helper for running a loop over 0..n-1 on a ForkJoinPool.
+ * The range is split in halves until pieces are no bigger than the
+ * grain size, and each piece is handed to the body as [from, to).
+ */
+public class Parallel {
+
+    /* a piece of work over the index range [from, to) */
+    public interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * Runs body over [0, n) on the given pool and waits for it to finish
+     *
+     * @param pool		the pool to run on
+     * @param n			the size of the index range
+     * @param grain		the largest range handed to body in one call
+     * @param body		the work to run for each piece of the range
+     */
+    public static void forRange(ForkJoinPool pool, int n, int grain, RangeBody body) {
+        if (n <= 0) {
+            return;
+        }
+        pool.invoke(new RangeTask(0, n, Math.max(1, grain), body));
+    }
+
+    /**
+     * Runs body over [0, n) with a grain that gives each thread of the
+     * pool several pieces to balance uneven work
+     */
+    public static void forRange(ForkJoinPool pool, int n, RangeBody body) {
+        forRange(pool, n, n / (pool.getParallelism() * 8) + 1, body);
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final RangeBody body;
+
+        RangeTask(int from, int to, int grain, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, grain, body), new RangeTask(mid, to, grain, body));
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Breadth first search that spreads each level of one traversal across a
+ * ForkJoinPool, for single queries on hub users of very large graphs,
+ * where one BFS touches most of the graph.
+ *
+ * Levels are expanded in one of two directions:
+ *   top-down    the frontier is cut into pieces and every worker scans the
+ *               out-edges of its piece, claiming unvisited neighbors with a
+ *               compare-and-set on an atomic visited bitmap
+ *   bottom-up   the vertex range is cut into pieces of whole bitmap words,
+ *               and every unvisited vertex scans its in-edges until it
+ *               finds one that leaves the frontier; each word belongs to one
+ *               worker, so no atomics are needed
+ * A level starts top-down, switches to bottom-up once the frontier's edges
+ * outweigh a fraction of the unvisited users' edges, and switches back
+ * when the frontier is small again and shrinking (Beamer, Asanovic and
+ * Patterson's direction-optimizing BFS). Bottom-up stops scanning a vertex
+ * at its first frontier neighbor, which is what saves the work on the
+ * large middle levels of a small-world graph.
+ *
+ * Levels and distances match the sequential CompactGraph queries. A path
+ * is a shortest path too, but when several exist which one is returned
+ * depends on which worker claims a vertex first. All per-query state is
+ * allocated by the query, so one instance can serve concurrent callers.
+ */
+public class ParallelBFS {
+
+    /* switch to bottom-up when frontier edges exceed unvisited edges / ALPHA */
+    private static final int ALPHA = 14;
+    /* switch back to top-down when the frontier is below vertexCount / BETA */
+    private static final int BETA = 24;
+    /* smallest number of frontier vertices handed to one top-down piece */
+    private static final int GRAIN = 256;
+    /* smallest number of bitmap words handed to one bottom-up piece */
+    private static final int WORD_GRAIN = 16;
+
+    private final CompactGraph graph;
+    private final ForkJoinPool pool;
+    private final boolean directionOptimizing;
+    private final int maxPieces;
+    private final ThreadLocal<int[]> buffers;
+
+    public ParallelBFS(CompactGraph graph, ForkJoinPool pool) {
+        this(graph, pool, true);
+    }
+
+    /**
+     * @param graph					the graph to search
+     * @param pool					the pool that expands the levels
+     * @param directionOptimizing	false to expand every level top-down
+     */
+    public ParallelBFS(final CompactGraph graph, ForkJoinPool pool, boolean directionOptimizing) {
+        this.graph = graph;
+        this.pool = pool;
+        this.directionOptimizing = directionOptimizing;
+        maxPieces = pool.getParallelism() * 8;
+        buffers = ThreadLocal.withInitial(() -> new int[graph.maxDegree()]);
+    }
+
+    /**
+     * Parallel equivalent of CompactGraph.streamLevels
+     *
+     * @param user		an integer representing one person's ID
+     * @param maxDegree	the last degree of separation to visit
+     * @param visitor	receives each level as user IDs; returns false to stop
+     * @return 			the number of levels handed to the visitor
+     */
+    public int streamLevels(int user, int maxDegree, LevelVisitor visitor) {
+        int start = graph.indexOf(user);
+        if (start < 0) {
+            return 0;
+        }
+        Traversal t = new Traversal(start, false);
+        int[] ids = new int[16];
+        int degree = 0;
+        while (degree < maxDegree && t.expand() > 0) {
+            degree++;
+            if (ids.length < t.frontierSize) {
+                ids = new int[t.frontier.length];
+            }
+            t.copyIds(ids);
+            if (!visitor.visitLevel(degree, ids, t.frontierSize)) {
+                break;
+            }
+        }
+        return degree;
+    }
+
+    /**
+     * Parallel equivalent of CompactGraph.getNDegreeConnections
+     *
+     * @return 		sorted IDs of the users exactly degreeOfSeparation hops
+     * 				from user
+     */
+    public int[] getNDegreeConnections(int user, int degreeOfSeparation) {
+        int start = graph.indexOf(user);
+        if (start < 0) {
+            return new int[0];
+        }
+        Traversal t = new Traversal(start, false);
+        for (int degree = 0; degree < degreeOfSeparation; degree++) {
+            if (t.expand() == 0) {
+                return new int[0];
+            }
+        }
+        int[] ids = new int[t.frontierSize];
+        t.copyIds(ids);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Parallel equivalent of CompactGraph.getPath. The search runs forwards
+     * from user1 only and stops at the level that reaches user2.
+     *
+     * @param user1	an integer representing the starting person's ID
+     * @param user2	an integer representing the target person's ID
+     * @return 		user2 first, walking back towards (but excluding) user1;
+     * 				null if either user is missing or user2 is unreachable
+     */
+    public int[] getPath(int user1, int user2) {
+        int start = graph.indexOf(user1);
+        int end = graph.indexOf(user2);
+        if (start < 0 || end < 0) {
+            return null;
+        }
+        Traversal t = new Traversal(start, true);
+        int length = t.searchFor(end);
+        if (length < 0) {
+            return null;
+        }
+        int[] path = new int[length];
+        int v = end;
+        for (int i = 0; i < length; i++) {
+            path[i] = graph.idOf(v);
+            v = t.parent[v];
+        }
+        return path;
+    }
+
+    /**
+     * Parallel equivalent of CompactGraph.getDegreeOfSeparation
+     *
+     * @return 		the number of hops from user1 to user2, or
+     * 				CapstoneDoSGraph.UNREACHABLE if either user is missing
+     * 				or there is no path
+     */
+    public int getDegreeOfSeparation(int user1, int user2) {
+        int start = graph.indexOf(user1);
+        int end = graph.indexOf(user2);
+        if (start < 0 || end < 0) {
+            return CapstoneDoSGraph.UNREACHABLE;
+        }
+        int length = new Traversal(start, false).searchFor(end);
+        return length < 0 ? CapstoneDoSGraph.UNREACHABLE : length;
+    }
+
+    /* runs body over pieces [0, count), on the calling thread if there is only one */
+    private void runPieces(int count, Parallel.RangeBody body) {
+        if (count == 1) {
+            body.run(0, 1);
+        } else {
+            Parallel.forRange(pool, count, 1, body);
+        }
+    }
+
+    /**
+     * The state of one traversal. Each level is expanded into per-piece
+     * output lists, which are then concatenated into the next frontier in
+     * piece order.
+     */
+    private final class Traversal {
+        final int n;
+        final AtomicLongArray visited;
+        /* predecessor of each reached vertex, or null if not needed */
+        final int[] parent;
+        int[] frontier = new int[16];
+        int frontierSize;
+        int previousSize;
+        /* the frontier as a bitmap, and the bottom-up level being built */
+        long[] frontierBits;
+        long[] nextBits;
+        boolean bitsValid;
+        boolean bottomUp;
+
+        /* per-piece output of the level being expanded */
+        final int[][] pieces = new int[maxPieces][];
+        final int[] pieceSizes = new int[maxPieces];
+        final long[] pieceOutEdges = new long[maxPieces];
+        final long[] pieceInEdges = new long[maxPieces];
+        /* out-edges leaving the frontier, in-edges into unvisited vertices */
+        long frontierEdges;
+        long unvisitedEdges;
+
+        Traversal(int start, boolean withParents) {
+            n = graph.vertexCount();
+            visited = new AtomicLongArray((n + 63) >>> 6);
+            visited.set(start >>> 6, 1L << start);
+            parent = withParents ? new int[n] : null;
+            frontier[0] = start;
+            frontierSize = 1;
+            frontierEdges = graph.degree(start);
+            unvisitedEdges = graph.edgeCount() - graph.inDegree(start);
+        }
+
+        /* expands levels until end is reached; returns its depth or -1 */
+        int searchFor(int end) {
+            int depth = 0;
+            while (!isVisited(end)) {
+                if (expand() == 0) {
+                    return -1;
+                }
+                depth++;
+            }
+            return depth;
+        }
+
+        boolean isVisited(int v) {
+            return (visited.get(v >>> 6) & (1L << v)) != 0;
+        }
+
+        /* expands the frontier by one level; returns the new frontier size */
+        int expand() {
+            if (frontierSize == 0) {
+                return 0;
+            }
+            if (directionOptimizing) {
+                boolean growing = frontierSize > previousSize;
+                if (!bottomUp) {
+                    bottomUp = growing && frontierEdges > unvisitedEdges / ALPHA;
+                } else {
+                    bottomUp = growing || frontierSize >= n / BETA;
+                }
+            }
+            previousSize = frontierSize;
+            final int count;
+            if (bottomUp) {
+                if (!bitsValid) {
+                    fillFrontierBits();
+                }
+                int words = visited.length();
+                count = Math.max(1, Math.min(maxPieces, words / WORD_GRAIN));
+                runPieces(count, (from, to) -> {
+                    for (int p = from; p < to; p++) {
+                        bottomUpPiece(p, count);
+                    }
+                });
+                long[] temp = frontierBits;
+                frontierBits = nextBits;
+                nextBits = temp;
+            } else {
+                count = Math.max(1, Math.min(maxPieces, frontierSize / GRAIN));
+                runPieces(count, (from, to) -> {
+                    for (int p = from; p < to; p++) {
+                        topDownPiece(p, count);
+                    }
+                });
+            }
+            bitsValid = bottomUp;
+            gather(count);
+            return frontierSize;
+        }
+
+        /* scans the out-edges of the piece's share of the frontier */
+        void topDownPiece(int piece, int count) {
+            int from = (int) ((long) frontierSize * piece / count);
+            int to = (int) ((long) frontierSize * (piece + 1) / count);
+            int[] buf = buffers.get();
+            int[] out = output(piece, 16);
+            int size = 0;
+            long outEdges = 0;
+            long inEdges = 0;
+            for (int q = from; q < to; q++) {
+                int v = frontier[q];
+                int degree = graph.copyNeighbors(v, buf);
+                for (int i = 0; i < degree; i++) {
+                    int w = buf[i];
+                    if (claim(w)) {
+                        if (parent != null) {
+                            parent[w] = v;
+                        }
+                        if (size == out.length) {
+                            out = pieces[piece] = Arrays.copyOf(out, 2 * size);
+                        }
+                        out[size++] = w;
+                        outEdges += graph.degree(w);
+                        inEdges += graph.inDegree(w);
+                    }
+                }
+            }
+            finishPiece(piece, size, outEdges, inEdges);
+        }
+
+        /* sets v's visited bit; true if this call was the one that set it */
+        boolean claim(int w) {
+            int word = w >>> 6;
+            long bit = 1L << w;
+            long old = visited.get(word);
+            while ((old & bit) == 0) {
+                if (visited.compareAndSet(word, old, old | bit)) {
+                    return true;
+                }
+                old = visited.get(word);
+            }
+            return false;
+        }
+
+        /* checks every unvisited vertex in the piece's words for a frontier in-neighbor */
+        void bottomUpPiece(int piece, int count) {
+            int words = visited.length();
+            int from = (int) ((long) words * piece / count);
+            int to = (int) ((long) words * (piece + 1) / count);
+            int[] buf = buffers.get();
+            int[] out = output(piece, 64);
+            int size = 0;
+            long outEdges = 0;
+            long inEdges = 0;
+            for (int word = from; word < to; word++) {
+                long seen = visited.get(word);
+                long unvisited = ~seen;
+                if (word == words - 1 && (n & 63) != 0) {
+                    unvisited &= (1L << n) - 1;
+                }
+                long found = 0;
+                while (unvisited != 0) {
+                    int v = (word << 6) | Long.numberOfTrailingZeros(unvisited);
+                    unvisited &= unvisited - 1;
+                    int degree = graph.copyInNeighbors(v, buf);
+                    for (int i = 0; i < degree; i++) {
+                        int u = buf[i];
+                        if ((frontierBits[u >>> 6] & (1L << u)) != 0) {
+                            if (parent != null) {
+                                parent[v] = u;
+                            }
+                            found |= 1L << v;
+                            if (size == out.length) {
+                                out = pieces[piece] = Arrays.copyOf(out, 2 * size);
+                            }
+                            out[size++] = v;
+                            outEdges += graph.degree(v);
+                            inEdges += degree;
+                            break;
+                        }
+                    }
+                }
+                nextBits[word] = found;
+                if (found != 0) {
+                    //this worker owns the word, so a plain write is enough
+                    visited.set(word, seen | found);
+                }
+            }
+            finishPiece(piece, size, outEdges, inEdges);
+        }
+
+        int[] output(int piece, int initialSize) {
+            if (pieces[piece] == null) {
+                pieces[piece] = new int[initialSize];
+            }
+            return pieces[piece];
+        }
+
+        void finishPiece(int piece, int size, long outEdges, long inEdges) {
+            pieceSizes[piece] = size;
+            pieceOutEdges[piece] = outEdges;
+            pieceInEdges[piece] = inEdges;
+        }
+
+        /* builds the frontier bitmap for a switch from top-down to bottom-up */
+        void fillFrontierBits() {
+            int words = visited.length();
+            if (frontierBits == null) {
+                frontierBits = new long[words];
+                nextBits = new long[words];
+            } else {
+                Arrays.fill(frontierBits, 0);
+            }
+            for (int q = 0; q < frontierSize; q++) {
+                int v = frontier[q];
+                frontierBits[v >>> 6] |= 1L << v;
+            }
+        }
+
+        /* concatenates the pieces' output into the new frontier */
+        void gather(int count) {
+            final int[] offsets = new int[count + 1];
+            long outEdges = 0;
+            for (int p = 0; p < count; p++) {
+                offsets[p + 1] = offsets[p] + pieceSizes[p];
+                outEdges += pieceOutEdges[p];
+                unvisitedEdges -= pieceInEdges[p];
+            }
+            frontierEdges = outEdges;
+            frontierSize = offsets[count];
+            if (frontier.length < frontierSize) {
+                frontier = new int[Math.max(frontierSize, 2 * frontier.length)];
+            }
+            final int[] next = frontier;
+            runPieces(count, (from, to) -> {
+                for (int p = from; p < to; p++) {
+                    System.arraycopy(pieces[p], 0, next, offsets[p], pieceSizes[p]);
+                }
+            });
+        }
+
+        /* writes the user IDs of the frontier into ids */
+        void copyIds(final int[] ids) {
+            int count = Math.max(1, Math.min(maxPieces, frontierSize / GRAIN));
+            runPieces(count, (from, to) -> {
+                int first = (int) ((long) frontierSize * from / count);
+                int last = (int) ((long) frontierSize * to / count);
+                for (int q = first; q < last; q++) {
+                    ids[q] = graph.idOf(frontier[q]);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package CapstoneProject;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache in front of the CapstoneDoSGraph queries that popular
+ * users hit over and over: getPath, getMutualFriends and
+ * getNDegreeConnections. Answers are stored packed as int[].
+ *
+ * Invalidation uses the graph's version stamps rather than a flush on
+ * every change. A mutual-friend answer records the vertex versions of
+ * its two users, so it only goes stale when one of them gains or loses a
+ * connection. A path or n-degree answer records the component version of
+ * its source, so it only goes stale when an edge is added inside that
+ * component. Stale entries are dropped when next looked up.
+ *
+ * Eviction is W-TinyLFU style. New entries land in a small LRU window.
+ * When the window overflows, its oldest entry only gets into the main
+ * LRU region if a frequency sketch says it is requested more often than
+ * the entry it would evict. One-off queries therefore cannot flush out
+ * the popular users. Sizes are counted in ints, so large n-degree answers
+ * weigh more.
+ *
+ * Arrays returned by the cache are shared with it and must not be
+ * modified. All methods are thread safe; queries run outside the lock.
+ */
+public class QueryCache {
+
+    private static final byte PATH = 0;
+    private static final byte MUTUAL_FRIENDS = 1;
+    private static final byte N_DEGREE = 2;
+    /* approximate per-entry overhead, in ints, added to each value's length */
+    private static final int ENTRY_OVERHEAD = 16;
+    /* share of the capacity given to the admission window, in percent */
+    private static final int WINDOW_PERCENT = 1;
+
+    private final CapstoneDoSGraph graph;
+    private final long windowCapacity;
+    private final long mainCapacity;
+    private final LinkedHashMap<Key, Entry> window = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private final LinkedHashMap<Key, Entry> main = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long windowWeight;
+    private long mainWeight;
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+    private long rejections;
+
+    /* cache key: the query kind and its two int arguments */
+    private static final class Key {
+        final byte kind;
+        final int a;
+        final int b;
+
+        Key(byte kind, int a, int b) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return kind == other.kind && a == other.a && b == other.b;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = a * 0x9E3779B1 + b;
+            return (h ^ (h >>> 16)) * 31 + kind;
+        }
+    }
+
+    /* a cached answer with the version stamps it was computed under */
+    private static final class Entry {
+        final int[] value;
+        final long version1;
+        final long version2;
+
+        Entry(int[] value, long version1, long version2) {
+            this.value = value;
+            this.version1 = version1;
+            this.version2 = version2;
+        }
+
+        long weight() {
+            return ENTRY_OVERHEAD + (value == null ? 0 : value.length);
+        }
+    }
+
+    /**
+     * @param graph		the graph to answer queries on
+     * @param maxInts	the capacity, in ints of cached answers
+     */
+    public QueryCache(CapstoneDoSGraph graph, long maxInts) {
+        this.graph = graph;
+        windowCapacity = Math.max(ENTRY_OVERHEAD, maxInts * WINDOW_PERCENT / 100);
+        mainCapacity = Math.max(ENTRY_OVERHEAD, maxInts - windowCapacity);
+        sketch = new FrequencySketch((int) Math.min(1 << 24, Math.max(64, maxInts / ENTRY_OVERHEAD)));
+    }
+
+    /**
+     * Cached CapstoneDoSGraph.getPath
+     *
+     * @return 		the path from user2 back towards (excluding) user1,
+     * 				or null if there is none
+     */
+    public int[] getPath(int user1, int user2) {
+        Key key = new Key(PATH, user1, user2);
+        long version = graph.componentVersion(user1);
+        Entry entry = lookup(key, version, 0);
+        if (entry != null) {
+            return entry.value;
+        }
+        List<Integer> path = graph.getPath(user1, user2);
+        int[] value = null;
+        if (path != null) {
+            value = new int[path.size()];
+            for (int i = 0; i < value.length; i++) {
+                value[i] = path.get(i);
+            }
+        }
+        store(key, new Entry(value, version, 0));
+        return value;
+    }
+
+    /**
+     * Cached CapstoneDoSGraph.getDegreeOfSeparation
+     */
+    public int getDegreeOfSeparation(int user1, int user2) {
+        int[] path = getPath(user1, user2);
+        return path == null ? CapstoneDoSGraph.UNREACHABLE : path.length;
+    }
+
+    /**
+     * Cached CapstoneDoSGraph.getMutualFriends
+     *
+     * @return 		the IDs of the connections shared by both users
+     */
+    public int[] getMutualFriends(int user1, int user2) {
+        //the answer is the same either way round
+        Key key = new Key(MUTUAL_FRIENDS, Math.min(user1, user2), Math.max(user1, user2));
+        long version1 = graph.vertexVersion(key.a);
+        long version2 = graph.vertexVersion(key.b);
+        Entry entry = lookup(key, version1, version2);
+        if (entry != null) {
+            return entry.value;
+        }
+        int[] value = toArray(graph.getMutualFriends(user1, user2));
+        store(key, new Entry(value, version1, version2));
+        return value;
+    }
+
+    /**
+     * Cached CapstoneDoSGraph.getNDegreeConnections
+     *
+     * @return 		the IDs of the users exactly degree hops from user
+     */
+    public int[] getNDegreeConnections(int user, int degree) {
+        Key key = new Key(N_DEGREE, user, degree);
+        long version = graph.componentVersion(user);
+        Entry entry = lookup(key, version, 0);
+        if (entry != null) {
+            return entry.value;
+        }
+        int[] value = toArray(graph.getNDegreeConnections(user, degree));
+        store(key, new Entry(value, version, 0));
+        return value;
+    }
+
+    private static int[] toArray(HashSet<Integer> users) {
+        int[] values = new int[users.size()];
+        int i = 0;
+        for (Integer user : users) {
+            values[i++] = user;
+        }
+        return values;
+    }
+
+    /* returns the entry if present and still valid, counting the outcome */
+    private synchronized Entry lookup(Key key, long version1, long version2) {
+        sketch.increment(key.hashCode());
+        Entry entry = window.get(key);
+        boolean inWindow = entry != null;
+        if (!inWindow) {
+            entry = main.get(key);
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.version1 != version1 || entry.version2 != version2) {
+            invalidations++;
+            misses++;
+            if (inWindow) {
+                window.remove(key);
+                windowWeight -= entry.weight();
+            } else {
+                main.remove(key);
+                mainWeight -= entry.weight();
+            }
+            return null;
+        }
+        hits++;
+        return entry;
+    }
+
+    /* adds a freshly computed entry to the window, then settles the overflow */
+    private synchronized void store(Key key, Entry entry) {
+        long weight = entry.weight();
+        if (weight > mainCapacity) {
+            rejections++;
+            return;
+        }
+        Entry old = window.put(key, entry);
+        windowWeight += weight - (old == null ? 0 : old.weight());
+        old = main.remove(key);
+        if (old != null) {
+            mainWeight -= old.weight();
+        }
+        while (windowWeight > windowCapacity) {
+            Iterator<Map.Entry<Key, Entry>> eldest = window.entrySet().iterator();
+            Map.Entry<Key, Entry> candidate = eldest.next();
+            eldest.remove();
+            windowWeight -= candidate.getValue().weight();
+            admit(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    /*
+     * Moves an entry leaving the window into the main region if it is
+     * requested more often than every least recently used entry it would
+     * evict. The victims are only weighed on the first pass, so a rejected
+     * candidate leaves the main region untouched.
+     */
+    private void admit(Key key, Entry entry) {
+        long weight = entry.weight();
+        int frequency = sketch.frequency(key.hashCode());
+        Iterator<Map.Entry<Key, Entry>> victims = main.entrySet().iterator();
+        long freed = 0;
+        int evict = 0;
+        while (mainWeight - freed + weight > mainCapacity) {
+            Map.Entry<Key, Entry> victim = victims.next();
+            if (sketch.frequency(victim.getKey().hashCode()) >= frequency) {
+                rejections++;
+                return;
+            }
+            freed += victim.getValue().weight();
+            evict++;
+        }
+        victims = main.entrySet().iterator();
+        for (int i = 0; i < evict; i++) {
+            mainWeight -= victims.next().getValue().weight();
+            victims.remove();
+            evictions++;
+        }
+        main.put(key, entry);
+        mainWeight += weight;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /* lookups that found an entry made stale by a change to the graph */
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+
+    /* entries pushed out of the main region to make room */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /* entries turned away by the admission filter or for being too large */
+    public synchronized long rejections() {
+        return rejections;
+    }
+
+    public synchronized double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public synchronized int size() {
+        return window.size() + main.size();
+    }
+
+    /* the cached weight in ints, against the capacity given at construction */
+    public synchronized long weight() {
+        return windowWeight + mainWeight;
+    }
+
+    public synchronized void resetStats() {
+        hits = misses = invalidations = evictions = rejections = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("QueryCache[entries=%d, weight=%d, hitRate=%.3f, hits=%d, misses=%d, "
+                        + "invalidations=%d, evictions=%d, rejections=%d]",
+                size(), weight(), hitRate(), hits, misses, invalidations, evictions, rejections);
+    }
+
+    /**
+     * Count-min sketch of how often each key was looked up: four 4-bit
+     * counters per key, packed sixteen to a long. All counters are halved
+     * every 10 * width increments so old popularity fades.
+     */
+    private static final class FrequencySketch {
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int width) {
+            int size = Integer.highestOneBit(Math.max(4, width - 1) << 1) >>> 2;
+            table = new long[size];
+            mask = size - 1;
+            sampleSize = 10 * width;
+        }
+
+        int frequency(int hash) {
+            int min = 15;
+            for (int i = 0; i < 4; i++) {
+                min = Math.min(min, (int) ((table[slot(hash, i)] >>> shift(hash, i)) & 0xF));
+            }
+            return min;
+        }
+
+        void increment(int hash) {
+            for (int i = 0; i < 4; i++) {
+                int slot = slot(hash, i);
+                int shift = shift(hash, i);
+                if (((table[slot] >>> shift) & 0xF) < 15) {
+                    table[slot] += 1L << shift;
+                }
+            }
+            if (++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int slot(int hash, int i) {
+            int h = (hash + i * 0x9E3779B9) * 0x85EBCA6B;
+            return (h ^ (h >>> 15)) & mask;
+        }
+
+        /* which of the sixteen 4-bit counters in the slot belongs to this row */
+        private int shift(int hash, int i) {
+            int h = (hash ^ (i * 0x27D4EB2F)) * 0xC2B2AE35;
+            return ((h >>> 28) & 0xF) << 2;
+        }
+    }
+}
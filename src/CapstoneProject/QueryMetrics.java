@@ -0,0 +1,229 @@
+package CapstoneProject;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Instrumentation for the CapstoneDoSGraph queries, switched on with
+ * CapstoneDoSGraph.setMetrics. For every query method it keeps
+ *   calls, users visited, adjacency entries scanned and BFS levels
+ *   expanded, as counters
+ *   latency (ns), result size and frontier size per level, as Histograms
+ *
+ * Every thread records into its own Recorder, so recording takes no locks
+ * and causes no cache-line sharing between threads. Each value has one
+ * writer, which publishes it with an ordered store (lazySet). snapshot()
+ * sums all recorders, live or finished, into an immutable Snapshot. A
+ * snapshot taken while queries run may show one query's counters but not
+ * yet its histograms. Snapshot.since gives the activity between two
+ * snapshots.
+ *
+ * A query built on another one records its own call, latency and result,
+ * while the traversal work is counted under the inner query only. For
+ * example, getDegreeOfSeparation's users and edges appear under getPath.
+ * With metrics switched off, a query pays one volatile read and a few
+ * local additions.
+ */
+public class QueryMetrics {
+
+    /* the instrumented query methods */
+    public enum Query {
+        GET_PATH, GET_DEGREE_OF_SEPARATION, GET_MUTUAL_FRIENDS,
+        GET_N_DEGREE_CONNECTIONS, STREAM_LEVELS, GET_SECOND_DEGREE_MUTUAL_COUNTS
+    }
+
+    private static final Query[] QUERIES = Query.values();
+
+    /* counters kept for each query */
+    private static final int CALLS = 0;
+    private static final int VERTICES = 1;
+    private static final int EDGES = 2;
+    private static final int LEVELS = 3;
+    private static final int COUNTERS = 4;
+
+    /* histograms kept for each query, each as its buckets followed by its sum */
+    private static final int LATENCY = 0;
+    private static final int RESULT_SIZE = 1;
+    private static final int FRONTIER_SIZE = 2;
+    private static final int HISTOGRAMS = 3;
+    private static final int HISTOGRAM_SLOTS = Histogram.BUCKETS + 1;
+
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<Recorder>();
+    private final ThreadLocal<Recorder> local = ThreadLocal.withInitial(() -> {
+        Recorder recorder = new Recorder();
+        recorders.add(recorder);
+        return recorder;
+    });
+
+    /* the calling thread's recorder */
+    Recorder recorder() {
+        return local.get();
+    }
+
+    /**
+     * One thread's measurements. Traversals report their work with work()
+     * and level(); record() then charges it to the query that finished.
+     */
+    static final class Recorder {
+        private final AtomicLongArray counters = new AtomicLongArray(QUERIES.length * COUNTERS);
+        private final AtomicLongArray histograms =
+                new AtomicLongArray(QUERIES.length * HISTOGRAMS * HISTOGRAM_SLOTS);
+        /* work reported since the last record(), only touched by the owner */
+        private long pendingVertices;
+        private long pendingEdges;
+
+        void work(long vertices, long edges) {
+            pendingVertices += vertices;
+            pendingEdges += edges;
+        }
+
+        void level(Query query, long frontierSize) {
+            add(counters, query.ordinal() * COUNTERS + LEVELS, 1);
+            add(query, FRONTIER_SIZE, frontierSize);
+        }
+
+        /* records a finished query, along with the work reported since the last one */
+        void record(Query query, long startNanos, long resultSize) {
+            long latency = System.nanoTime() - startNanos;
+            int base = query.ordinal() * COUNTERS;
+            add(counters, base + CALLS, 1);
+            if (pendingVertices != 0 || pendingEdges != 0) {
+                add(counters, base + VERTICES, pendingVertices);
+                add(counters, base + EDGES, pendingEdges);
+                pendingVertices = pendingEdges = 0;
+            }
+            add(query, LATENCY, latency);
+            add(query, RESULT_SIZE, resultSize);
+        }
+
+        private void add(Query query, int histogram, long value) {
+            int base = (query.ordinal() * HISTOGRAMS + histogram) * HISTOGRAM_SLOTS;
+            add(histograms, base + Histogram.bucketOf(value), 1);
+            add(histograms, base + Histogram.BUCKETS, value);
+        }
+
+        /* single-writer increment: no atomic read-modify-write needed */
+        private static void add(AtomicLongArray array, int i, long delta) {
+            array.lazySet(i, array.get(i) + delta);
+        }
+    }
+
+    /**
+     * @return 		everything recorded so far by every thread
+     */
+    public Snapshot snapshot() {
+        long[] counters = new long[QUERIES.length * COUNTERS];
+        long[] histograms = new long[QUERIES.length * HISTOGRAMS * HISTOGRAM_SLOTS];
+        for (Recorder recorder : recorders) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] += recorder.counters.get(i);
+            }
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] += recorder.histograms.get(i);
+            }
+        }
+        QueryStats[] stats = new QueryStats[QUERIES.length];
+        for (Query query : QUERIES) {
+            int q = query.ordinal();
+            stats[q] = new QueryStats(query,
+                    counters[q * COUNTERS + CALLS], counters[q * COUNTERS + VERTICES],
+                    counters[q * COUNTERS + EDGES], counters[q * COUNTERS + LEVELS],
+                    histogram(histograms, q, LATENCY),
+                    histogram(histograms, q, RESULT_SIZE),
+                    histogram(histograms, q, FRONTIER_SIZE));
+        }
+        return new Snapshot(stats);
+    }
+
+    private static Histogram histogram(long[] histograms, int query, int histogram) {
+        int base = (query * HISTOGRAMS + histogram) * HISTOGRAM_SLOTS;
+        long[] counts = new long[Histogram.BUCKETS];
+        System.arraycopy(histograms, base, counts, 0, Histogram.BUCKETS);
+        return new Histogram(counts, histograms[base + Histogram.BUCKETS]);
+    }
+
+    /**
+     * Measurements for one query method
+     */
+    public static final class QueryStats {
+        public final Query query;
+        public final long calls;
+        public final long verticesVisited;
+        public final long edgesScanned;
+        public final long levels;
+        /* nanoseconds per call */
+        public final Histogram latency;
+        /* users (or path hops) returned per call */
+        public final Histogram resultSize;
+        /* users in each BFS level expanded */
+        public final Histogram frontierSize;
+
+        QueryStats(Query query, long calls, long verticesVisited, long edgesScanned, long levels,
+                   Histogram latency, Histogram resultSize, Histogram frontierSize) {
+            this.query = query;
+            this.calls = calls;
+            this.verticesVisited = verticesVisited;
+            this.edgesScanned = edgesScanned;
+            this.levels = levels;
+            this.latency = latency;
+            this.resultSize = resultSize;
+            this.frontierSize = frontierSize;
+        }
+
+        QueryStats minus(QueryStats earlier) {
+            return new QueryStats(query, calls - earlier.calls,
+                    verticesVisited - earlier.verticesVisited, edgesScanned - earlier.edgesScanned,
+                    levels - earlier.levels, latency.minus(earlier.latency),
+                    resultSize.minus(earlier.resultSize), frontierSize.minus(earlier.frontierSize));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: calls=%d visited=%d scanned=%d levels=%d%n"
+                            + "  latency(ns)   %s%n  result size   %s%n  frontier size %s",
+                    query, calls, verticesVisited, edgesScanned, levels,
+                    latency, resultSize, frontierSize);
+        }
+    }
+
+    /**
+     * All query methods' measurements at one point in time
+     */
+    public static final class Snapshot {
+        private final QueryStats[] stats;
+
+        Snapshot(QueryStats[] stats) {
+            this.stats = stats;
+        }
+
+        public QueryStats get(Query query) {
+            return stats[query.ordinal()];
+        }
+
+        /**
+         * @return 		what was recorded between earlier and this snapshot
+         */
+        public Snapshot since(Snapshot earlier) {
+            QueryStats[] difference = new QueryStats[stats.length];
+            for (int q = 0; q < stats.length; q++) {
+                difference[q] = stats[q].minus(earlier.stats[q]);
+            }
+            return new Snapshot(difference);
+        }
+
+        /**
+         * @return 		one block per query method that has been called
+         */
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            for (QueryStats s : stats) {
+                if (s.calls > 0) {
+                    report.append(s).append(System.lineSeparator());
+                }
+            }
+            return report.toString();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+
+/**
+ * A CSRGraph renumbered for memory locality. Traversals get cheaper when
+ * users that are searched together sit close together in the adjacency
+ * arrays.
+ *
+ * A CSRGraph numbers users in ascending ID order, and user IDs say nothing
+ * about who is friends with whom. A BFS over it therefore jumps all over
+ * the neighbor, stamp and parent arrays, and on graphs larger than the
+ * CPU cache nearly every step is a cache miss. This class numbers the
+ * users so that a BFS mostly walks forward through memory instead:
+ *   BFS                    the order a breadth first search from the
+ *                          largest hub reaches users in
+ *   DEGREE                 descending degree, so the hubs that almost
+ *                          every search touches share a few cache lines
+ *   REVERSE_CUTHILL_MCKEE  BFS from a low-degree user visiting neighbors
+ *                          in ascending degree order, then reversed,
+ *                          which keeps every edge's endpoints close
+ *
+ * Queries still take and return the original user IDs. idOf maps a new
+ * dense index to the user's ID, and indexOf goes through the CSRGraph's
+ * sorted ID table plus a permutation. Results that CompactGraph promises
+ * in ascending ID order are sorted here, since dense order no longer
+ * follows ID order.
+ */
+public class ReorderedGraph extends CompactGraph {
+
+    /* the renumbering strategies */
+    public enum Ordering { BFS, DEGREE, REVERSE_CUTHILL_MCKEE }
+
+    /* the original graph's dense index -> user ID table, sorted ascending */
+    private final int[] sortedIds;
+    /* the original graph's dense index -> new dense index */
+    private final int[] newIndex;
+    /* new dense index -> user ID */
+    private final int[] vertexIds;
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final int[] inOffsets;
+    private final int[] inNeighbors;
+
+    private ReorderedGraph(int[] sortedIds, int[] newIndex, int[] vertexIds, int[] offsets,
+                           int[] neighbors, int[] inOffsets, int[] inNeighbors) {
+        this.sortedIds = sortedIds;
+        this.newIndex = newIndex;
+        this.vertexIds = vertexIds;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.inOffsets = inOffsets;
+        this.inNeighbors = inNeighbors;
+    }
+
+    /**
+     * @param g			the graph to renumber; it is not modified
+     * @param ordering	how to choose the new numbering
+     * @return 			a copy of g numbered by the given ordering
+     */
+    public static ReorderedGraph reorder(CSRGraph g, Ordering ordering) {
+        switch (ordering) {
+            case BFS:
+                return reorder(g, bfsOrder(g));
+            case DEGREE:
+                return reorder(g, degreeOrder(g));
+            default:
+                return reorder(g, reverseCuthillMcKeeOrder(g));
+        }
+    }
+
+    /**
+     * Renumbers a graph by an explicit order
+     *
+     * @param g			the graph to renumber; it is not modified
+     * @param order		order[i] is the dense index in g of the user that
+     * 					becomes dense index i; a permutation of 0..n-1
+     */
+    public static ReorderedGraph reorder(CSRGraph g, int[] order) {
+        int n = g.vertexCount();
+        if (order.length != n) {
+            throw new IllegalArgumentException("order has " + order.length + " entries for " + n + " users");
+        }
+        int[] newIndex = new int[n];
+        Arrays.fill(newIndex, -1);
+        int[] ids = g.vertexIds();
+        int[] vertexIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (order[i] < 0 || order[i] >= n) {
+                throw new IllegalArgumentException("order is not a permutation: " + order[i] + " is out of range");
+            }
+            if (newIndex[order[i]] >= 0) {
+                throw new IllegalArgumentException("order is not a permutation: " + order[i] + " repeats");
+            }
+            newIndex[order[i]] = i;
+            vertexIds[i] = ids[order[i]];
+        }
+        int[] offsets = new int[n + 1];
+        int[] neighbors = permute(g.offsets(), g.neighbors(), order, newIndex, offsets);
+        if (g.isSymmetric()) {
+            return new ReorderedGraph(ids, newIndex, vertexIds, offsets, neighbors, offsets, neighbors);
+        }
+        int[] inOffsets = new int[n + 1];
+        int[] inNeighbors = permute(g.inOffsets(), g.inNeighbors(), order, newIndex, inOffsets);
+        return new ReorderedGraph(ids, newIndex, vertexIds, offsets, neighbors, inOffsets, inNeighbors);
+    }
+
+    /* copies one adjacency layout into the new numbering, re-sorting every range */
+    private static int[] permute(int[] oldOffsets, int[] oldNeighbors, int[] order, int[] newIndex,
+                                 int[] newOffsets) {
+        int n = order.length;
+        int[] permuted = new int[oldNeighbors.length];
+        for (int i = 0; i < n; i++) {
+            int old = order[i];
+            int pos = newOffsets[i];
+            for (int e = oldOffsets[old]; e < oldOffsets[old + 1]; e++) {
+                permuted[pos++] = newIndex[oldNeighbors[e]];
+            }
+            Arrays.sort(permuted, newOffsets[i], pos);
+            newOffsets[i + 1] = pos;
+        }
+        return permuted;
+    }
+
+    /*
+     * Breadth first search order. Each connected part starts from its
+     * highest-degree user not yet numbered, so the large component is
+     * laid out from its biggest hub outwards.
+     */
+    static int[] bfsOrder(CSRGraph g) {
+        int n = g.vertexCount();
+        int[] offsets = g.offsets();
+        int[] neighbors = g.neighbors();
+        int[] order = new int[n];
+        boolean[] placed = new boolean[n];
+        int tail = 0;
+        for (int root : degreeOrder(g)) {
+            if (placed[root]) {
+                continue;
+            }
+            placed[root] = true;
+            int head = tail;
+            order[tail++] = root;
+            while (head < tail) {
+                int v = order[head++];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = neighbors[e];
+                    if (!placed[w]) {
+                        placed[w] = true;
+                        order[tail++] = w;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /* descending out-degree; ties keep ascending ID order */
+    static int[] degreeOrder(CSRGraph g) {
+        int n = g.vertexCount();
+        long[] keys = new long[n];
+        for (int v = 0; v < n; v++) {
+            keys[v] = ((long) -g.degree(v) << 32) | v;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /*
+     * Reverse Cuthill-McKee. Each connected part starts from its
+     * lowest-degree user, a cheap stand-in for a peripheral one, and every
+     * user's unnumbered neighbors are queued in ascending degree order.
+     * Reversing the final order keeps edges short while putting the dense
+     * core of the graph in one place.
+     */
+    static int[] reverseCuthillMcKeeOrder(CSRGraph g) {
+        int n = g.vertexCount();
+        int[] offsets = g.offsets();
+        int[] neighbors = g.neighbors();
+        int[] byDegree = degreeOrder(g);
+        int[] order = new int[n];
+        boolean[] placed = new boolean[n];
+        long[] batch = new long[g.maxDegree()];
+        int tail = 0;
+        for (int r = n - 1; r >= 0; r--) {
+            int root = byDegree[r];
+            if (placed[root]) {
+                continue;
+            }
+            placed[root] = true;
+            int head = tail;
+            order[tail++] = root;
+            while (head < tail) {
+                int v = order[head++];
+                int count = 0;
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = neighbors[e];
+                    if (!placed[w]) {
+                        placed[w] = true;
+                        batch[count++] = ((long) g.degree(w) << 32) | w;
+                    }
+                }
+                Arrays.sort(batch, 0, count);
+                for (int i = 0; i < count; i++) {
+                    order[tail++] = (int) batch[i];
+                }
+            }
+        }
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+        return order;
+    }
+
+    public int vertexCount() {
+        return vertexIds.length;
+    }
+
+    public long edgeCount() {
+        return neighbors.length;
+    }
+
+    public int indexOf(int user) {
+        int v = Arrays.binarySearch(sortedIds, user);
+        return v >= 0 ? newIndex[v] : -1;
+    }
+
+    public int idOf(int v) {
+        return vertexIds[v];
+    }
+
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    public int inDegree(int v) {
+        return inOffsets[v + 1] - inOffsets[v];
+    }
+
+    public boolean isSymmetric() {
+        return inNeighbors == neighbors;
+    }
+
+    public int copyNeighbors(int v, int[] dest) {
+        int degree = offsets[v + 1] - offsets[v];
+        System.arraycopy(neighbors, offsets[v], dest, 0, degree);
+        return degree;
+    }
+
+    public int copyInNeighbors(int v, int[] dest) {
+        int degree = inOffsets[v + 1] - inOffsets[v];
+        System.arraycopy(inNeighbors, inOffsets[v], dest, 0, degree);
+        return degree;
+    }
+
+    int[] neighborArray() {
+        return neighbors;
+    }
+
+    int[] neighborOffsets() {
+        return offsets;
+    }
+
+    /**
+     * @return 		sorted IDs of the direct connections of user,
+     * 				or null if user is not in the graph
+     */
+    @Override
+    public int[] getConnections(int user) {
+        int[] friends = super.getConnections(user);
+        if (friends != null) {
+            Arrays.sort(friends);
+        }
+        return friends;
+    }
+
+    /**
+     * @return 		sorted IDs of the connections shared by both people
+     */
+    @Override
+    public int[] getMutualFriends(int user1, int user2) {
+        int[] mutual = super.getMutualFriends(user1, user2);
+        Arrays.sort(mutual);
+        return mutual;
+    }
+
+    /**
+     * @return 		the number of IDs written to out, in ascending order
+     */
+    @Override
+    public int getMutualFriends(int user1, int user2, int[] out) {
+        int count = super.getMutualFriends(user1, user2, out);
+        Arrays.sort(out, 0, count);
+        return count;
+    }
+}
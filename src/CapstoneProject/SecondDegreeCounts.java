@@ -0,0 +1,30 @@
+package CapstoneProject;
+
+/**
+ * Result of a single 2-hop aggregation pass around one user:
+ * every user exactly 2 degrees away together with the number of mutual
+ * friends they share with the user, plus the user's friends that link
+ * to at least one of them (the set getSecondDegreeMutualFriends returns).
+ */
+public class SecondDegreeCounts {
+
+    /* the user the pass started from */
+    public final int user;
+    /* IDs of the users at exactly 2 degrees of separation, in discovery order */
+    public final int[] candidates;
+    /* mutualCounts[i] is the number of mutual friends of user and candidates[i] */
+    public final int[] mutualCounts;
+    /* IDs of the user's friends that are connected to some candidate */
+    public final int[] mutualFriends;
+
+    public SecondDegreeCounts(int user, int[] candidates, int[] mutualCounts, int[] mutualFriends) {
+        this.user = user;
+        this.candidates = candidates;
+        this.mutualCounts = mutualCounts;
+        this.mutualFriends = mutualFriends;
+    }
+
+    public int size() {
+        return candidates.length;
+    }
+}
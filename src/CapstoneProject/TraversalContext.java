@@ -0,0 +1,69 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+
+/**
+ * Reusable scratch state for the breadth first searches on
+ * CapstoneDoSGraph, so that a steady-state query allocates nothing
+ * beyond its result.
+ *
+ * Every array is indexed by dense user index and only ever grows. Instead
+ * of clearing the visited marks between queries, each query takes a fresh
+ * pair of epoch values from begin(): a user counts as visited by a side
+ * only while its stamp equals that side's epoch, so starting a new query
+ * costs O(1) rather than O(V). The stamps are cleared for real only when
+ * the epoch counter wraps around.
+ *
+ * CapstoneDoSGraph keeps one context per thread and hands it out for each
+ * query; callers that manage their own threads can pass a context of their
+ * own to the query methods instead. A context must not be shared by two
+ * queries at the same time.
+ */
+public class TraversalContext {
+
+    /* visit marks; stamp[v] == epoch or epoch + 1 says which side reached v */
+    int[] stamp = new int[0];
+    /*
+     * parent dense index for each side of a bidirectional search; the 2-hop
+     * pass reuses them for mutual friend counts and its candidate list
+     */
+    int[] parent = new int[0];
+    int[] otherParent = new int[0];
+    /* FIFO queues for each side, holding the users' own Integer objects */
+    Integer[] queue = new Integer[0];
+    Integer[] otherQueue = new Integer[0];
+    /* one level of user IDs, as handed to a LevelVisitor */
+    int[] ids = new int[0];
+    /* the first of the two stamp values owned by the current query */
+    int epoch;
+    /* true while a query is running on this context */
+    boolean inUse;
+    /* adjacency entries scanned by the current query, for QueryMetrics */
+    long edges;
+
+    /**
+     * Starts a new query over a graph with n dense indices: grows the
+     * arrays if the graph has grown and takes two fresh epoch values
+     *
+     * @param n		the number of dense indices the query may touch
+     * @return 		the first epoch value; the second is one more
+     */
+    int begin(int n) {
+        if (stamp.length < n) {
+            int capacity = Math.max(n, stamp.length + (stamp.length >> 1));
+            stamp = Arrays.copyOf(stamp, capacity);
+            parent = new int[capacity];
+            otherParent = new int[capacity];
+            queue = new Integer[capacity];
+            otherQueue = new Integer[capacity];
+            ids = new int[capacity];
+        }
+        if (epoch >= Integer.MAX_VALUE - 2) {
+            Arrays.fill(stamp, 0);
+            epoch = 0;
+        }
+        epoch += 2;
+        edges = 0;
+        return epoch;
+    }
+}
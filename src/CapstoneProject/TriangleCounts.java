@@ -0,0 +1,249 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exact triangle counts of a graph: for every user the number of pairs
+ * of their friends who are friends with each other, and from those the
+ * local clustering coefficients and the global transitivity.
+ *
+ * Asking getMutualFriends for every pair of friends intersects each
+ * triangle's lists six times and spends most of its time on hubs. Here
+ * every edge is instead oriented from the endpoint of lower degree to the
+ * one of higher degree (ties by dense index), and each user keeps only
+ * its outgoing friends, sorted. A triangle is then found exactly once,
+ * from its lowest-ranked corner v, by intersecting v's outgoing list with
+ * that of each outgoing friend. No oriented list is longer than
+ * sqrt(2m), so hubs no longer dominate, and the whole count takes
+ * O(m^1.5) time in the worst case.
+ *
+ * Users are processed in parallel; the corners other than v are credited
+ * with atomic increments. For graphs where even this is too slow,
+ * WedgeSampler estimates the same statistics.
+ */
+public class TriangleCounts implements ClusteringStatistics {
+
+    /* undirected degree of each dense vertex */
+    private final int[] degrees;
+    /* triangles through each dense vertex */
+    private final long[] counts;
+    private final long total;
+
+    private TriangleCounts(int[] degrees, long[] counts, long total) {
+        this.degrees = degrees;
+        this.counts = counts;
+        this.total = total;
+    }
+
+    /**
+     * Counts every triangle in a graph
+     *
+     * @param g		the graph to measure; its edges are taken as undirected
+     * @param pool	the pool that runs each pass
+     */
+    public static TriangleCounts compute(final CompactGraph g, ForkJoinPool pool) {
+        final int n = g.vertexCount();
+        final ThreadLocal<int[][]> buffers = ThreadLocal.withInitial(() -> newBuffers(g));
+
+        //undirected degrees decide the orientation
+        final int[] degrees = new int[n];
+        Parallel.forRange(pool, n, (from, to) -> {
+            int[][] buf = buffers.get();
+            for (int v = from; v < to; v++) {
+                degrees[v] = undirectedNeighbors(g, v, buf);
+            }
+        });
+
+        //count each user's outgoing friends, prefix sum into offsets, then fill
+        final int[] offsets = new int[n + 1];
+        Parallel.forRange(pool, n, (from, to) -> {
+            int[][] buf = buffers.get();
+            for (int v = from; v < to; v++) {
+                int degree = undirectedNeighbors(g, v, buf);
+                int out = 0;
+                for (int i = 0; i < degree; i++) {
+                    if (before(degrees, v, buf[0][i])) {
+                        out++;
+                    }
+                }
+                offsets[v + 1] = out;
+            }
+        });
+        pool.invoke(ForkJoinTask.adapt(() -> Arrays.parallelPrefix(offsets, Integer::sum)));
+        final int[] oriented = new int[offsets[n]];
+        Parallel.forRange(pool, n, (from, to) -> {
+            int[][] buf = buffers.get();
+            for (int v = from; v < to; v++) {
+                int degree = undirectedNeighbors(g, v, buf);
+                int pos = offsets[v];
+                for (int i = 0; i < degree; i++) {
+                    if (before(degrees, v, buf[0][i])) {
+                        oriented[pos++] = buf[0][i];
+                    }
+                }
+            }
+        });
+
+        //one intersection per oriented edge v -> u finds the triangles whose lowest corner is v
+        final AtomicLongArray counts = new AtomicLongArray(n);
+        final LongAdder total = new LongAdder();
+        Parallel.forRange(pool, n, (from, to) -> {
+            int[] closing = buffers.get()[0];
+            long found = 0;
+            for (int v = from; v < to; v++) {
+                long atV = 0;
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int u = oriented[e];
+                    int common = Intersections.intersect(oriented, offsets[v], offsets[v + 1],
+                            oriented, offsets[u], offsets[u + 1], closing, 0);
+                    if (common == 0) {
+                        continue;
+                    }
+                    atV += common;
+                    counts.addAndGet(u, common);
+                    for (int i = 0; i < common; i++) {
+                        counts.incrementAndGet(closing[i]);
+                    }
+                }
+                if (atV != 0) {
+                    counts.addAndGet(v, atV);
+                    found += atV;
+                }
+            }
+            total.add(found);
+        });
+
+        long[] perVertex = new long[n];
+        for (int v = 0; v < n; v++) {
+            perVertex[v] = counts.get(v);
+        }
+        return new TriangleCounts(degrees, perVertex, total.sum());
+    }
+
+    /* true if the edge between v and u is oriented from v to u */
+    private static boolean before(int[] degrees, int v, int u) {
+        return degrees[v] < degrees[u] || (degrees[v] == degrees[u] && v < u);
+    }
+
+    /* a result list and scratch for the out- and in-lists it is merged from */
+    static int[][] newBuffers(CompactGraph g) {
+        int size = g.isSymmetric() ? g.maxDegree() : 2 * g.maxDegree();
+        return new int[][] { new int[size], new int[g.maxDegree()], new int[g.maxDegree()] };
+    }
+
+    /**
+     * Writes the sorted undirected friends of v into buf[0]: its out- and
+     * in-neighbors without repeats, leaving out v itself
+     *
+     * @param buf	buffers from newBuffers
+     * @return 		the number of friends written
+     */
+    static int undirectedNeighbors(CompactGraph g, int v, int[][] buf) {
+        int[] dest = buf[0];
+        if (g.isSymmetric()) {
+            int degree = g.copyNeighbors(v, dest);
+            int self = Arrays.binarySearch(dest, 0, degree, v);
+            if (self < 0) {
+                return degree;
+            }
+            System.arraycopy(dest, self + 1, dest, self, degree - self - 1);
+            return degree - 1;
+        }
+        int[] out = buf[1];
+        int[] in = buf[2];
+        int outDegree = g.copyNeighbors(v, out);
+        int inDegree = g.copyInNeighbors(v, in);
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < outDegree || j < inDegree) {
+            int next;
+            if (j == inDegree || (i < outDegree && out[i] <= in[j])) {
+                next = out[i++];
+                if (j < inDegree && in[j] == next) {
+                    j++;
+                }
+            } else {
+                next = in[j++];
+            }
+            if (next != v) {
+                dest[count++] = next;
+            }
+        }
+        return count;
+    }
+
+    /* the number of pairs among d friends */
+    static long pairs(int d) {
+        return (long) d * (d - 1) / 2;
+    }
+
+    public double triangles() {
+        return total;
+    }
+
+    /**
+     * @return 		the exact number of triangles in the graph
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * @param v		a dense vertex index
+     * @return 		the number of triangles v is a corner of
+     */
+    public long trianglesAt(int v) {
+        return counts[v];
+    }
+
+    /**
+     * @param v		a dense vertex index
+     * @return 		v's number of distinct friends, in either direction
+     */
+    public int degreeAt(int v) {
+        return degrees[v];
+    }
+
+    /**
+     * @param v		a dense vertex index
+     * @return 		the fraction of pairs of v's friends who are friends
+     * 				themselves; 0 if v has fewer than two friends
+     */
+    public double clusteringAt(int v) {
+        long possible = pairs(degrees[v]);
+        return possible == 0 ? 0 : (double) counts[v] / possible;
+    }
+
+    /**
+     * @return 		the number of pairs of friends who share a friend,
+     * 				over every user (paths of length 2)
+     */
+    public long wedges() {
+        long wedges = 0;
+        for (int d : degrees) {
+            wedges += pairs(d);
+        }
+        return wedges;
+    }
+
+    public double transitivity() {
+        long wedges = wedges();
+        return wedges == 0 ? 0 : 3.0 * total / wedges;
+    }
+
+    public double averageClustering() {
+        if (degrees.length == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int v = 0; v < degrees.length; v++) {
+            sum += clusteringAt(v);
+        }
+        return sum / degrees.length;
+    }
+}
@@ -0,0 +1,234 @@
+package CapstoneProject;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Estimates the clustering statistics of graphs too large for an exact
+ * TriangleCounts, by sampling wedges: a user together with two of their
+ * friends. A wedge is closed if those two friends are friends as well.
+ *   transitivity       is the fraction of all wedges that are closed, so
+ *                      it is estimated from wedges drawn uniformly, by
+ *                      picking the middle user in proportion to their
+ *                      number of friend pairs
+ *   averageClustering  is the average over users of the fraction of
+ *                      their own wedges that are closed, so it is
+ *                      estimated from one wedge of each of a uniform
+ *                      sample of users
+ *   triangles          is transitivity times the number of wedges / 3
+ *
+ * Each estimate is a proportion over independent samples, with standard
+ * error sqrt(p (1 - p) / samples) whatever the size of the graph. The
+ * bounds reported here are two standard errors (roughly 95%) wide.
+ *
+ * A sample reads the middle user's friend list and that of the less
+ * connected end, so the cost is one pass over the degrees plus a few
+ * list reads per sample. Samples are sorted by middle user so each list
+ * is read once per piece, and pieces draw from their own seeded
+ * generator, so a seed always gives the same estimates however many
+ * threads run them.
+ */
+public class WedgeSampler implements ClusteringStatistics {
+
+    public static final int DEFAULT_SAMPLES = 1 << 20;
+    public static final long DEFAULT_SEED = 42;
+    /* samples handed to one generator */
+    private static final int PIECE = 4096;
+
+    private final int samples;
+    private final long wedges;
+    private final long closedUniformWedges;
+    private final long closedUserWedges;
+
+    private WedgeSampler(int samples, long wedges, long closedUniformWedges, long closedUserWedges) {
+        this.samples = samples;
+        this.wedges = wedges;
+        this.closedUniformWedges = closedUniformWedges;
+        this.closedUserWedges = closedUserWedges;
+    }
+
+    /**
+     * Estimates with the default number of samples and seed
+     */
+    public static WedgeSampler estimate(CompactGraph g, ForkJoinPool pool) {
+        return estimate(g, DEFAULT_SAMPLES, DEFAULT_SEED, pool);
+    }
+
+    /**
+     * Estimates the clustering statistics of a graph
+     *
+     * @param g			the graph to measure; its edges are taken as undirected
+     * @param samples	the number of wedges drawn for each estimate
+     * @param seed		the seed every random choice derives from
+     * @param pool		the pool that runs the degree pass and the samples
+     */
+    public static WedgeSampler estimate(final CompactGraph g, final int samples, long seed, ForkJoinPool pool) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("samples must be positive: " + samples);
+        }
+        final int n = g.vertexCount();
+        final ThreadLocal<int[][]> buffers = ThreadLocal.withInitial(() -> TriangleCounts.newBuffers(g));
+        //a copy of the middle user's friends, which buffers[0] cannot hold while ends are looked up
+        final ThreadLocal<int[]> friendBuffers = ThreadLocal.withInitial(() -> new int[buffers.get()[0].length]);
+        final int[] degrees = new int[n];
+        Parallel.forRange(pool, n, (from, to) -> {
+            int[][] buf = buffers.get();
+            for (int v = from; v < to; v++) {
+                degrees[v] = TriangleCounts.undirectedNeighbors(g, v, buf);
+            }
+        });
+        //cumulative[v] = wedges centred on users before v
+        long[] cumulative = new long[n + 1];
+        for (int v = 0; v < n; v++) {
+            cumulative[v + 1] = cumulative[v] + TriangleCounts.pairs(degrees[v]);
+        }
+        final long wedges = cumulative[n];
+        if (wedges == 0) {
+            return new WedgeSampler(samples, 0, 0, 0);
+        }
+
+        //middle users: the low bit says whether a sample is for transitivity (0) or average clustering (1)
+        SplittableRandom random = new SplittableRandom(seed);
+        final long[] draws = new long[2 * samples];
+        for (int s = 0; s < samples; s++) {
+            draws[2 * s] = (long) middleOf(cumulative, random.nextLong(wedges)) << 1;
+            draws[2 * s + 1] = ((long) random.nextInt(n) << 1) | 1;
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> Arrays.parallelSort(draws)));
+
+        final int pieces = (draws.length + PIECE - 1) / PIECE;
+        final long[][] closed = new long[pieces][2];
+        final SplittableRandom[] generators = new SplittableRandom[pieces];
+        for (int p = 0; p < pieces; p++) {
+            generators[p] = random.split();
+        }
+        Parallel.forRange(pool, pieces, 1, (from, to) -> {
+            int[][] buf = buffers.get();
+            int[] friends = friendBuffers.get();
+            for (int p = from; p < to; p++) {
+                SplittableRandom pieceRandom = generators[p];
+                int middle = -1;
+                int degree = 0;
+                for (int s = p * PIECE; s < Math.min(draws.length, (p + 1) * PIECE); s++) {
+                    int v = (int) (draws[s] >>> 1);
+                    if (v != middle) {
+                        middle = v;
+                        degree = TriangleCounts.undirectedNeighbors(g, v, buf);
+                        System.arraycopy(buf[0], 0, friends, 0, degree);
+                    }
+                    if (degree < 2) {
+                        continue;
+                    }
+                    int i = pieceRandom.nextInt(degree);
+                    int j = pieceRandom.nextInt(degree - 1);
+                    j = j >= i ? j + 1 : j;
+                    int a = friends[i];
+                    int b = friends[j];
+                    if (degrees[a] > degrees[b]) {
+                        int temp = a;
+                        a = b;
+                        b = temp;
+                    }
+                    int count = TriangleCounts.undirectedNeighbors(g, a, buf);
+                    if (Arrays.binarySearch(buf[0], 0, count, b) >= 0) {
+                        closed[p][(int) (draws[s] & 1)]++;
+                    }
+                }
+            }
+        });
+        long closedUniform = 0;
+        long closedUser = 0;
+        for (long[] c : closed) {
+            closedUniform += c[0];
+            closedUser += c[1];
+        }
+        return new WedgeSampler(samples, wedges, closedUniform, closedUser);
+    }
+
+    /* the user whose wedges are numbered [cumulative[v], cumulative[v + 1]) around wedge */
+    private static int middleOf(long[] cumulative, long wedge) {
+        int lo = 0;
+        int hi = cumulative.length - 1;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (cumulative[mid] <= wedge) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public int samples() {
+        return samples;
+    }
+
+    /**
+     * @return 		the exact number of wedges (pairs of friends of the
+     * 				same user) in the graph
+     */
+    public long wedges() {
+        return wedges;
+    }
+
+    public double triangles() {
+        return transitivity() * wedges / 3;
+    }
+
+    public double transitivity() {
+        return (double) closedUniformWedges / samples;
+    }
+
+    public double averageClustering() {
+        return (double) closedUserWedges / samples;
+    }
+
+    /**
+     * @return 		the standard error of transitivity()
+     */
+    public double transitivityStandardError() {
+        return standardError(transitivity());
+    }
+
+    /**
+     * @return 		the standard error of averageClustering()
+     */
+    public double averageClusteringStandardError() {
+        return standardError(averageClustering());
+    }
+
+    /**
+     * @return 		a (roughly 95%) lower bound on transitivity()
+     */
+    public double transitivityLowerBound() {
+        return Math.max(0, transitivity() - 2 * transitivityStandardError());
+    }
+
+    /**
+     * @return 		a (roughly 95%) upper bound on transitivity()
+     */
+    public double transitivityUpperBound() {
+        return Math.min(1, transitivity() + 2 * transitivityStandardError());
+    }
+
+    /**
+     * @return 		a (roughly 95%) lower bound on averageClustering()
+     */
+    public double averageClusteringLowerBound() {
+        return Math.max(0, averageClustering() - 2 * averageClusteringStandardError());
+    }
+
+    /**
+     * @return 		a (roughly 95%) upper bound on averageClustering()
+     */
+    public double averageClusteringUpperBound() {
+        return Math.min(1, averageClustering() + 2 * averageClusteringStandardError());
+    }
+
+    private double standardError(double p) {
+        return Math.sqrt(p * (1 - p) / samples);
+    }
+}
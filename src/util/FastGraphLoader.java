@@ -0,0 +1,529 @@
+/**
+ * Utility class to load large edge-list files without the per-token
+ * Strings and boxed Integers created by Scanner-based loading
+ *
+ */
+package util;
+
+import CapstoneProject.CSRGraph;
+import CapstoneProject.CompressedGraph;
+import CapstoneProject.Graph;
+import CapstoneProject.ReorderedGraph;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class FastGraphLoader {
+
+    /* largest region mapped at once; MappedByteBuffer is limited to 2GB */
+    static final long MAX_SEGMENT = Integer.MAX_VALUE;
+    /* largest magnitude a parsed ID may reach: that of Integer.MIN_VALUE */
+    private static final long INT_MAGNITUDE = 1L << 31;
+
+    /**
+     * Edges read from a file as parallel primitive arrays:
+     * the i-th line of the file is the edge from[i] -> to[i].
+     * Also records how long loading took.
+     */
+    public static class EdgeList {
+        public final int[] from;
+        public final int[] to;
+        public final int size;
+        public final long bytes;
+        public final long nanos;
+
+        EdgeList(int[] from, int[] to, int size, long bytes, long nanos) {
+            this.from = from;
+            this.to = to;
+            this.size = size;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public double linesPerSecond() {
+            return nanos == 0 ? 0 : size * 1e9 / nanos;
+        }
+
+        public String toString() {
+            return size + " lines (" + bytes + " bytes) in " + (nanos / 1000000) + " ms, "
+                    + (long) linesPerSecond() + " lines/sec";
+        }
+    }
+
+    /**
+     * Reads every edge in the file into primitive arrays.
+     * The file is memory mapped and read twice: the first pass counts
+     * the integers so the arrays can be allocated at their exact size,
+     * the second pass parses the digits straight into them.
+     *
+     * @param filename	file with 2 integers per line, "from" then "to"
+     * @return 			the edges in file order
+     */
+    public static EdgeList loadEdges(String filename) throws IOException {
+        long startTime = System.nanoTime();
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+
+            long tokens = 0;
+            for (long pos = 0; pos < size; ) {
+                MappedByteBuffer buf = mapSegment(channel, pos, size);
+                int end = segmentEnd(buf, pos + buf.limit() == size);
+                tokens += countInts(buf, 0, end);
+                pos += end;
+            }
+            if (tokens / 2 > Integer.MAX_VALUE - 8) {
+                throw new IOException(filename + " has too many edges for int[] storage");
+            }
+
+            int edges = (int) (tokens / 2);
+            int[] from = new int[edges];
+            int[] to = new int[edges];
+            long filled = 0;
+            for (long pos = 0; pos < size && filled < 2L * edges; ) {
+                MappedByteBuffer buf = mapSegment(channel, pos, size);
+                int end = segmentEnd(buf, pos + buf.limit() == size);
+                filled = fillInts(buf, 0, end, from, to, filled, 2L * edges, channel, pos, filename);
+                pos += end;
+            }
+            return new EdgeList(from, to, edges, size, System.nanoTime() - startTime);
+        } finally {
+            file.close();
+        }
+    }
+
+    /* receives one block of parsed edges from streamEdges */
+    public interface EdgeBlockSink {
+        void accept(int[] from, int[] to, int count) throws IOException;
+    }
+
+    /**
+     * Parses the file in fixed-size blocks, handing each block to the sink
+     * and then reusing the same two arrays for the next one. Memory use is
+     * independent of the file size, so this is the way to read edge lists
+     * that do not fit on the heap.
+     *
+     * @param filename	file with 2 integers per line, "from" then "to"
+     * @param blockSize	the most edges passed to the sink at once
+     * @param sink		receives each block; the arrays are only valid during the call
+     * @return 			the total number of edges read
+     */
+    public static long streamEdges(String filename, int blockSize, EdgeBlockSink sink) throws IOException {
+        int[] from = new int[blockSize];
+        int[] to = new int[blockSize];
+        long total = 0;
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            int count = 0;
+            boolean odd = false;
+            for (long pos = 0; pos < size; ) {
+                MappedByteBuffer buf = mapSegment(channel, pos, size);
+                int end = segmentEnd(buf, pos + buf.limit() == size);
+                long value = 0;
+                boolean negative = false;
+                boolean inNumber = false;
+                //one past the end acts as a final separator
+                for (int i = 0; i <= end; i++) {
+                    byte b = i < end ? buf.get(i) : (byte) '\n';
+                    if (b >= '0' && b <= '9') {
+                        value = value * 10 + (b - '0');
+                        if (value > INT_MAGNITUDE) {
+                            throw outOfRange(channel, pos + i, filename);
+                        }
+                        inNumber = true;
+                    } else if (b == '-' && !inNumber) {
+                        negative = true;
+                        inNumber = true;
+                    } else if (inNumber) {
+                        int parsed = toInt(value, negative, channel, pos + i, filename);
+                        if (!odd) {
+                            from[count] = parsed;
+                        } else {
+                            to[count++] = parsed;
+                            if (count == blockSize) {
+                                sink.accept(from, to, count);
+                                total += count;
+                                count = 0;
+                            }
+                        }
+                        odd = !odd;
+                        value = 0;
+                        negative = false;
+                        inNumber = false;
+                    }
+                }
+                pos += end;
+            }
+            if (count > 0) {
+                sink.accept(from, to, count);
+                total += count;
+            }
+        } finally {
+            file.close();
+        }
+        return total;
+    }
+
+    /**
+     * Loads the file straight into a read-only compact graph
+     *
+     * @param filename	file with 2 integers per line, "from" then "to"
+     */
+    public static CSRGraph loadCSRGraph(String filename) throws IOException {
+        EdgeList edges = loadEdges(filename);
+        return CSRGraph.fromEdges(edges.from, edges.to, edges.size);
+    }
+
+    /**
+     * Loads the file into a compact graph renumbered for memory locality,
+     * for serving traversal-heavy queries
+     *
+     * @param filename	file with 2 integers per line, "from" then "to"
+     * @param ordering	how to renumber the users
+     */
+    public static ReorderedGraph loadReorderedGraph(String filename, ReorderedGraph.Ordering ordering)
+            throws IOException {
+        return ReorderedGraph.reorder(loadCSRGraph(filename), ordering);
+    }
+
+    /**
+     * Loads the file into a gap-encoded graph, renumbered first so that
+     * friends get nearby indices and the gaps stay small. The uncompressed
+     * graph is only held while loading.
+     *
+     * @param filename	file with 2 integers per line, "from" then "to"
+     * @param ordering	how to renumber the users before encoding
+     */
+    public static CompressedGraph loadCompressedGraph(String filename, ReorderedGraph.Ordering ordering)
+            throws IOException {
+        return CompressedGraph.fromGraph(loadReorderedGraph(filename, ordering));
+    }
+
+    /**
+     * Edges read by the parallel loader, kept in one pair of arrays per
+     * file chunk so no thread has to wait for another while parsing
+     */
+    public static class EdgeChunks {
+        public final int[][] from;
+        public final int[][] to;
+        public final int[] sizes;
+        public final long bytes;
+        public final long nanos;
+
+        EdgeChunks(int[][] from, int[][] to, int[] sizes, long bytes, long nanos) {
+            this.from = from;
+            this.to = to;
+            this.sizes = sizes;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long size() {
+            long size = 0;
+            for (int s : sizes) {
+                size += s;
+            }
+            return size;
+        }
+
+        public double linesPerSecond() {
+            return nanos == 0 ? 0 : size() * 1e9 / nanos;
+        }
+
+        public String toString() {
+            return size() + " lines (" + bytes + " bytes, " + sizes.length + " chunks) in "
+                    + (nanos / 1000000) + " ms, " + (long) linesPerSecond() + " lines/sec";
+        }
+    }
+
+    /**
+     * Parallel version of loadEdges. The file is cut into chunks at line
+     * breaks and each chunk is mapped, counted and parsed into its own
+     * arrays by a task on the pool.
+     *
+     * @param filename	file with 2 integers per line, "from" then "to"
+     * @param pool		the pool that parses the chunks
+     * @return 			the edges of each chunk, in file order
+     */
+    public static EdgeChunks loadEdgeChunks(String filename, ForkJoinPool pool) throws IOException {
+        long startTime = System.nanoTime();
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            long size = channel.size();
+            long[] bounds = chunkBounds(channel, size, pool.getParallelism() * 4L);
+            final int chunks = bounds.length - 1;
+            final int[][] from = new int[chunks][];
+            final int[][] to = new int[chunks][];
+            final int[] sizes = new int[chunks];
+
+            List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+            for (int c = 0; c < chunks; c++) {
+                final int chunk = c;
+                final long start = bounds[c];
+                final long end = bounds[c + 1];
+                tasks.add(pool.submit(() -> {
+                    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    int edges = (int) (countInts(buf, 0, buf.limit()) / 2);
+                    from[chunk] = new int[edges];
+                    to[chunk] = new int[edges];
+                    fillInts(buf, 0, buf.limit(), from[chunk], to[chunk], 0, 2L * edges, channel, start, filename);
+                    sizes[chunk] = edges;
+                    return null;
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                try {
+                    task.join();
+                } catch (RuntimeException e) {
+                    //join wraps a chunk's checked exception; report the parse error itself
+                    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                        if (cause instanceof IOException) {
+                            throw (IOException) cause;
+                        }
+                    }
+                    throw e;
+                }
+            }
+            return new EdgeChunks(from, to, sizes, size, System.nanoTime() - startTime);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Parses the file on the given number of threads and builds a compact
+     * graph from the chunks with a parallel degree count and prefix sum.
+     * The result is identical to loadCSRGraph(filename) and to loading
+     * the file with addVertex/addEdge.
+     *
+     * @param filename	file with 2 integers per line, "from" then "to"
+     * @param threads	number of worker threads to use
+     */
+    public static CSRGraph loadCSRGraph(String filename, int threads) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            EdgeChunks edges = loadEdgeChunks(filename, pool);
+            return CSRGraph.fromEdgeChunks(edges.from, edges.to, edges.sizes, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /*
+     * Splits [0, size) into roughly the requested number of chunks, each
+     * small enough to map at once and each starting just after a line break
+     */
+    static long[] chunkBounds(FileChannel channel, long size, long chunks) throws IOException {
+        long chunkSize = Math.min(MAX_SEGMENT, Math.max(1, (size + chunks - 1) / chunks));
+        List<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        ByteBuffer window = ByteBuffer.allocate(256);
+        long pos = 0;
+        while (pos < size) {
+            long next = pos + chunkSize;
+            if (next >= size) {
+                next = size;
+            } else {
+                next = nextLineStart(channel, next, size, window);
+                //a chunk may not outgrow what a single mapping can hold
+                if (next - pos > MAX_SEGMENT) {
+                    throw new IOException("no line break within " + MAX_SEGMENT + " bytes");
+                }
+            }
+            bounds.add(next);
+            pos = next;
+        }
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /* returns the position just after the first newline at or after pos */
+    private static long nextLineStart(FileChannel channel, long pos, long size, ByteBuffer window)
+            throws IOException {
+        while (pos < size) {
+            window.clear();
+            int read = channel.read(window, pos);
+            if (read <= 0) {
+                return size;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    /**
+     * Loads graph with data from a file through the Graph interface.
+     * Every vertex is added once with addVertex before any edges are
+     * added, as in GraphLoader, but duplicates are found by sorting the
+     * IDs rather than through a HashSet of boxed Integers.
+     *
+     * @return 		the loaded edges and timing, or null if the file could not be read
+     */
+    public static EdgeList loadGraph(Graph g, String filename) {
+        EdgeList edges;
+        try {
+            edges = loadEdges(filename);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        int[] ids = new int[2 * edges.size];
+        System.arraycopy(edges.from, 0, ids, 0, edges.size);
+        System.arraycopy(edges.to, 0, ids, edges.size, edges.size);
+        Arrays.sort(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                g.addVertex(ids[i]);
+            }
+        }
+        for (int i = 0; i < edges.size; i++) {
+            g.addEdge(edges.from[i], edges.to[i]);
+        }
+        return edges;
+    }
+
+    /* maps at most MAX_SEGMENT bytes of the file starting at pos */
+    static MappedByteBuffer mapSegment(FileChannel channel, long pos, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAX_SEGMENT, size - pos));
+    }
+
+    /*
+     * Returns how much of a mapped segment can be parsed without splitting
+     * a number: the whole buffer for the last segment, otherwise up to and
+     * including the last newline
+     */
+    static int segmentEnd(MappedByteBuffer buf, boolean last) {
+        int end = buf.limit();
+        if (last) {
+            return end;
+        }
+        while (end > 0 && buf.get(end - 1) != '\n') {
+            end--;
+        }
+        if (end == 0) {
+            throw new IllegalStateException("no line break within " + buf.limit() + " bytes");
+        }
+        return end;
+    }
+
+    /* counts the integers in buf[start, end) */
+    static long countInts(MappedByteBuffer buf, int start, int end) {
+        long count = 0;
+        boolean inNumber = false;
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            if ((b >= '0' && b <= '9') || (b == '-' && !inNumber)) {
+                if (!inNumber) {
+                    count++;
+                }
+                inNumber = true;
+            } else {
+                inNumber = false;
+            }
+        }
+        return count;
+    }
+
+    /*
+     * Parses the integers in buf[start, end), alternating between the
+     * from and to arrays. filled is the number of integers stored so far
+     * (even ones go to from, odd ones to to); parsing stops at limit.
+     * Returns the new value of filled. channel, offset (the file position
+     * of buf[0]) and filename are only used to report an integer that
+     * does not fit in an int.
+     */
+    static long fillInts(MappedByteBuffer buf, int start, int end, int[] from, int[] to,
+                         long filled, long limit, FileChannel channel, long offset, String filename)
+            throws IOException {
+        long value = 0;
+        boolean negative = false;
+        boolean inNumber = false;
+        for (int i = start; i < end && filled < limit; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                if (value > INT_MAGNITUDE) {
+                    throw outOfRange(channel, offset + i, filename);
+                }
+                inNumber = true;
+            } else if (b == '-' && !inNumber) {
+                negative = true;
+                inNumber = true;
+            } else if (inNumber) {
+                filled = store(toInt(value, negative, channel, offset + i, filename), from, to, filled);
+                value = 0;
+                negative = false;
+                inNumber = false;
+            }
+        }
+        if (inNumber && filled < limit) {
+            filled = store(toInt(value, negative, channel, offset + end, filename), from, to, filled);
+        }
+        return filled;
+    }
+
+    /* the parsed magnitude as a signed int; at is the file position just past the digits */
+    private static int toInt(long value, boolean negative, FileChannel channel, long at, String filename)
+            throws IOException {
+        if (!negative && value > Integer.MAX_VALUE) {
+            throw outOfRange(channel, at, filename);
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /* the error for an integer outside the int range at file position at */
+    private static IOException outOfRange(FileChannel channel, long at, String filename) throws IOException {
+        return new IOException(filename + " line " + lineAt(channel, at) + ": user ID out of int range");
+    }
+
+    /* the 1-based line number of file position at, by counting the newlines before it */
+    private static long lineAt(FileChannel channel, long at) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(1 << 16);
+        long line = 1;
+        for (long pos = 0; pos < at; ) {
+            window.clear();
+            window.limit((int) Math.min(window.capacity(), at - pos));
+            int read = channel.read(window, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    line++;
+                }
+            }
+            pos += read;
+        }
+        return line;
+    }
+
+    private static long store(int value, int[] from, int[] to, long filled) {
+        int edge = (int) (filled >>> 1);
+        if ((filled & 1) == 0) {
+            from[edge] = value;
+        } else {
+            to[edge] = value;
+        }
+        return filled + 1;
+    }
+}